@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGenderCube;
+
+/**
+ * JMH benchmarks comparing producing age by gender datasets in 5 year
+ * intervals for every area and year of a {@link Data_AgeGenderCube} with
+ * producing them by re-bucketing maps of single year BigDecimal counts, and of
+ * filling and building, writing and mapping the cube.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_AgeGenderCubeJmh {
+
+    @Param({"10000"})
+    public int areas;
+
+    @Param({"5"})
+    public int years;
+
+    private final int ages = 91;
+
+    private final int ageInterval = 5;
+
+    private final int saeyi = 85;
+
+    private Data_AgeGenderCube cube;
+
+    private Path p;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        cube = getCube(areas, years, ages);
+        cube.build();
+        p = Files.createTempFile("cube", ".bin");
+        cube.write(p);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(p);
+    }
+
+    @Benchmark
+    public Data_AgeGenderCube build() {
+        Data_AgeGenderCube c = getCube(areas, years, ages);
+        c.build();
+        return c;
+    }
+
+    @Benchmark
+    public long cubeDatasets() {
+        long r = 0L;
+        for (int area = 0; area < areas; area++) {
+            for (int year = 0; year < years; year++) {
+                r += cube.getData(area, year, ageInterval, saeyi)
+                        .getFemale().size();
+            }
+        }
+        return r;
+    }
+
+    @Benchmark
+    public long mapDatasets() {
+        long r = 0L;
+        for (int area = 0; area < areas; area++) {
+            for (int year = 0; year < years; year++) {
+                TreeMap<Integer, BigDecimal> f = new TreeMap<>();
+                TreeMap<Integer, BigDecimal> m = new TreeMap<>();
+                for (int age = 0; age < ages; age++) {
+                    f.put(age, BigDecimal.valueOf(
+                            cube.getCount(area, year, true, age, age)));
+                    m.put(age, BigDecimal.valueOf(
+                            cube.getCount(area, year, false, age, age)));
+                }
+                r += getData(f, m, ageInterval, saeyi).getFemale().size();
+            }
+        }
+        return r;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        cube.write(p);
+        return Files.size(p);
+    }
+
+    @Benchmark
+    public long mapAndTotal() throws IOException {
+        Data_AgeGenderCube mapped = Data_AgeGenderCube.map(p);
+        long r = 0L;
+        for (int area = 0; area < areas; area++) {
+            r += mapped.getTotal(area, years - 1, true);
+        }
+        return r;
+    }
+
+    /**
+     * @param areas The number of areas.
+     * @param years The number of years.
+     * @param ages The number of ages.
+     * @return A cube of random counts.
+     */
+    public static Data_AgeGenderCube getCube(int areas, int years, int ages) {
+        Random r = new Random(0L);
+        Data_AgeGenderCube c = new Data_AgeGenderCube(areas, years, ages);
+        for (int area = 0; area < areas; area++) {
+            for (int year = 0; year < years; year++) {
+                for (int age = 0; age < ages; age++) {
+                    c.add(area, year, true, age, r.nextInt(100));
+                    c.add(area, year, false, age, r.nextInt(100));
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Re-buckets single year counts as was done for each chart.
+     */
+    private static Data_AgeGender<BigDecimal> getData(
+            Map<Integer, BigDecimal> f, Map<Integer, BigDecimal> m,
+            int ageInterval, int saeyi) {
+        TreeMap<Integer, BigDecimal> rf = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> rm = new TreeMap<>();
+        BigDecimal max = BigDecimal.ZERO;
+        for (Map.Entry<Integer, BigDecimal> e : f.entrySet()) {
+            int age = e.getKey();
+            int key = age >= saeyi ? saeyi : age / ageInterval * ageInterval;
+            max = max.max(rf.merge(key, e.getValue(), BigDecimal::add));
+        }
+        for (Map.Entry<Integer, BigDecimal> e : m.entrySet()) {
+            int age = e.getKey();
+            int key = age >= saeyi ? saeyi : age / ageInterval * ageInterval;
+            max = max.max(rm.merge(key, e.getValue(), BigDecimal::add));
+        }
+        return new Data_AgeGender<>(rf, rm, max);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+
+/**
+ * JMH benchmarks of laying out and drawing age by gender charts (see
+ * {@link Chart_Fixtures#AGE_GENDER_FAMILIES}) with their default data in age
+ * intervals of 1 and 5 years.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_AgeGenderDrawJmh {
+
+    @Param({"AgeGenderBar", "AgeGenderLine", "AgeGenderBoxPlot"})
+    public String family;
+
+    @Param({"1", "5"})
+    public int ageInterval;
+
+    private Chart<?> chart;
+
+    private Dimension d;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chart = Chart_Fixtures.newAgeGenderChart(family, ageInterval);
+        d = chart.layout();
+    }
+
+    @Benchmark
+    public Dimension layout() {
+        return chart.layout();
+    }
+
+    @Benchmark
+    public BufferedImage draw() {
+        return chart.render(d);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return chart.render();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.execution.Chart_Executor;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * JMH benchmarks of rendering and writing a batch of charts with a
+ * {@link Chart_Executor} of a given number of threads. Run with e.g. the
+ * arguments {@code Chart_BatchJmh -p threads=1,8}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_BatchJmh {
+
+    /**
+     * The number of charts in a batch.
+     */
+    @Param({"100"})
+    public int charts;
+
+    /**
+     * The number of threads, or 0 for a thread for each available processor.
+     */
+    @Param({"1", "0"})
+    public int threads;
+
+    private Generic_Environment e;
+
+    private Path dir;
+
+    private Chart_Executor ce;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("Chart_BatchJmh");
+        ce = new Chart_Executor(threads > 0 ? threads
+                : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return The number of charts written.
+     * @throws InterruptedException If interrupted.
+     */
+    @Benchmark
+    public int execute() throws InterruptedException {
+        int written = ce.execute(IntStream.range(0, charts).mapToObj(i
+                -> Chart_RenderJmh.getChart(e,
+                        Paths.get(dir.toString(), i + ".png"))));
+        if (written != charts) {
+            throw new IllegalStateException((charts - written) + " of "
+                    + charts + " charts failed");
+        }
+        return written;
+    }
+}
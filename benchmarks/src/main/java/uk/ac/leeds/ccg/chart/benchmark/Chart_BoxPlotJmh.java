@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
+import uk.ac.leeds.ccg.chart.data.Data_BoxPlotBuilder;
+import uk.ac.leeds.ccg.chart.data.Data_KLLSketch;
+
+/**
+ * JMH benchmarks comparing building box plot statistics for a synthetic
+ * population of individuals with exact summaries and with KLL sketches. The
+ * largest difference of a quartile between the two relative to the range of
+ * the values is printed at setup, and the allocation of each can be compared
+ * with the JMH gc profiler. Run with e.g. the
+ * arguments {@code Chart_BoxPlotJmh -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_BoxPlotJmh {
+
+    /**
+     * The number of individuals.
+     */
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"exact", "approximate"})
+    public String builder;
+
+    /**
+     * The KLL sketch accuracy parameter.
+     */
+    @Param({"" + Data_KLLSketch.DEFAULT_K})
+    public int k;
+
+    private boolean[] isFemale;
+
+    private int[] ages;
+
+    private double[] values;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(0L);
+        isFemale = new boolean[size];
+        ages = new int[size];
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            isFemale[i] = r.nextBoolean();
+            ages[i] = r.nextInt(100);
+            // A skewed value such as an income that rises with age.
+            values[i] = Math.exp(r.nextGaussian() + ages[i] / 50d) * 10000d;
+        }
+        if (builder.equals("approximate")) {
+            Data_AgeGender<BigDecimal[]> exact = build(
+                    Data_BoxPlotBuilder.exact(5, 70));
+            Data_AgeGender<BigDecimal[]> approximate = build();
+            double range = exact.getMaxPopulation().doubleValue();
+            double e = Math.max(maxError(exact.getFemale(),
+                    approximate.getFemale()), maxError(exact.getMale(),
+                            approximate.getMale()));
+            System.out.println("max quartile error / range " + e / range);
+        }
+    }
+
+    @Benchmark
+    public Data_AgeGender<BigDecimal[]> build() {
+        return build(builder.equals("exact") ? Data_BoxPlotBuilder.exact(5, 70)
+                : Data_BoxPlotBuilder.approximate(5, 70, k));
+    }
+
+    private Data_AgeGender<BigDecimal[]> build(Data_BoxPlotBuilder b) {
+        b.addAll(isFemale, ages, values);
+        return b.build(10, RoundingMode.HALF_UP);
+    }
+
+    private static double maxError(Map<Integer, BigDecimal[]> a,
+            Map<Integer, BigDecimal[]> b) {
+        double r = 0d;
+        for (Map.Entry<Integer, BigDecimal[]> e : a.entrySet()) {
+            BigDecimal[] s = b.get(e.getKey());
+            for (int i = 2; i <= 4; i++) {
+                r = Math.max(r, Math.abs(e.getValue()[i].doubleValue()
+                        - s[i].doubleValue()));
+            }
+        }
+        return r;
+    }
+}
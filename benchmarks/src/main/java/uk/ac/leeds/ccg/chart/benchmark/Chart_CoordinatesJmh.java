@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+
+/**
+ * JMH benchmarks of converting data coordinates to screen coordinates with
+ * a laid out scatter plot, as doubles and as BigDecimals. Times are per
+ * conversion.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_CoordinatesJmh {
+
+    /**
+     * The number of coordinates converted per invocation.
+     */
+    public static final int N = 1024;
+
+    private Chart<?> chart;
+
+    private double[] xs;
+
+    private double[] ys;
+
+    private BigDecimal[] bxs;
+
+    private BigDecimal[] bys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chart = Chart_Fixtures.newChart("Scatter",
+                Chart_Fixtures.getData("Scatter", 10000));
+        chart.layout();
+        Random r = new Random(0L);
+        xs = new double[N];
+        ys = new double[N];
+        bxs = new BigDecimal[N];
+        bys = new BigDecimal[N];
+        for (int i = 0; i < N; i++) {
+            xs[i] = r.nextDouble() * 100d;
+            ys[i] = r.nextDouble() * 100d;
+            bxs[i] = BigDecimal.valueOf(xs[i]);
+            bys[i] = BigDecimal.valueOf(ys[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long doubles() {
+        long r = 0L;
+        for (int i = 0; i < N; i++) {
+            r += chart.coordinateToScreenCol(xs[i])
+                    + chart.coordinateToScreenRow(ys[i]);
+        }
+        return r;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long bigDecimals() {
+        long r = 0L;
+        for (int i = 0; i < N; i++) {
+            r += chart.coordinateToScreenCol(bxs[i])
+                    + chart.coordinateToScreenRow(bys[i]);
+        }
+        return r;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.data.Data_Scatter;
+import uk.ac.leeds.ccg.chart.examples.Chart_Scatter;
+
+/**
+ * JMH benchmarks comparing rendering a scatter plot of many normally
+ * distributed points drawn as crosses with rendering it in density mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_DensityJmh {
+
+    @Param({"1000000"})
+    public int size;
+
+    /**
+     * The density bin size, or 0 to draw crosses.
+     */
+    @Param({"0", "1", "4"})
+    public int binSize;
+
+    private Data_Scatter data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = getData(size);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Chart_Scatter c = new Chart_Scatter(null, null,
+                Paths.get("scatter.png"), "PNG", "Scatter", 400, 400, "X",
+                "Y", true, 10, 3, RoundingMode.HALF_UP);
+        c.setDensity(binSize > 0);
+        c.setDensityBinSize(Math.max(1, binSize));
+        c.setData(data);
+        return c.render();
+    }
+
+    /**
+     * @param n The number of points.
+     * @return A dataset of n points with normally distributed x and
+     * correlated y.
+     */
+    public static Data_Scatter getData(int n) {
+        Random r = new Random(0L);
+        Data_PointSeries s = new Data_PointSeries(n);
+        for (int i = 0; i < n; i++) {
+            double x = r.nextGaussian();
+            s.add(x, x + r.nextGaussian() / 2d);
+        }
+        return new Data_Scatter(s);
+    }
+}
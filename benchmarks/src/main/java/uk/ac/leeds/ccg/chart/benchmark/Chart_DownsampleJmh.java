@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Data_Downsampling;
+import uk.ac.leeds.ccg.chart.data.Data_Line;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.examples.Chart_Line;
+
+/**
+ * JMH benchmarks of rendering a line chart of a long random walk with each
+ * {@link Data_Downsampling} method. The number of points drawn and the number
+ * of pixels that differ from the chart drawn without downsampling are printed
+ * at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_DownsampleJmh {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param
+    public Data_Downsampling method;
+
+    private Data_Line data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = getData(size);
+        Data_PointSeries s = data.getSeries().firstEntry().getValue();
+        int points = method.apply(s, s.getMinX(), s.getMaxX(), 500).size();
+        BufferedImage full = render(data, Data_Downsampling.NONE);
+        System.out.println(method + " points drawn " + points
+                + ", pixels differing "
+                + countDifferences(full, render(data, method)));
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return render(data, method);
+    }
+
+    /**
+     * @param n The number of points.
+     * @return A dataset of one random walk of n points with 11 x axis
+     * labels.
+     */
+    public static Data_Line getData(int n) {
+        Random r = new Random(0L);
+        Data_PointSeries s = new Data_PointSeries(n);
+        double y = 0d;
+        for (int i = 0; i < n; i++) {
+            y += r.nextGaussian();
+            s.add(i, y);
+        }
+        TreeMap<String, Data_PointSeries> series = new TreeMap<>();
+        series.put("walk", s);
+        List<String> labels = new ArrayList<>();
+        labels.add("walk");
+        TreeMap<BigDecimal, String> xAxisLabels = new TreeMap<>();
+        for (int i = 0; i <= 10; i++) {
+            long x = (long) (n - 1) * i / 10;
+            xAxisLabels.put(BigDecimal.valueOf(x), Long.toString(x));
+        }
+        return new Data_Line(series, labels, xAxisLabels);
+    }
+
+    /**
+     * @param data The data.
+     * @param m The downsampling method.
+     * @return The chart rendered.
+     */
+    public static BufferedImage render(Data_Line data, Data_Downsampling m) {
+        ArrayList<BigDecimal> yPin = new ArrayList<>();
+        yPin.add(BigDecimal.ZERO);
+        Chart_Line c = new Chart_Line(null, null, Paths.get("walk.png"),
+                "PNG", "Random Walk", 500, 250, "X", "Y", null, yPin, null, 11,
+                false, 10, 3, RoundingMode.HALF_UP);
+        c.setDownsampling(m);
+        c.setData(data);
+        return c.render();
+    }
+
+    private static int countDifferences(BufferedImage a, BufferedImage b) {
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+            return -1;
+        }
+        int r = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    r++;
+                }
+            }
+        }
+        return r;
+    }
+}
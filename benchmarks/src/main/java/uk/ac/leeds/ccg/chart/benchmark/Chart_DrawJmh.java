@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.data.Data_Chart;
+
+/**
+ * JMH benchmarks of laying out and drawing charts of each family with a
+ * variable number of values (see {@link Chart_Fixtures#FAMILIES}). Run with
+ * e.g. {@code java -jar target/benchmarks.jar Chart_DrawJmh} in the benchmarks
+ * directory after {@code mvn install} in the project directory and
+ * {@code mvn package} in the benchmarks directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_DrawJmh {
+
+    @Param({"Bar", "Line", "Scatter", "ScatterAndLinearRegression"})
+    public String family;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private Chart<?> chart;
+
+    private Dimension d;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Data_Chart data = Chart_Fixtures.getData(family, size);
+        chart = Chart_Fixtures.newChart(family, data);
+        d = chart.layout();
+    }
+
+    /**
+     * @return The dimensions of the image of the chart, from the layout of
+     * the axes, the title and any legend.
+     */
+    @Benchmark
+    public Dimension layout() {
+        return chart.layout();
+    }
+
+    /**
+     * @return An image of the chart drawn with the layout established in
+     * setup, i.e. {@code Chart.draw()} into a new image.
+     */
+    @Benchmark
+    public BufferedImage draw() {
+        return chart.render(d);
+    }
+
+    /**
+     * @return An image of the chart laid out and drawn.
+     */
+    @Benchmark
+    public BufferedImage render() {
+        return chart.render();
+    }
+}
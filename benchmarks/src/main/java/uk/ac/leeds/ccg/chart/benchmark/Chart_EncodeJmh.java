@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.execution.Chart_PngEncoder;
+
+/**
+ * JMH benchmarks of encoding a rendered chart image as a PNG in memory with
+ * ImageIO and with a {@link Chart_PngEncoder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_EncodeJmh {
+
+    @Param({"Bar", "Scatter"})
+    public String family;
+
+    /**
+     * The compression level of {@link #parallelPng()}.
+     */
+    @Param({"1", "4"})
+    public int level;
+
+    /**
+     * Whether the chart is rendered as an indexed colour image (see
+     * {@link Chart#setIndexed(boolean)}).
+     */
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private BufferedImage image;
+
+    private ByteArrayOutputStream out;
+
+    private Chart_PngEncoder encoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Chart<?> c = Chart_Fixtures.newChart(family,
+                Chart_Fixtures.getData(family, 10000));
+        c.setIndexed(indexed);
+        image = c.render();
+        out = new ByteArrayOutputStream(1 << 20);
+        encoder = new Chart_PngEncoder(level);
+    }
+
+    @Benchmark
+    public int png() throws IOException {
+        out.reset();
+        ImageIO.write(image, "PNG", out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int parallelPng() throws IOException {
+        out.reset();
+        encoder.encode(image, out);
+        return out.size();
+    }
+}
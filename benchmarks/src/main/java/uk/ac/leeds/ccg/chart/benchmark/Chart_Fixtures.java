@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.data.Data_Bar;
+import uk.ac.leeds.ccg.chart.data.Data_Chart;
+import uk.ac.leeds.ccg.chart.data.Data_Line;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.data.Data_Scatter;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBar;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBoxPlot;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderLine;
+import uk.ac.leeds.ccg.chart.examples.Chart_Bar;
+import uk.ac.leeds.ccg.chart.examples.Chart_Line;
+import uk.ac.leeds.ccg.chart.examples.Chart_Scatter;
+import uk.ac.leeds.ccg.chart.examples.Chart_ScatterAndLinearRegression;
+
+/**
+ * Charts of each example family with data of a given size for the JMH
+ * benchmarks. The data are the example default data scaled up where the
+ * example generator allows it and otherwise generated in the same way as the
+ * other benchmarks.
+ */
+public class Chart_Fixtures {
+
+    /**
+     * The chart families with data of a variable number of values.
+     */
+    public static final String[] FAMILIES = {"Bar", "Line", "Scatter",
+        "ScatterAndLinearRegression"};
+
+    /**
+     * The age by gender chart families, whose data size is set by the age
+     * interval.
+     */
+    public static final String[] AGE_GENDER_FAMILIES = {"AgeGenderBar",
+        "AgeGenderLine", "AgeGenderBoxPlot"};
+
+    private Chart_Fixtures() {
+    }
+
+    /**
+     * @param family One of {@link #FAMILIES}.
+     * @param n The number of values.
+     * @return A dataset for family of n values.
+     */
+    public static Data_Chart getData(String family, int n) {
+        switch (family) {
+            case "Bar":
+                return getBarData(n);
+            case "Line":
+                return Chart_DownsampleJmh.getData(n);
+            case "Scatter":
+            case "ScatterAndLinearRegression":
+                return getScatterData(n);
+            default:
+                throw new IllegalArgumentException(family);
+        }
+    }
+
+    /**
+     * @param family One of {@link #FAMILIES}.
+     * @param data A dataset from {@link #getData(String, int)} for family.
+     * @return A new chart of family with data.
+     */
+    public static Chart<?> newChart(String family, Data_Chart data) {
+        RoundingMode rm = RoundingMode.HALF_UP;
+        switch (family) {
+            case "Bar":
+                Chart_Bar b = new Chart_Bar(null, null, Paths.get("bar.png"),
+                        "PNG", "Bar", 500, 250, "X", "Count", false, 1, 1,
+                        null, BigDecimal.ZERO, null, 5, 10, 3, rm);
+                b.setData((Data_Bar) data);
+                return b;
+            case "Line":
+                ArrayList<BigDecimal> yPin = new ArrayList<>();
+                yPin.add(BigDecimal.ZERO);
+                Chart_Line l = new Chart_Line(null, null,
+                        Paths.get("line.png"), "PNG", "Line", 500, 250, "X",
+                        "Y", null, yPin, null, 11, false, 10, 3, rm);
+                l.setData((Data_Line) data);
+                return l;
+            case "Scatter":
+                Chart_Scatter s = new Chart_Scatter(null, null,
+                        Paths.get("scatter.png"), "PNG", "Scatter", 400, 400,
+                        "X", "Y", true, 10, 3, rm);
+                s.setData((Data_Scatter) data);
+                return s;
+            case "ScatterAndLinearRegression":
+                Chart_ScatterAndLinearRegression r
+                        = new Chart_ScatterAndLinearRegression(null, null,
+                                Paths.get("regression.png"), "PNG",
+                                "Regression", 400, 400, "X", "Y", true, 10, 3,
+                                rm);
+                r.setData((Data_Scatter) data);
+                return r;
+            default:
+                throw new IllegalArgumentException(family);
+        }
+    }
+
+    /**
+     * @param family One of {@link #AGE_GENDER_FAMILIES}.
+     * @param ageInterval The age interval.
+     * @return A new chart of family with its default data for ageInterval.
+     */
+    public static Chart<?> newAgeGenderChart(String family, int ageInterval) {
+        RoundingMode rm = RoundingMode.HALF_UP;
+        switch (family) {
+            case "AgeGenderBar":
+                Chart_AgeGenderBar b = new Chart_AgeGenderBar(null, null,
+                        Paths.get("agb.png"), "PNG", "Population", 250, 500,
+                        "Population", "Age", true, ageInterval, 90, 10, 3,
+                        rm);
+                b.setData(Chart_AgeGenderBar.getDefaultData(10000, 9900,
+                        ageInterval, 90));
+                return b;
+            case "AgeGenderLine":
+                Chart_AgeGenderLine l = new Chart_AgeGenderLine(null, null,
+                        Paths.get("agl.png"), "PNG", "Population", 500, 500,
+                        "Population", "Age", true, ageInterval, 90, 10, 3,
+                        rm);
+                l.setData(Chart_AgeGenderLine.getDefaultData(ageInterval, 90,
+                        10, rm));
+                return l;
+            case "AgeGenderBoxPlot":
+                Chart_AgeGenderBoxPlot p = new Chart_AgeGenderBoxPlot(null,
+                        null, Paths.get("agbp.png"), "PNG", "Population", 500,
+                        500, "Population", "Age", true, ageInterval, 90, 10, 3,
+                        rm);
+                p.setData(Chart_AgeGenderBoxPlot.getDefaultData(ageInterval,
+                        90, 10, rm));
+                return p;
+            default:
+                throw new IllegalArgumentException(family);
+        }
+    }
+
+    /**
+     * @param n The number of values.
+     * @return A histogram of n normally distributed values in about
+     * 4 * sqrt(n) intervals.
+     */
+    public static Data_Bar getBarData(int n) {
+        BigDecimal w = new BigDecimal(40d / Math.sqrt(n),
+                new MathContext(2, RoundingMode.HALF_UP));
+        return Data_Bar.of(Chart_HistogramJmh.getValues(n), w, false);
+    }
+
+    /**
+     * Scales up {@link Chart_Scatter#getDefaultData(boolean)}, which
+     * generates 10 by 10 points, to about n points.
+     *
+     * @param n The number of points.
+     * @return A dataset of about n points.
+     */
+    public static Data_Scatter getScatterData(int n) {
+        int k = (int) Math.ceil(Math.sqrt(n));
+        Random random = new Random(0);
+        Data_PointSeries xyData = new Data_PointSeries(k * k);
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                double random_0 = random.nextDouble();
+                double x = (i + random.nextDouble()) * random_0;
+                double y = ((j + i) / 2) * random_0;
+                xyData.add(x, y);
+            }
+        }
+        return new Data_Scatter(xyData);
+    }
+}
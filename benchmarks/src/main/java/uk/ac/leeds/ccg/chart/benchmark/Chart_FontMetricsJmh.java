@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Canvas;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart_FontMetrics;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBoxPlot;
+
+/**
+ * JMH benchmarks comparing measuring the tick labels of a chart with new
+ * metrics from a Canvas and {@code charsWidth} for each label, as charts did,
+ * with measuring them with the shared {@link Chart_FontMetrics}, and comparing
+ * rendering a small box plot with the shared metrics and with a new uncaching
+ * {@link Chart_FontMetrics}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_FontMetricsJmh {
+
+    private Font f;
+
+    private String[] labels;
+
+    private Data_AgeGender<BigDecimal[]> data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        f = new Font(Font.SANS_SERIF, Font.PLAIN, 11);
+        labels = new String[200];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = Integer.toString(i * 250);
+        }
+        data = Chart_AgeGenderBoxPlot.getDefaultData(1, 90, 3,
+                RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public long measureCanvas() {
+        FontMetrics fm = new Canvas().getFontMetrics(f);
+        long r = 0L;
+        for (String label : labels) {
+            char[] c = label.toCharArray();
+            r += fm.charsWidth(c, 0, c.length);
+        }
+        return r;
+    }
+
+    @Benchmark
+    public long measureShared() {
+        Chart_FontMetrics m = Chart_FontMetrics.getDefault();
+        FontMetrics fm = m.getFontMetrics(f);
+        long r = 0L;
+        for (String label : labels) {
+            r += m.getTextWidth(fm, label);
+        }
+        return r;
+    }
+
+    @Benchmark
+    public BufferedImage renderUncached() {
+        return render(false);
+    }
+
+    @Benchmark
+    public BufferedImage renderShared() {
+        return render(true);
+    }
+
+    /**
+     * @param shared Whether to use the shared metrics.
+     * @return The chart rendered.
+     */
+    private BufferedImage render(boolean shared) {
+        Chart_AgeGenderBoxPlot c = new Chart_AgeGenderBoxPlot(null, null,
+                Paths.get("box.png"), "PNG", "Box Plot", 300, 300,
+                "Population", "Age", true, 1, 90, 10, 3,
+                RoundingMode.HALF_UP);
+        if (!shared) {
+            c.setTextMetrics(new Chart_FontMetrics(0));
+        }
+        c.setData(data);
+        return c.render();
+    }
+}
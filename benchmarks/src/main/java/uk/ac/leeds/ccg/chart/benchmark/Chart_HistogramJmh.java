@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.data.Data_Bar;
+import uk.ac.leeds.ccg.chart.data.Data_Histogram;
+
+/**
+ * JMH benchmarks comparing counting values into intervals with
+ * {@link Data_Bar#of(java.util.Map, BigDecimal, MathContext)} with counting
+ * them with {@link Data_Histogram} in approximate and exact mode. Values are
+ * normally distributed and rounded to 2 decimal places, so many are on an
+ * interval edge.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_HistogramJmh {
+
+    @Param({"1000000"})
+    public int size;
+
+    private final BigDecimal w = new BigDecimal("0.25");
+
+    private double[] values;
+
+    private HashMap<Integer, BigDecimal> m;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        values = getValues(size);
+        m = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            m.put(i, BigDecimal.valueOf(values[i]));
+        }
+    }
+
+    @Benchmark
+    public Data_Histogram approximate() {
+        return Data_Histogram.of(values, w, false);
+    }
+
+    @Benchmark
+    public Data_Histogram exact() {
+        return Data_Histogram.of(values, w, true);
+    }
+
+    @Benchmark
+    public Data_Bar map() {
+        return Data_Bar.of(m, w, MathContext.DECIMAL64);
+    }
+
+    /**
+     * @param n The number of values.
+     * @return n normally distributed values rounded to 2 decimal places.
+     */
+    public static double[] getValues(int n) {
+        Random r = new Random(0L);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.rint(r.nextGaussian() * 1000d) / 100d;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart_LabelCache;
+import uk.ac.leeds.ccg.chart.data.Data_Bar;
+import uk.ac.leeds.ccg.chart.examples.Chart_Bar;
+
+/**
+ * JMH benchmarks comparing drawing rotated labels directly with drawing them
+ * from a {@link Chart_LabelCache}, and rendering a bar chart with rotated
+ * interval labels without and with the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_LabelCacheJmh {
+
+    private final double angle = 3.0d * Math.PI / 2.0d;
+
+    private String[] labels;
+
+    private Graphics2D g;
+
+    private Chart_LabelCache cache;
+
+    private Data_Bar data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        labels = new String[100];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = (i * 5) + " - " + (i * 5 + 5);
+        }
+        BufferedImage bi = new BufferedImage(1000, 1000,
+                BufferedImage.TYPE_INT_ARGB);
+        g = bi.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(Color.BLACK);
+        cache = new Chart_LabelCache();
+        data = Data_Bar.of(Chart_HistogramJmh.getValues(100000),
+                new BigDecimal("0.25"), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public void drawLabelsDirect() {
+        drawLabels(null);
+    }
+
+    @Benchmark
+    public void drawLabelsCached() {
+        drawLabels(cache);
+    }
+
+    @Benchmark
+    public BufferedImage renderDirect() {
+        return render(false);
+    }
+
+    @Benchmark
+    public BufferedImage renderCached() {
+        return render(true);
+    }
+
+    /**
+     * Draws each label once.
+     *
+     * @param cache The cache or {@code null} to draw directly.
+     */
+    private void drawLabels(Chart_LabelCache cache) {
+        for (int i = 0; i < labels.length; i++) {
+            String text = labels[i];
+            int col = 50 + (i % 90) * 10;
+            int row = 500;
+            Chart_LabelCache.Label l = cache == null ? null : cache.get(text,
+                    g.getFont(), Color.BLACK, angle, g);
+            if (l == null) {
+                AffineTransform t = g.getTransform();
+                g.transform(AffineTransform.getRotateInstance(angle, col,
+                        row));
+                g.drawString(text, col, row);
+                g.setTransform(t);
+            } else {
+                g.drawImage(l.getImage(), col - l.getX(), row - l.getY(),
+                        null);
+            }
+        }
+    }
+
+    /**
+     * @param cached Whether to use the shared label cache.
+     * @return The chart rendered.
+     */
+    private BufferedImage render(boolean cached) {
+        Chart_Bar c = new Chart_Bar(null, null, Paths.get("bar.png"), "PNG",
+                "Histogram", 500, 250, "X", "Count", false, 1, 1, null,
+                BigDecimal.ZERO, null, 5, 10, 3, RoundingMode.HALF_UP);
+        if (!cached) {
+            c.setLabelCache(null);
+        }
+        c.setData(data);
+        return c.render();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.examples.Chart_Scatter;
+import uk.ac.leeds.ccg.chart.execution.Chart_PngEncoder;
+
+/**
+ * JMH benchmarks comparing encoding chart images as PNG with ImageIO and with
+ * a {@link Chart_PngEncoder} at a given compression level on a pool of a given
+ * number of threads. The images are those of typical bar, line and scatter
+ * charts and of a poster size scatter plot. Run with e.g. the
+ * arguments {@code Chart_PngEncoderJmh -p threads=1,2,4,8}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_PngEncoderJmh {
+
+    /**
+     * One of "Bar", "Line", "Scatter" or "Poster" for a scatter plot of
+     * {@link #posterSize} by {@link #posterSize} pixels.
+     */
+    @Param({"Bar", "Line", "Scatter", "Poster"})
+    public String family;
+
+    @Param({"4000"})
+    public int posterSize;
+
+    @Param({"1", "4", "9"})
+    public int level;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private BufferedImage image;
+
+    private ByteArrayOutputStream out;
+
+    private ForkJoinPool pool;
+
+    private Chart_PngEncoder encoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (family.equals("Poster")) {
+            Chart_Scatter c = new Chart_Scatter(null, null,
+                    Paths.get("scatter.png"), "PNG", "Scatter", posterSize,
+                    posterSize, "X", "Y", true, 10, 3, RoundingMode.HALF_UP);
+            c.setData(Chart_Fixtures.getScatterData(1000000));
+            image = c.render();
+        } else {
+            Chart<?> c = Chart_Fixtures.newChart(family,
+                    Chart_Fixtures.getData(family, 10000));
+            image = c.render();
+        }
+        out = new ByteArrayOutputStream(1 << 20);
+        pool = new ForkJoinPool(threads);
+        encoder = new Chart_PngEncoder(level,
+                Chart_PngEncoder.DEFAULT_BLOCK_BYTES, pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int imageIO() throws IOException {
+        out.reset();
+        ImageIO.write(image, "PNG", out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int encoder() throws IOException {
+        out.reset();
+        encoder.encode(image, out);
+        return out.size();
+    }
+}
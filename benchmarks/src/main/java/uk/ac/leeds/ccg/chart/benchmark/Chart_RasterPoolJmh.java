@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.core.Chart_RasterPool;
+import uk.ac.leeds.ccg.chart.execution.Chart_ImageWriter;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * JMH benchmarks comparing rendering and encoding charts into new images and
+ * into images borrowed from a {@link Chart_RasterPool}. Charts are encoded to
+ * a stream that discards its output. The forked JVM has a small heap so that
+ * the difference in allocation and garbage collection reported by the JMH gc
+ * profiler is clear. Run with e.g. the
+ * arguments {@code Chart_RasterPoolJmh -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx256m"})
+@State(Scope.Thread)
+public class Chart_RasterPoolJmh {
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private Generic_Environment e;
+
+    private Chart_ImageWriter w;
+
+    private Chart_RasterPool pool;
+
+    private Path f;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        e = new Generic_Environment(new Generic_Defaults());
+        w = new Chart_ImageWriter() {
+            @Override
+            protected OutputStream newOutputStream(Path file) {
+                return OutputStream.nullOutputStream();
+            }
+        };
+        pool = pooled ? new Chart_RasterPool() : null;
+        f = Paths.get("chart.png");
+    }
+
+    @Benchmark
+    public void renderAndEncode() throws IOException {
+        Chart<?> c = Chart_RenderJmh.getChart(e, f);
+        c.setRasterPool(pool);
+        Dimension d = c.layout();
+        BufferedImage bi = c.render(d);
+        w.write(bi, c.getFormat(), f);
+        if (pool != null) {
+            pool.release(bi);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBar;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * JMH benchmarks comparing rendering a chart via
+ * {@link Chart#renderViaPrintService()} and via {@link Chart#render()}.
+ * Nothing is encoded or written, so only the rendering paths are compared.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_RenderJmh {
+
+    private Generic_Environment e;
+
+    private Path f;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        e = new Generic_Environment(new Generic_Defaults());
+        f = Paths.get(Files.createTempDirectory("Chart_RenderJmh").toString(),
+                "agb.png");
+    }
+
+    @Benchmark
+    public BufferedImage printService() throws IOException {
+        return getChart(e, f).renderViaPrintService();
+    }
+
+    @Benchmark
+    public BufferedImage direct() {
+        return getChart(e, f).render();
+    }
+
+    /**
+     * @param e The environment.
+     * @param f The file the chart would be written to.
+     * @return A chart with the default data set.
+     */
+    public static Chart<?> getChart(Generic_Environment e, Path f) {
+        Chart_AgeGenderBar c = new Chart_AgeGenderBar(e, null, f, "PNG",
+                "Age Gender Population Bar Chart", 250, 500, "Population",
+                "Age", true, 5, 60, 10, 3, RoundingMode.HALF_UP);
+        c.setData(c.getDefaultData());
+        return c;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.execution.Chart_ExecutionMode;
+import uk.ac.leeds.ccg.chart.execution.Chart_Executor;
+import uk.ac.leeds.ccg.chart.execution.Chart_ImageWriter;
+import uk.ac.leeds.ccg.generic.core.Generic_Environment;
+import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
+
+/**
+ * JMH benchmarks comparing rendering and writing a batch of charts with a
+ * {@link Chart_Executor} in {@link Chart_ExecutionMode#PLATFORM} and
+ * {@link Chart_ExecutionMode#VIRTUAL} modes when output is slow. Slow output
+ * is simulated with a {@link ThrottledOutputStream} which waits on opening
+ * (latency) and for each block of bytes written (bandwidth). Run with e.g. the
+ * arguments {@code Chart_SlowOutputJmh -p latency=10,50}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_SlowOutputJmh {
+
+    /**
+     * The number of charts in a batch.
+     */
+    @Param({"100"})
+    public int charts;
+
+    /**
+     * Milliseconds to wait before the first write to each file.
+     */
+    @Param({"50"})
+    public long latency;
+
+    @Param
+    public Chart_ExecutionMode mode;
+
+    private Generic_Environment e;
+
+    private Path dir;
+
+    private Chart_Executor ce;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        e = new Generic_Environment(new Generic_Defaults());
+        dir = Files.createTempDirectory("Chart_SlowOutputJmh");
+        long l = latency;
+        Chart_ImageWriter w = new Chart_ImageWriter() {
+            @Override
+            protected OutputStream newOutputStream(Path file)
+                    throws IOException {
+                return new ThrottledOutputStream(super.newOutputStream(file),
+                        l, 4096, 1L);
+            }
+        };
+        ce = new Chart_Executor(Runtime.getRuntime().availableProcessors(),
+                w, mode);
+    }
+
+    /**
+     * @return The number of charts written.
+     * @throws InterruptedException If interrupted.
+     */
+    @Benchmark
+    public int execute() throws InterruptedException {
+        int written = ce.execute(IntStream.range(0, charts).mapToObj(i
+                -> Chart_RenderJmh.getChart(e,
+                        Paths.get(dir.toString(), i + ".png"))));
+        if (written != charts) {
+            throw new IllegalStateException((charts - written) + " of "
+                    + charts + " charts failed");
+        }
+        return written;
+    }
+
+    /**
+     * Sleeps on the first write and for each block of bytes written.
+     */
+    public static class ThrottledOutputStream extends FilterOutputStream {
+
+        private final long latency;
+        private final int blockSize;
+        private final long blockDelay;
+        private boolean opened;
+        private int n;
+
+        /**
+         * @param out The stream to write to.
+         * @param latency Milliseconds to wait before the first write.
+         * @param blockSize The number of bytes in a block.
+         * @param blockDelay Milliseconds to wait for each block written.
+         */
+        public ThrottledOutputStream(OutputStream out, long latency,
+                int blockSize, long blockDelay) {
+            super(out);
+            this.latency = latency;
+            this.blockSize = blockSize;
+            this.blockDelay = blockDelay;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throttle(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throttle(len);
+            out.write(b, off, len);
+        }
+
+        private void throttle(int len) throws IOException {
+            try {
+                if (!opened) {
+                    opened = true;
+                    Thread.sleep(latency);
+                }
+                n += len;
+                while (n >= blockSize) {
+                    n -= blockSize;
+                    Thread.sleep(blockDelay);
+                }
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
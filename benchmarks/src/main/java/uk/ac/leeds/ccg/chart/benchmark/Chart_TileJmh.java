@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.data.Data_Line;
+import uk.ac.leeds.ccg.chart.data.Data_Scatter;
+import uk.ac.leeds.ccg.chart.examples.Chart_AgeGenderBoxPlot;
+import uk.ac.leeds.ccg.chart.examples.Chart_Line;
+import uk.ac.leeds.ccg.chart.examples.Chart_Scatter;
+
+/**
+ * JMH benchmarks of how the time to render large scatter, line and box plot
+ * charts scales with the number of threads drawing tiles. Run with e.g. the
+ * arguments {@code Chart_TileJmh -p threads=0,1,2,4,8,16}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class Chart_TileJmh {
+
+    @Param({"Scatter", "Line", "BoxPlot"})
+    public String family;
+
+    /**
+     * The number of threads drawing tiles, or 0 to draw without tiles.
+     */
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    /**
+     * The width and height of the charts.
+     */
+    @Param({"4000"})
+    public int size;
+
+    @Param({"512"})
+    public int tileSize;
+
+    private Data_Scatter scatterData;
+
+    private Data_Line lineData;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (family) {
+            case "Scatter":
+                scatterData = Chart_DensityJmh.getData(1000000);
+                break;
+            case "Line":
+                lineData = Chart_DownsampleJmh.getData(1000000);
+                break;
+            default:
+                break;
+        }
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Chart<?> c = newChart();
+        if (pool != null) {
+            c.setTileSize(tileSize);
+            c.setTilePool(pool);
+        }
+        return c.render();
+    }
+
+    private Chart<?> newChart() {
+        RoundingMode rm = RoundingMode.HALF_UP;
+        switch (family) {
+            case "Scatter":
+                Chart_Scatter s = new Chart_Scatter(null, null,
+                        Paths.get("scatter.png"), "PNG", "Scatter", size, size,
+                        "X", "Y", true, 10, 3, rm);
+                s.setData(scatterData);
+                return s;
+            case "Line":
+                ArrayList<BigDecimal> yPin = new ArrayList<>();
+                yPin.add(BigDecimal.ZERO);
+                Chart_Line l = new Chart_Line(null, null,
+                        Paths.get("line.png"), "PNG", "Random Walk", size,
+                        size, "X", "Y", null, yPin, null, 11, false, 10, 3,
+                        rm);
+                l.setData(lineData);
+                return l;
+            case "BoxPlot":
+                Chart_AgeGenderBoxPlot b = new Chart_AgeGenderBoxPlot(null,
+                        null, Paths.get("box.png"), "PNG", "Box Plot", size,
+                        size, "Population", "Age", true, 5, 70, 10, 3, rm);
+                b.setData(b.getDefaultData());
+                return b;
+            default:
+                throw new IllegalArgumentException(family);
+        }
+    }
+}
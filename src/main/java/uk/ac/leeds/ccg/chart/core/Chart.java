@@ -1,13 +1,14 @@
 package uk.ac.leeds.ccg.chart.core;
 
 //import java.awt.*;
-import java.awt.Canvas;
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
@@ -15,19 +16,28 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 import java.util.logging.Logger;
 import javax.print.StreamPrintService;
 import javax.print.StreamPrintServiceFactory;
@@ -36,6 +46,14 @@ import javax.print.attribute.PrintRequestAttributeSet;
 import javax.print.attribute.standard.Copies;
 import javax.swing.JFrame;
 import uk.ac.leeds.ccg.chart.data.Data_BiBigDecimal;
+import uk.ac.leeds.ccg.chart.data.Data_Chart;
+import uk.ac.leeds.ccg.chart.execution.Chart_AdmissionController;
+import uk.ac.leeds.ccg.chart.execution.Chart_EventListener;
+import uk.ac.leeds.ccg.chart.execution.Chart_ExecutionMode;
+import uk.ac.leeds.ccg.chart.execution.Chart_ImageWriter;
+import uk.ac.leeds.ccg.chart.execution.Chart_MetricsListener;
+import uk.ac.leeds.ccg.chart.execution.Chart_PngEncoder;
+import uk.ac.leeds.ccg.chart.execution.Chart_RenderingCompleteEvent;
 import uk.ac.leeds.ccg.chart.execution.Chart_Runnable;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
@@ -46,15 +64,17 @@ import uk.ac.leeds.ccg.generic.visualisation.Generic_Visualisation;
 
 /**
  * An class for creating 2D plot visualisations.
+ *
+ * @param <D> The type of dataset the chart is rendered from.
  */
-public abstract class Chart extends Chart_Runnable
+public abstract class Chart<D extends Data_Chart> extends Chart_Runnable
         implements Chart_Drawable, Runnable {
 
     protected final Generic_Environment env;
     protected final Generic_Execution exec;
     protected final Generic_Visualisation vis;
 
-    protected Object[] data;
+    protected D data;
     protected String format;
     protected Path file;
     protected Graphics2D g2image;
@@ -211,6 +231,32 @@ public abstract class Chart extends Chart_Runnable
     private BigDecimal cellHeightDiv2;
     private BigDecimal cellWidthDiv2;
 
+    /**
+     * For storing the number of columns per unit of x as a double. This is
+     * the reciprocal of {@link #cellWidth} and is set in
+     * {@link #setCellWidth()}. It is 0 if there is no x scale.
+     */
+    private double xScale;
+
+    /**
+     * For storing {@link #minX} as a double. This is set in
+     * {@link #setCellWidth()}.
+     */
+    private double xOffset;
+
+    /**
+     * For storing the number of rows per unit of y as a double. This is the
+     * reciprocal of {@link #cellHeight} and is set in {@link #setCellHeight()}.
+     * It is 0 if there is no y scale.
+     */
+    private double yScale;
+
+    /**
+     * For storing {@link #minY} as a double. This is set in
+     * {@link #setCellHeight()}.
+     */
+    private double yOffset;
+
     /**
      * originRow the row index on which the origin is located (y = 0).
      */
@@ -242,7 +288,130 @@ public abstract class Chart extends Chart_Runnable
 
     protected transient ExecutorService executorService;
     public Chart_Canvas Canvas;
-    public Future future;
+
+    /**
+     * Completes with {@link #file} once {@link #run()} has written the chart,
+     * or exceptionally if rendering or writing failed.
+     */
+    public CompletableFuture<Path> future;
+
+    /**
+     * For encoding and writing the chart.
+     */
+    protected Chart_ImageWriter imageWriter = new Chart_ImageWriter();
+
+    /**
+     * Admits {@link #run()} to render once there is memory for it, or
+     * {@code null} to render without waiting.
+     */
+    protected Chart_AdmissionController admissionController
+            = Chart_AdmissionController.getDefault();
+
+    /**
+     * For borrowing the image to render into, or {@code null} to allocate a
+     * new image for each render. If set, {@link #run()} returns the image to
+     * the pool once it is written and sets {@link #bi} to {@code null}.
+     */
+    protected Chart_RasterPool rasterPool;
+
+    /**
+     * The palette of the {@link BufferedImage#TYPE_BYTE_INDEXED} images the
+     * chart is rendered into, or {@code null} (the default) to render into
+     * {@link BufferedImage#TYPE_INT_ARGB} images. Indexed colour images take a
+     * quarter of the memory and encode as much smaller PNGs. They are drawn
+     * without antialiasing, as blended edge colours would mostly not be in
+     * the palette. See {@link #setIndexed(boolean)}.
+     */
+    protected IndexColorModel palette;
+
+    /**
+     * For caching the background layer of charts with the same layout (see
+     * {@link #getLayerKey()}), or {@code null} to draw every background.
+     */
+    protected Chart_LayerCache layerCache;
+
+    /**
+     * For the metrics of the font and the widths of text.
+     */
+    protected Chart_FontMetrics textMetrics = Chart_FontMetrics.getDefault();
+
+    /**
+     * For caching images of rotated text, or {@code null} to draw all text
+     * directly.
+     */
+    protected Chart_LabelCache labelCache = Chart_LabelCache.getDefault();
+
+    /**
+     * The cached layer found by {@link #layout()} or {@code null}.
+     */
+    private Chart_LayerCache.Layer layer;
+
+    /**
+     * The key to cache the layer drawn by {@link #render(Dimension)} with or
+     * {@code null}.
+     */
+    private Object layerKey;
+
+    /**
+     * The layout to cache with the layer drawn by {@link #render(Dimension)}.
+     */
+    private int[] layerLayout;
+
+    /**
+     * For notifying of the chart being written.
+     */
+    private final Set<Chart_EventListener> listeners
+            = new CopyOnWriteArraySet<>();
+
+    /**
+     * If greater than 0 and the image is larger than a tile,
+     * {@link #render(Dimension)} draws the data in square tiles of this many
+     * pixels concurrently on {@link #tilePool} (see
+     * {@link #drawData(Graphics2D)}). The default is 0 which draws the data
+     * directly, as is always done if there is a {@link #palette}.
+     */
+    protected int tileSize;
+
+    /**
+     * The pool to draw tiles on, or {@code null} (the default) for the common
+     * pool.
+     */
+    protected ForkJoinPool tilePool;
+
+    /**
+     * Records the drawing of the data while drawing in tiles, otherwise
+     * {@code null}.
+     */
+    private Chart_TileRecorder recorder;
+
+    /**
+     * Writes the drawing while drawing in a vector format, e.g. with
+     * {@link #renderSvg(Writer, boolean)}, otherwise {@code null}.
+     */
+    private Chart_VectorWriter vector;
+
+    /**
+     * Notified of the time taken in each phase and of what is drawn and
+     * written, or {@code null} (the default).
+     */
+    protected Chart_MetricsListener metricsListener;
+
+    /**
+     * The number of primitives drawn since {@link #render(Dimension)} began.
+     */
+    private long primitives;
+
+    /**
+     * The number of bytes of rasters requested since
+     * {@link #render(Dimension)} began.
+     */
+    private long rasterBytes;
+
+    /**
+     * {@code true} while {@link #render(Dimension)} draws into {@link #bi}
+     * with {@link #g2}.
+     */
+    private boolean rendering;
 
     public Chart(Generic_Environment e) {
         this(e, 0);
@@ -265,12 +434,269 @@ public abstract class Chart extends Chart_Runnable
         return executorService;
     }
 
-    public void setData(Object[] data) {
+    public Chart_ImageWriter getImageWriter() {
+        return imageWriter;
+    }
+
+    public void setImageWriter(Chart_ImageWriter imageWriter) {
+        this.imageWriter = imageWriter;
+    }
+
+    public Chart_AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    public void setAdmissionController(Chart_AdmissionController ac) {
+        this.admissionController = ac;
+    }
+
+    public Chart_RasterPool getRasterPool() {
+        return rasterPool;
+    }
+
+    public void setRasterPool(Chart_RasterPool rasterPool) {
+        this.rasterPool = rasterPool;
+    }
+
+    public IndexColorModel getPalette() {
+        return palette;
+    }
+
+    public void setPalette(IndexColorModel palette) {
+        this.palette = palette;
+    }
+
+    /**
+     * @return {@code true} if the chart is rendered into indexed colour
+     * images.
+     */
+    public boolean isIndexed() {
+        return palette != null;
+    }
+
+    /**
+     * Sets {@link #palette} to a palette of the colours of the chart (see
+     * {@link #getPaletteColours()}) or to {@code null}.
+     *
+     * @param indexed Whether to render the chart into indexed colour images.
+     */
+    public void setIndexed(boolean indexed) {
+        palette = indexed ? Chart_Palette.of(getPaletteColours()) : null;
+    }
+
+    /**
+     * @return The colours the chart draws with other than the standard
+     * colours of every chart (see {@link Chart_Palette#of(Color...)}). None
+     * by default.
+     */
+    protected Color[] getPaletteColours() {
+        return new Color[0];
+    }
+
+    /**
+     * @return The bytes per pixel of the images the chart is rendered into.
+     */
+    public int getRasterBytesPerPixel() {
+        if (palette == null) {
+            return Chart_AdmissionController.RASTER_BYTES_PER_PIXEL;
+        }
+        return 1;
+    }
+
+    /**
+     * @param width The image width.
+     * @param height The image height.
+     * @return An image from {@link #rasterPool} or a new image if that is
+     * {@code null}. The image is indexed colour if there is a
+     * {@link #palette}.
+     */
+    protected BufferedImage newImage(int width, int height) {
+        rasterBytes += (long) width * height * getRasterBytesPerPixel();
+        if (rasterPool == null) {
+            return createImage(width, height);
+        }
+        if (palette != null) {
+            return rasterPool.borrow(width, height, palette);
+        }
+        return rasterPool.borrow(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * @param width The image width.
+     * @param height The image height.
+     * @return A new image, which is indexed colour if there is a
+     * {@link #palette}.
+     */
+    private BufferedImage createImage(int width, int height) {
+        if (palette == null) {
+            return new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+        }
+        return new BufferedImage(width, height,
+                BufferedImage.TYPE_BYTE_INDEXED, palette);
+    }
+
+    /**
+     * Turns off antialiasing of shapes and text for g if there is a
+     * {@link #palette}.
+     *
+     * @param g The graphics of an image returned from
+     * {@link #newImage(int, int)}.
+     */
+    protected void initHints(Graphics2D g) {
+        if (palette != null) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        }
+    }
+
+    public Chart_LayerCache getLayerCache() {
+        return layerCache;
+    }
+
+    public void setLayerCache(Chart_LayerCache layerCache) {
+        this.layerCache = layerCache;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public ForkJoinPool getTilePool() {
+        return tilePool;
+    }
+
+    public void setTilePool(ForkJoinPool tilePool) {
+        this.tilePool = tilePool;
+    }
+
+    public Chart_FontMetrics getTextMetrics() {
+        return textMetrics;
+    }
+
+    public void setTextMetrics(Chart_FontMetrics textMetrics) {
+        this.textMetrics = textMetrics;
+    }
+
+    public Chart_LabelCache getLabelCache() {
+        return labelCache;
+    }
+
+    public void setLabelCache(Chart_LabelCache labelCache) {
+        this.labelCache = labelCache;
+    }
+
+    public Chart_MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(Chart_MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Reports the time since start to {@link #metricsListener} if there is
+     * one. Phases are timed whether or not there is a listener as that costs
+     * next to nothing at this granularity.
+     *
+     * @param phase The phase completed.
+     * @param start The {@link System#nanoTime()} the phase started.
+     */
+    protected void endPhase(Chart_MetricsListener.Phase phase, long start) {
+        Chart_MetricsListener m = metricsListener;
+        if (m != null) {
+            m.phaseComplete(this, phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reports n to {@link #metricsListener} if there is one.
+     *
+     * @param counter What was counted.
+     * @param n The count.
+     */
+    protected void count(Chart_MetricsListener.Counter counter, long n) {
+        Chart_MetricsListener m = metricsListener;
+        if (m != null) {
+            m.count(this, counter, n);
+        }
+    }
+
+    /**
+     * Charts with equal keys must lay out and draw their backgrounds (see
+     * {@link #drawBackground()}) identically whatever their data, and their
+     * data must not change the layout. The key should therefore include the
+     * class and every parameter the background depends on, including the
+     * {@link #palette} (see {@link Chart_Palette#getKey(IndexColorModel)})
+     * as a layer is an image of the same type as the chart.
+     *
+     * @return A key for {@link #layerCache} or {@code null} (the default) if
+     * the background is not to be cached.
+     */
+    protected Object getLayerKey() {
+        return null;
+    }
+
+    /**
+     * @return The layout established by {@link #layout()}: the dimensions and
+     * positions set when drawing the title, axes and legend.
+     */
+    protected int[] getLayout() {
+        return new int[]{imageWidth, imageHeight, dataStartRow, dataMiddleRow,
+            dataEndRow, dataStartCol, dataEndCol, xAxisHeight, yAxisWidth,
+            extraWidthLeft, extraWidthRight, extraHeightTop, extraHeightBottom,
+            originRow, originCol, legendHeight, legendWidth};
+    }
+
+    /**
+     * @param l A layout as returned from {@link #getLayout()}.
+     */
+    protected void setLayout(int[] l) {
+        imageWidth = l[0];
+        imageHeight = l[1];
+        dataStartRow = l[2];
+        dataMiddleRow = l[3];
+        dataEndRow = l[4];
+        dataStartCol = l[5];
+        dataEndCol = l[6];
+        xAxisHeight = l[7];
+        yAxisWidth = l[8];
+        extraWidthLeft = l[9];
+        extraWidthRight = l[10];
+        extraHeightTop = l[11];
+        extraHeightBottom = l[12];
+        originRow = l[13];
+        originCol = l[14];
+        legendHeight = l[15];
+        legendWidth = l[16];
+    }
+
+    public void addGeneric_EventListener(Chart_EventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeGeneric_EventListener(Chart_EventListener listener) {
+        listeners.remove(listener);
+    }
+
+    public D getData() {
+        return data;
+    }
+
+    public void setData(D data) {
         initData(data);
+        long start = System.nanoTime();
         initialiseParameters(data);
+        endPhase(Chart_MetricsListener.Phase.INITIALISE_PARAMETERS, start);
     }
 
-    public void initData(Object[] data) {
+    public void initData(D data) {
         this.data = data;
     }
 
@@ -293,11 +719,11 @@ public abstract class Chart extends Chart_Runnable
     /**
      * @param data The data from which parameters will be initialised.
      */
-    public void initialiseParameters(Object[] data) {
-        maxX = new BigDecimal(((BigDecimal) data[1]).toString());
-        minX = new BigDecimal(((BigDecimal) data[2]).toString());
-        maxY = new BigDecimal(((BigDecimal) data[3]).toString());
-        minY = new BigDecimal(((BigDecimal) data[4]).toString());
+    public void initialiseParameters(D data) {
+        maxX = data.getMaxX();
+        minX = data.getMinX();
+        maxY = data.getMaxY();
+        minY = data.getMinY();
         setCellHeight();
         setCellWidth();
         setOriginRow();
@@ -444,11 +870,7 @@ public abstract class Chart extends Chart_Runnable
         this.xAxisLabel = xAxisLabel;
         this.yAxisLabel = yAxisLabel;
         this.drawOriginLinesOnPlot = drawOriginLinesOnPlot;
-        this.dataStartRow = 0;//extraHeightTop + boundaryThickness;
-        this.dataMiddleRow = dataStartRow + dataHeight / 2;
-        this.dataEndRow = dataStartRow + dataHeight;
-        this.dataStartCol = 0;
-        this.dataEndCol = dataStartCol + dataWidth;
+        resetLayout();
         this.decimalPlacePrecisionForCalculations = decimalPlacePrecisionForCalculations;
         this.decimalPlacePrecisionForDisplay = significantDigits;
         this.significantDigits = significantDigits;
@@ -460,7 +882,7 @@ public abstract class Chart extends Chart_Runnable
 //        }
     }
 
-    public abstract Object[] getDefaultData();
+    public abstract D getDefaultData();
 
     protected void resize(JFrame f) {
         f.pack();
@@ -473,20 +895,20 @@ public abstract class Chart extends Chart_Runnable
 
     public void initFontMetrics() {
         if (fontMetrics == null) {
-            if (g2 != null) {
-                fontMetrics = g2.getFontMetrics();
-            }
             Font f = Generic_Visualisation.getDefaultFont();
-            fontMetrics = new Canvas().getFontMetrics(f);
+            fontMetrics = textMetrics.getFontMetrics(f);
         }
     }
 
     public void initG2Image() {
-        bi = new BufferedImage(imageWidth, imageHeight,
-                BufferedImage.TYPE_INT_ARGB);
+        bi = newImage(imageWidth, imageHeight);
         g2image = (Graphics2D) bi.getGraphics();
-        g2image.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
+        if (palette == null) {
+            g2image.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+        } else {
+            initHints(g2image);
+        }
         //mediaTracker = new MediaTracker(this);
         //mediaTracker.addImage(bi, 0);
     }
@@ -623,30 +1045,144 @@ public abstract class Chart extends Chart_Runnable
         return r;
     }
 
+    /**
+     * Calculates and returns the column in the image for the data with value
+     * x using {@link #getRoundingMode()}. This is the double precision
+     * equivalent of {@link #coordinateToScreenCol(BigDecimal)} for use when
+     * drawing data. It uses the affine transform set up in
+     * {@link #setCellWidth()} and so does no BigDecimal arithmetic and no
+     * allocation.
+     *
+     * The result is the same as for the BigDecimal method except when the
+     * exact value of (x - minX) / cellWidth is within a few units in the last
+     * place of a double of a rounding boundary (a half integer for the HALF_*
+     * rounding modes and an integer for the others), or when x or minX cannot
+     * be represented as a double without a loss of precision that matters at
+     * the scale of a cell. In these cases the result may differ by one
+     * column.
+     *
+     * @param x The x value.
+     * @return the column in the image for the data with value x.
+     */
+    public int coordinateToScreenCol(double x) {
+        return dataStartCol + round((x - xOffset) * xScale, getRoundingMode());
+    }
+
+    /**
+     * Calculates and returns the row in the image for the data with value y
+     * using {@link #getRoundingMode()}. This is the double precision
+     * equivalent of {@link #coordinateToScreenRow(BigDecimal)} for use when
+     * drawing data. The result is as for the BigDecimal method with the same
+     * exceptions as detailed for {@link #coordinateToScreenCol(double)}.
+     *
+     * @param y The y value.
+     * @return the row in the image for the data with value y.
+     */
+    public int coordinateToScreenRow(double y) {
+        int row = 0;
+        if (yScale != 0) {
+            row = getDataHeight() - round((y - yOffset) * yScale,
+                    getRoundingMode());
+        }
+        return dataStartRow + row;
+    }
+
+    /**
+     * For converting a length in x data units into a number of columns. This
+     * is the double precision equivalent of dividing by {@link #cellWidth}
+     * and rounding to 0 decimal places.
+     *
+     * @param dx The length in x data units.
+     * @return The number of columns.
+     */
+    public int lengthToScreenCols(double dx) {
+        return round(dx * xScale, getRoundingMode());
+    }
+
+    /**
+     * For converting a length in y data units into a number of rows. This is
+     * the double precision equivalent of dividing by {@link #cellHeight} and
+     * rounding to 0 decimal places.
+     *
+     * @param dy The length in y data units.
+     * @return The number of rows.
+     */
+    public int lengthToScreenRows(double dy) {
+        return round(dy * yScale, getRoundingMode());
+    }
+
+    /**
+     * Rounds v to an integer in the same way as rounding a BigDecimal to 0
+     * decimal places using rm.
+     *
+     * @param v The value to round.
+     * @param rm The RoundingMode.
+     * @return v rounded.
+     * @throws ArithmeticException if rm is {@link RoundingMode#UNNECESSARY}
+     * and v is not an integer.
+     */
+    public static int round(double v, RoundingMode rm) {
+        double f = Math.floor(v);
+        double d = v - f;
+        if (d == 0) {
+            return (int) f;
+        }
+        switch (rm) {
+            case CEILING:
+                return (int) f + 1;
+            case FLOOR:
+                return (int) f;
+            case UP:
+                return (int) (f < 0 ? f : f + 1);
+            case DOWN:
+                return (int) (f < 0 ? f + 1 : f);
+            case HALF_UP:
+                return (int) (d > 0.5d || (d == 0.5d && f >= 0) ? f + 1 : f);
+            case HALF_DOWN:
+                return (int) (d > 0.5d || (d == 0.5d && f < 0) ? f + 1 : f);
+            case HALF_EVEN:
+                return (int) Math.rint(v);
+            default:
+                throw new ArithmeticException("Rounding necessary for " + v);
+        }
+    }
+
     //public abstract void initialiseParameters(Object[] data);
     public void setCellHeight() {
+        long start = System.nanoTime();
         int dp = decimalPlacePrecisionForCalculations;
         if (minY == null) {
             cellHeight = BigDecimal.valueOf(2);
             cellHeightDiv2 = BigDecimal.ONE;
+            yScale = 0;
+            yOffset = 0;
         } else {
             cellHeight = Math_BigDecimal.divideRoundIfNecessary(maxY.subtract(minY), BigDecimal.valueOf(getDataHeight()),
                     dp, roundingMode);
             cellHeightDiv2 = Math_BigDecimal.divideRoundIfNecessary(cellHeight, BigDecimal.valueOf(2), dp, roundingMode);
+            yScale = cellHeight.signum() == 0 ? 0 : 1.0d / cellHeight.doubleValue();
+            yOffset = minY.doubleValue();
         }
+        endPhase(Chart_MetricsListener.Phase.SET_CELL_HEIGHT, start);
     }
 
     public void setCellWidth() {
+        long start = System.nanoTime();
         int dp = decimalPlacePrecisionForCalculations;
         if (minX == null) {
             cellWidth = BigDecimal.valueOf(2);
             cellWidthDiv2 = BigDecimal.ONE;
+            xScale = 0;
+            xOffset = 0;
         } else {
             cellWidth = Math_BigDecimal.divideRoundIfNecessary(maxX.subtract(minX), BigDecimal.valueOf(getDataWidth()),
                     dp, roundingMode);
             cellWidthDiv2 = Math_BigDecimal.divideRoundIfNecessary(cellWidth,
                     BigDecimal.valueOf(2), dp, roundingMode);
+            xScale = cellWidth.signum() == 0 ? 0 : 1.0d / cellWidth.doubleValue();
+            xOffset = minX.doubleValue();
         }
+        endPhase(Chart_MetricsListener.Phase.SET_CELL_WIDTH, start);
     }
 
     public void setOriginRow() {
@@ -717,6 +1253,14 @@ public abstract class Chart extends Chart_Runnable
     public void setPaint(Color c) {
 //        g2.setPaint(c);
 //        g2image.setPaint(c);
+        if (vector != null) {
+            vector.setPaint(c);
+            return;
+        }
+        if (recorder != null) {
+            recorder.setPaint(c);
+            return;
+        }
         if (g2 != null) {
             g2.setPaint(c);
         }
@@ -726,8 +1270,17 @@ public abstract class Chart extends Chart_Runnable
     }
 
     public void draw(Line2D line) {
+        primitives++;
 //        g2.draw(line);
 //        g2image.draw(line);
+        if (vector != null) {
+            vector.draw(line);
+            return;
+        }
+        if (recorder != null) {
+            recorder.draw(line);
+            return;
+        }
         if (g2 != null) {
             g2.draw(line);
         }
@@ -738,39 +1291,32 @@ public abstract class Chart extends Chart_Runnable
 
     public void draw(
             Point2D point) {
-//        // draw as a line with zero length
-//        draw(new Line2D.Double(point, point));
         // draw as an x cross
-        int crossLength = 4;
-        Point2D a = new Point2D.Double((int) point.getX() - crossLength,
-                (int) point.getY() - crossLength);
-        Point2D b = new Point2D.Double((int) point.getX() + crossLength,
-                (int) point.getY() + crossLength);
-        draw(new Line2D.Double(a, b));
-        Point2D c = new Point2D.Double((int) point.getX() - crossLength,
-                (int) point.getY() + crossLength);
-        Point2D d = new Point2D.Double((int) point.getX() + crossLength,
-                (int) point.getY() - crossLength);
-        draw(new Line2D.Double(c, d));
-//        // draw as an x cross
-//        double crossLength = 1.0d;
-//        Point2D a = new Point2D.Double(
-//                point.getX() - crossLength, 
-//                point.getY() - crossLength);
-//        Point2D b = new Point2D.Double(
-//                point.getX() + crossLength, 
-//                point.getY() + crossLength);
-//        draw(new Line2D.Double(a, b));
-//        Point2D c = new Point2D.Double(
-//                point.getX() - crossLength,
-//                point.getY() + crossLength);
-//        Point2D d = new Point2D.Double(
-//                point.getX() + crossLength,
-//                point.getY() - crossLength);
-//        draw(new Line2D.Double(c, d));
+        drawCross((int) point.getX(), (int) point.getY(), 4);
+    }
+
+    /**
+     * Draws an x cross centred on (col, row).
+     *
+     * @param col The column.
+     * @param row The row.
+     * @param l length of each cross part
+     */
+    public void drawCross(int col, int row, int l) {
+        draw(new Line2D.Double(col - l, row - l, col + l, row + l));
+        draw(new Line2D.Double(col - l, row + l, col + l, row - l));
     }
 
     public void drawString(String text, int col, int row) {
+        primitives++;
+        if (vector != null) {
+            vector.drawString(text, col, row);
+            return;
+        }
+        if (recorder != null) {
+            recorder.drawString(text, col, row);
+            return;
+        }
         if (g2 != null) {
             g2.drawString(text, col, row);
         }
@@ -780,6 +1326,15 @@ public abstract class Chart extends Chart_Runnable
     }
 
     public void fillRect(int col, int row, int width, int height) {
+        primitives++;
+        if (vector != null) {
+            vector.fillRect(col, row, width, height);
+            return;
+        }
+        if (recorder != null) {
+            recorder.fillRect(col, row, width, height);
+            return;
+        }
         if (g2 != null) {
             g2.fillRect(col, row, width, height);
         }
@@ -788,7 +1343,112 @@ public abstract class Chart extends Chart_Runnable
         }
     }
 
+    /**
+     * Draws img scaled to width by height pixels with nearest neighbour
+     * interpolation so that each pixel of img is a solid block. If there is a
+     * {@link #palette} img is mapped to it and drawn as solid fills (see
+     * {@link Chart_Palette#fill(Graphics2D, BufferedImage, int, int, int,
+     * int)}).
+     *
+     * @param img The image to draw.
+     * @param col The column of the left of the image.
+     * @param row The row of the top of the image.
+     * @param width The width to draw the image.
+     * @param height The height to draw the image.
+     */
+    public void drawImage(BufferedImage img, int col, int row, int width,
+            int height) {
+        primitives++;
+        if (vector != null) {
+            vector.drawImage(img, col, row, width, height);
+            return;
+        }
+        if (palette != null) {
+            BufferedImage indexed = Chart_Palette.toIndexed(img, palette);
+            if (g2 != null) {
+                Chart_Palette.fill(g2, indexed, col, row, width, height);
+            }
+            if (g2image != null) {
+                Chart_Palette.fill(g2image, indexed, col, row, width,
+                        height);
+            }
+            return;
+        }
+        if (recorder != null) {
+            recorder.drawImage(img, col, row, width, height);
+            return;
+        }
+        if (g2 != null) {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2.drawImage(img, col, row, width, height, null);
+        }
+        if (g2image != null) {
+            g2image.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2image.drawImage(img, col, row, width, height, null);
+        }
+    }
+
+    /**
+     * Drawing an image copies and converts it, which for a grid of colours
+     * covering a large chart can take more memory than the chart itself, so
+     * such grids are better written straight into the raster of the image
+     * returned here if there is one.
+     *
+     * @return {@link #bi} while it is being drawn into by
+     * {@link #render(Dimension)} other than via a {@link Chart_TileRecorder},
+     * otherwise {@code null}, e.g. when drawing to a
+     * {@link Chart_VectorWriter} or graphics given to
+     * {@link #draw(Graphics2D)}.
+     */
+    protected BufferedImage getRasterTarget() {
+        if (rendering && vector == null && recorder == null) {
+            return bi;
+        }
+        return null;
+    }
+
+    /**
+     * Draws img unscaled.
+     *
+     * @param img The image.
+     * @param col The column of the top left of img.
+     * @param row The row of the top left of img.
+     */
+    public void drawImage(BufferedImage img, int col, int row) {
+        if (palette != null) {
+            drawImage(img, col, row, img.getWidth(), img.getHeight());
+            return;
+        }
+        primitives++;
+        if (vector != null) {
+            vector.drawImage(img, col, row, img.getWidth(), img.getHeight());
+            return;
+        }
+        if (recorder != null) {
+            recorder.drawImage(img, col, row, img.getWidth(),
+                    img.getHeight());
+            return;
+        }
+        if (g2 != null) {
+            g2.drawImage(img, col, row, null);
+        }
+        if (g2image != null) {
+            g2image.drawImage(img, col, row, null);
+        }
+    }
+
     public void draw(Rectangle2D aRectangle2D) {
+        primitives++;
+        if (vector != null) {
+            vector.draw(aRectangle2D);
+            return;
+        }
+        if (recorder != null) {
+            recorder.draw(aRectangle2D);
+            return;
+        }
         if (g2 != null) {
             g2.draw(aRectangle2D);
         }
@@ -798,6 +1458,14 @@ public abstract class Chart extends Chart_Runnable
     }
 
     public void transform(AffineTransform aAffineTransform) {
+        if (vector != null) {
+            vector.transform(aAffineTransform);
+            return;
+        }
+        if (recorder != null) {
+            recorder.transform(aAffineTransform);
+            return;
+        }
         if (g2 != null) {
             g2.transform(aAffineTransform);
         }
@@ -807,6 +1475,14 @@ public abstract class Chart extends Chart_Runnable
     }
 
     public void setTransform(AffineTransform aAffineTransform) {
+        if (vector != null) {
+            vector.setTransform(aAffineTransform);
+            return;
+        }
+        if (recorder != null) {
+            recorder.setTransform(aAffineTransform);
+            return;
+        }
         if (g2 != null) {
             g2.setTransform(aAffineTransform);
         }
@@ -828,6 +1504,7 @@ public abstract class Chart extends Chart_Runnable
     }
 
     public void drawAxes(int interval, int startAgeOfEndYearInterval) {
+        long start = System.nanoTime();
         int yAxisExtraWidthLeft;
 //        int yAxisExtraHeightTop = 0;
 //        int yAxisExtraHeightBottom = 0;
@@ -880,6 +1557,7 @@ public abstract class Chart extends Chart_Runnable
             imageHeight += xAxisExtraHeightBottom - extraHeightBottom;
             extraHeightBottom = xAxisExtraHeightBottom;
         }
+        endPhase(Chart_MetricsListener.Phase.DRAW_AXES, start);
     }
 
     public abstract int[] drawXAxis(int textHeight, int scaleTickLength,
@@ -892,6 +1570,7 @@ public abstract class Chart extends Chart_Runnable
             int seperationDistanceOfAxisAndData);
 
     public void drawOutline() {
+        long start = System.nanoTime();
         //Color color = g2.getColor();
         setPaint(Color.WHITE);
         Rectangle2D rect = new Rectangle2D.Double(0, 0, imageWidth, imageHeight);
@@ -899,6 +1578,7 @@ public abstract class Chart extends Chart_Runnable
         setPaint(Color.DARK_GRAY);
         draw(rect);
         //setPaint(color);
+        endPhase(Chart_MetricsListener.Phase.DRAW_OUTLINE, start);
     }
 
     /**
@@ -908,6 +1588,7 @@ public abstract class Chart extends Chart_Runnable
      * @param title The title to be drawn.
      */
     public void drawTitle(String title) {
+        long start = System.nanoTime();
         setPaint(Color.BLACK);
         int oldExtraHeightTop = extraHeightTop;
         int textHeight = getTextHeight();
@@ -940,14 +1621,16 @@ public abstract class Chart extends Chart_Runnable
             dataMiddleRow = ((dataEndRow - dataStartRow) / 2) + dataStartRow;
             setOriginRow();
         }
+        endPhase(Chart_MetricsListener.Phase.DRAW_TITLE, start);
 //        // Debug
 //        System.out.println("imageHeight " + imageHeight);
     }
 
     public int getTextWidth(String text) {
-        char[] c = text.toCharArray();
-        int r = fontMetrics.charsWidth(c, 0, c.length);
-        return r;
+        if (fontMetrics == null) {
+            initFontMetrics();
+        }
+        return textMetrics.getTextWidth(fontMetrics, text);
     }
 
     public int getTextHeight() {
@@ -959,9 +1642,25 @@ public abstract class Chart extends Chart_Runnable
 
     public void writeText(String text, double angle, int startCol,
             int startRow) {
+        // Labels are drawn directly into indexed colour images, which is
+        // exact as text is not antialiased, rather than as images, and are
+        // written as text by vector writers.
+        if (angle != 0d && labelCache != null && palette == null
+                && vector == null) {
+            Chart_LabelCache.Label l = getLabel(text, angle);
+            if (l != null) {
+                drawImage(l.getImage(), startCol - l.getX(),
+                        startRow - l.getY());
+                return;
+            }
+        }
         // Store the current transform to return the graphics environment to
         AffineTransform currentTransform = null;
-        if (g2 != null) {
+        if (recorder != null) {
+            currentTransform = recorder.getTransform();
+        } else if (vector != null) {
+            currentTransform = vector.getTransform();
+        } else if (g2 != null) {
             currentTransform = g2.getTransform();
         }
         AffineTransform newTransform = AffineTransform.getRotateInstance(
@@ -974,16 +1673,83 @@ public abstract class Chart extends Chart_Runnable
 
     }
 
+    /**
+     * @param text The text.
+     * @param angle The angle.
+     * @return A label from {@link #labelCache} or {@code null} if there is
+     * none yet or text cannot be drawn from an image, e.g. as it is drawn
+     * to two graphics or the transform is not a translation by whole pixels.
+     */
+    private Chart_LabelCache.Label getLabel(String text, double angle) {
+        Graphics2D g;
+        AffineTransform t;
+        Paint p;
+        if (recorder != null) {
+            g = recorder.g;
+            t = recorder.getTransform();
+            p = recorder.getPaint();
+        } else {
+            g = g2 == null ? g2image : g2image == null ? g2 : null;
+            if (g == null) {
+                return null;
+            }
+            t = g.getTransform();
+            p = g.getPaint();
+        }
+        if (!(p instanceof Color)
+                || (t.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0
+                || t.getTranslateX() != Math.rint(t.getTranslateX())
+                || t.getTranslateY() != Math.rint(t.getTranslateY())) {
+            return null;
+        }
+        return labelCache.get(text, g.getFont(), (Color) p, angle, g);
+    }
+
     @Override
     public Dimension draw() {
-        drawOutline();
-        drawTitle(title);
-        drawAxes(getAgeInterval(), getStartAgeOfEndYearInterval());
+        drawBackground();
+        long start = System.nanoTime();
         drawData();
+        endPhase(Chart_MetricsListener.Phase.DRAW_DATA, start);
         Dimension newDim = new Dimension(imageWidth, imageHeight);
         return newDim;
     }
 
+    /**
+     * Resets the image size and data area to those of the data alone, as
+     * before anything around the data has been drawn. {@link #layout()} does
+     * this first so that laying out again gives the same layout rather than
+     * growing the last one.
+     */
+    protected void resetLayout() {
+        imageWidth = dataWidth;
+        imageHeight = dataHeight;
+        dataStartRow = 0;
+        dataMiddleRow = dataStartRow + dataHeight / 2;
+        dataEndRow = dataStartRow + dataHeight;
+        dataStartCol = 0;
+        dataEndCol = dataStartCol + dataWidth;
+        xAxisHeight = 0;
+        yAxisWidth = 0;
+        extraWidthLeft = 0;
+        extraWidthRight = 0;
+        extraHeightTop = 0;
+        extraHeightBottom = 0;
+        legendHeight = 0;
+        legendWidth = 0;
+    }
+
+    /**
+     * Draws the outline, title and axes. This is all that sets the layout and
+     * so the image size (see {@link #layout()}), so overrides that draw more,
+     * such as legends, must not leave it to {@link #drawData()} to do so.
+     */
+    public void drawBackground() {
+        drawOutline();
+        drawTitle(title);
+        drawAxes(getAgeInterval(), getStartAgeOfEndYearInterval());
+    }
+
     public abstract void drawData();
 
     @Override
@@ -993,100 +1759,479 @@ public abstract class Chart extends Chart_Runnable
     }
 
     /**
+     * If {@code true} (the default) {@link #run()} draws the chart directly
+     * into a {@link BufferedImage} (see {@link #render()}). If {@code false}
+     * the chart is drawn by printing a {@link Chart_Printable} to a PostScript
+     * {@link StreamPrintService} (see {@link #renderViaPrintService()}).
+     */
+    protected boolean headless = true;
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Where {@link #run()} encodes and writes the chart. In
+     * {@link Chart_ExecutionMode#PLATFORM} mode (the default) this is done on
+     * {@link #executorService}. In {@link Chart_ExecutionMode#VIRTUAL} mode it
+     * is done on a shared virtual thread executor so that a slow filesystem
+     * does not tie up {@link #executorService}.
+     */
+    protected Chart_ExecutionMode executionMode = Chart_ExecutionMode.PLATFORM;
+
+    public Chart_ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(Chart_ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Draws the chart directly into a {@link BufferedImage} without a print
+     * service or any temporary file. A first pass is drawn without graphics to
+     * establish the layout and so the final image dimensions (see
+     * {@link #layout()}), then the chart is drawn into an image of those
+     * dimensions (see {@link #render(Dimension)}).
      *
+     * @return The image drawn which is also stored as {@link #bi}.
      */
-    @Override
-    public void run() {
+    public BufferedImage render() {
+        return render(layout());
+    }
+
+    /**
+     * Draws the background without graphics to establish the layout, which
+     * the data does not change (see {@link #drawBackground()}). The layout is
+     * reset first (see {@link #resetLayout()}) so calling this again gives the
+     * same dimensions. If there is a
+     * {@link #layerCache} holding a layer for {@link #getLayerKey()}, the
+     * layout is restored from that instead.
+     *
+     * @return The dimensions of the image the chart renders to.
+     */
+    public Dimension layout() {
+        long start = System.nanoTime();
+        layer = null;
+        layerKey = null;
+        layerLayout = null;
+        Object key = layerCache == null ? null : getLayerKey();
+        if (key != null) {
+            layer = layerCache.get(key);
+            if (layer != null) {
+                setLayout(layer.layout);
+                endPhase(Chart_MetricsListener.Phase.LAYOUT, start);
+                return new Dimension(imageWidth, imageHeight);
+            }
+        }
+        g2 = null;
+        resetLayout();
+        drawBackground();
+        Dimension r = new Dimension(imageWidth, imageHeight);
+        if (key != null) {
+            layerKey = key;
+            layerLayout = getLayout();
+        }
+        endPhase(Chart_MetricsListener.Phase.LAYOUT, start);
+        return r;
+    }
+
+    /**
+     * Draws the chart into a new {@link BufferedImage}. If {@link #layout()}
+     * found a cached layer, the background is copied from it and only the
+     * data is drawn. Otherwise if the layer is to be cached, the background
+     * is drawn into a separate image which is cached and then copied.
+     *
+     * @param d The dimensions returned from {@link #layout()}.
+     * @return The image drawn which is also stored as {@link #bi}.
+     */
+    public BufferedImage render(Dimension d) {
+        long start = System.nanoTime();
+        primitives = 0L;
+        rasterBytes = 0L;
+        bi = newImage(d.width, d.height);
+        if (layer == null && layerKey != null) {
+            BufferedImage background = createImage(d.width, d.height);
+            rasterBytes += (long) d.width * d.height
+                    * getRasterBytesPerPixel();
+            Graphics2D g = background.createGraphics();
+            try {
+                initHints(g);
+                this.g2 = g;
+                drawBackground();
+            } finally {
+                g.dispose();
+                g2 = null;
+            }
+            layer = new Chart_LayerCache.Layer(background, layerLayout);
+            layerCache.put(layerKey, layer);
+        }
+        Graphics2D g = bi.createGraphics();
+        rendering = true;
         try {
-            Canvas = new Chart_Canvas();
-            Canvas.Plot = this;
-            Canvas.rect = new Rectangle(0, 0, getDataWidth(), getDataHeight());
-            //            Graphics2D g2 = (Graphics2D) Canvas.getGraphics();
-            //            setG2(g2);
-            //            //Canvas.paint(g2);
-            //            Dimension dim = draw();
-            //            Canvas.setDimension(dim);
-            PrinterJob pj = PrinterJob.getPrinterJob();
-            Chart_Printable printable = new Chart_Printable(Canvas);
-            pj.setPrintable(printable);
-            String psMimeType = "application/postscript";
-            FileOutputStream fos = null;
-            //        PrintService[] printServices = PrinterJob.lookupPrintServices();
-            StreamPrintService streamPrintService = null;
-            StreamPrintServiceFactory[] spsf;
-            spsf = PrinterJob.lookupStreamPrintServices(psMimeType);
-            Path dir = file.getParent();
-            Files.createDirectories(dir);
-            Path psFile = Paths.get(dir.toString(), file.getFileName() + ".ps");
-            System.out.println("psFile " + psFile.toString());
-            if (spsf.length > 0) {
-                try {
-                    Files.createFile(psFile);
-                    fos = new FileOutputStream(psFile.toFile());
-                    streamPrintService = spsf[0].getPrintService(fos);
-                    // streamPrintService can now be set as the service on a PrinterJob
-                } catch (IOException e) {
-                    System.err.println(e.getMessage());
-                    e.printStackTrace(System.err);
+            initHints(g);
+            if (layer == null) {
+                this.g2 = g;
+                drawBackground();
+                drawData(g);
+            } else {
+                if (palette != null && palette.equals(
+                        layer.background.getColorModel())) {
+                    // Copy the indexes as drawing would dither them.
+                    bi.getRaster().setRect(layer.background.getRaster());
+                } else {
+                    g.setComposite(AlphaComposite.Src);
+                    g.drawImage(layer.background, 0, 0, null);
+                    g.setComposite(AlphaComposite.SrcOver);
                 }
+                drawData(g);
             }
+        } finally {
+            rendering = false;
+            layer = null;
+            layerKey = null;
+            layerLayout = null;
+            g.dispose();
+            g2 = null;
+        }
+        endPhase(Chart_MetricsListener.Phase.RASTERIZE, start);
+        count(Chart_MetricsListener.Counter.PRIMITIVES, primitives);
+        count(Chart_MetricsListener.Counter.RASTER_BYTES, rasterBytes);
+        return bi;
+    }
+
+    /**
+     * Draws the data with g. If {@link #tileSize} is greater than 0 and the
+     * image is larger than a tile, {@link #drawData()} is recorded with a
+     * {@link Chart_TileRecorder} and the tiles are then drawn concurrently on
+     * {@link #tilePool} and composited onto g.
+     *
+     * @param g The graphics for the image.
+     */
+    protected void drawData(Graphics2D g) {
+        long start = System.nanoTime();
+        this.g2 = g;
+        int w = bi.getWidth();
+        int h = bi.getHeight();
+        // Tiles are not drawn into indexed colour images as Java2D would
+        // dither them when compositing.
+        if (tileSize <= 0 || (w <= tileSize && h <= tileSize)
+                || palette != null) {
+            drawData();
+            endPhase(Chart_MetricsListener.Phase.DRAW_DATA, start);
+            return;
+        }
+        Chart_TileRecorder r = new Chart_TileRecorder(g, w, h, tileSize);
+        recorder = r;
+        try {
+            drawData();
+        } finally {
+            recorder = null;
+        }
+        r.render(tilePool == null ? ForkJoinPool.commonPool() : tilePool, g);
+        endPhase(Chart_MetricsListener.Phase.DRAW_DATA, start);
+    }
+
+    /**
+     * Draws the chart as SVG to w (see {@link Chart_SvgWriter}). The chart is
+     * laid out (see {@link #layout()}) and then each element is written as it
+     * is drawn, so no image is allocated however large the chart or however
+     * much data is drawn.
+     *
+     * @param w The writer to write to. This should be buffered. It is flushed
+     * but not closed.
+     * @param mergePaths Whether consecutive lines are merged into paths.
+     * @throws IOException If encountered.
+     */
+    public void renderSvg(Writer w, boolean mergePaths) throws IOException {
+        Dimension d = layoutVector();
+        Chart_SvgWriter sw = new Chart_SvgWriter(w, d.width, d.height,
+                fontMetrics.getFont(), mergePaths);
+        sw.begin();
+        drawVector(sw);
+        sw.end();
+    }
+
+    /**
+     * Draws the chart as a new page of doc (see {@link Chart_PdfDocument}).
+     * The chart is laid out (see {@link #layout()}) and then drawn to the page
+     * which is then ended, so only the page being drawn is held in memory.
+     *
+     * @param doc The document to add a page to.
+     * @throws IOException If encountered.
+     */
+    public void renderPdf(Chart_PdfDocument doc) throws IOException {
+        Dimension d = layoutVector();
+        Chart_PdfDocument.Page p = doc.beginPage(d.width, d.height,
+                fontMetrics.getFont());
+        drawVector(p);
+        p.end();
+    }
+
+    /**
+     * Lays the chart out to be drawn in a vector format.
+     *
+     * @return The dimensions of the chart.
+     */
+    private Dimension layoutVector() {
+        Dimension r = layout();
+        // The cached background is a raster so is not used.
+        layer = null;
+        layerKey = null;
+        layerLayout = null;
+        initFontMetrics();
+        return r;
+    }
+
+    /**
+     * Draws the chart to v.
+     *
+     * @param v The vector format to draw to.
+     * @throws IOException If encountered.
+     */
+    private void drawVector(Chart_VectorWriter v) throws IOException {
+        primitives = 0L;
+        vector = v;
+        try {
+            drawBackground();
+            long start = System.nanoTime();
+            drawData();
+            endPhase(Chart_MetricsListener.Phase.DRAW_DATA, start);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            vector = null;
+        }
+        count(Chart_MetricsListener.Counter.PRIMITIVES, primitives);
+    }
+
+    /**
+     * Writes the chart as SVG to file (see {@link #renderSvg(Writer,
+     * boolean)}) with lines merged into paths. Any missing parent directories
+     * are created. The time taken is reported as
+     * {@link Chart_MetricsListener.Phase#ENCODE}.
+     *
+     * @param file The file to write to.
+     * @return file
+     * @throws IOException If encountered.
+     */
+    public Path saveSvg(Path file) throws IOException {
+        long start = System.nanoTime();
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (Writer w = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            renderSvg(w, true);
+        }
+        endPhase(Chart_MetricsListener.Phase.ENCODE, start);
+        if (metricsListener != null) {
+            count(Chart_MetricsListener.Counter.BYTES_WRITTEN,
+                    Files.size(file));
+        }
+        return file;
+    }
+
+    /**
+     * Writes the chart as a single page PDF document to file (see
+     * {@link #renderPdf(Chart_PdfDocument)}). Any missing parent directories
+     * are created. The time taken is reported as
+     * {@link Chart_MetricsListener.Phase#ENCODE}. To write many charts to one
+     * document use {@link Chart_PdfDocument#write(Path, Stream)}.
+     *
+     * @param file The file to write to.
+     * @return file
+     * @throws IOException If encountered.
+     */
+    public Path savePdf(Path file) throws IOException {
+        long start = System.nanoTime();
+        Chart_PdfDocument.write(file, Stream.of(this));
+        endPhase(Chart_MetricsListener.Phase.ENCODE, start);
+        if (metricsListener != null) {
+            count(Chart_MetricsListener.Counter.BYTES_WRITTEN,
+                    Files.size(file));
+        }
+        return file;
+    }
+
+    /**
+     * Draws the chart by printing a {@link Chart_Printable} to a PostScript
+     * {@link StreamPrintService}. This writes and then deletes a temporary
+     * ".ps" file alongside {@link #file}. {@link #render()} produces the same
+     * image without the print service or the file, and {@link #savePdf(Path)}
+     * writes a vector document directly.
+     *
+     * @return The image drawn which is also stored as {@link #bi}.
+     * @throws IOException If encountered.
+     */
+    public BufferedImage renderViaPrintService() throws IOException {
+        Canvas = new Chart_Canvas();
+        Canvas.Plot = this;
+        Canvas.rect = new Rectangle(0, 0, getDataWidth(), getDataHeight());
+        PrinterJob pj = PrinterJob.getPrinterJob();
+        Chart_Printable printable = new Chart_Printable(Canvas);
+        pj.setPrintable(printable);
+        String psMimeType = "application/postscript";
+        FileOutputStream fos = null;
+        StreamPrintService streamPrintService = null;
+        StreamPrintServiceFactory[] spsf;
+        spsf = PrinterJob.lookupStreamPrintServices(psMimeType);
+        Path dir = file.getParent();
+        Files.createDirectories(dir);
+        Path psFile = Paths.get(dir.toString(), file.getFileName() + ".ps");
+        if (spsf.length > 0) {
             try {
-                //            PrintRequestAttributeSet pras;
-                //            PrintService printService = printerJob.getPrintService();
-                //            PrintServiceAttributeSet psas = printService.getAttributes();
-                //            System.out.println(psas.toString());
-                //            printerJob.print();
-                //            System.out.println("pj.getJobName()" + printerJob.getJobName());
-                //            System.out.println("pj.isCancelled()" + printerJob.isCancelled());
-                //            printerJob.setPrintService(printServices[0]);
-                pj.setPrintService(streamPrintService);
-                PrintRequestAttributeSet pras = new HashPrintRequestAttributeSet();
-                pras.add(new Copies(1));
-                pj.print(pras);
-                setBi(Canvas.getBufferedImage());
-                //            Rectangle r = Canvas.getBounds();
-                //            Graphics2D g2 = (Graphics2D) Canvas.getGraphics();
-                //            setG2(g2);
-                //            //Canvas.paint(g2);
-                //            Dimension dim = draw();
-                //            Canvas.setDimension(dim);
-                //Canvas.setDimension(Canvas.paintAndGetNewDimensions(g2));
-                //Canvas.rect = new Rectangle(dim);
-                //Canvas.setSize(dataWidth, dataHeight);
-                // Canvas.paint(g2);
-                long delay = 10000;
-                Generic_Visualisation v = new Generic_Visualisation(env);
-                future = v.saveImage(executorService, this, Canvas.getBufferedImage(), delay, format, file);
-                //            fileOutputStream.close();
-                //            printerJob.cancel();
-                //            psFile.delete();
-                ////            System.out.println("pj.getJobName() " + printerJob.getJobName());
-                ////            System.out.println("pj.isCancelled() " + printerJob.isCancelled());
-                //        } catch (IOException e) {
-                //            System.err.println(e.getMessage());
-                //            e.printStackTrace(System.err);
-            } catch (PrinterException e) {
+                Files.createFile(psFile);
+                fos = new FileOutputStream(psFile.toFile());
+                streamPrintService = spsf[0].getPrintService(fos);
+                // streamPrintService can now be set as the service on a PrinterJob
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
                 e.printStackTrace(System.err);
-            } finally {
-                //printerJob.cancel();
-                try {
+            }
+        }
+        try {
+            pj.setPrintService(streamPrintService);
+            PrintRequestAttributeSet pras = new HashPrintRequestAttributeSet();
+            pras.add(new Copies(1));
+            pj.print(pras);
+            setBi(Canvas.getBufferedImage());
+        } catch (PrinterException e) {
+            e.printStackTrace(System.err);
+        } finally {
+            try {
+                if (fos != null) {
                     fos.close();
-                    pj.cancel();
-                    Files.delete(psFile);
-                } catch (IOException e) {
-                    e.printStackTrace(System.err);
                 }
+                pj.cancel();
+                Files.deleteIfExists(psFile);
+            } catch (IOException e) {
+                e.printStackTrace(System.err);
+            }
+        }
+        return bi;
+    }
+
+    /**
+     * Encodes and writes {@link #bi} to {@link #file} on es. Once written, or
+     * if writing fails, listeners are notified with a
+     * {@link Chart_RenderingCompleteEvent} and then the returned future
+     * completes.
+     *
+     * @param es The executor to write on.
+     * @return A future that completes with {@link #file} once written.
+     */
+    public CompletableFuture<Path> save(Executor es) {
+        BufferedImage image = bi;
+        CompletableFuture<Path> r = new CompletableFuture<>();
+        es.execute(() -> {
+            Path f = null;
+            Throwable failure = null;
+            try {
+                f = imageWriter.write(image, format, file, this,
+                        metricsListener);
+            } catch (IOException | RuntimeException ex) {
+                failure = ex;
+            }
+            notifyListenersOfRenderingComplete(
+                    new Chart_RenderingCompleteEvent(this, f, failure));
+            if (failure == null) {
+                r.complete(f);
+            } else {
+                r.completeExceptionally(failure);
+            }
+        });
+        return r;
+    }
+
+    private void notifyListenersOfRenderingComplete(
+            Chart_RenderingCompleteEvent e) {
+        listeners.forEach((l) -> {
+            l.renderingComplete(e);
+        });
+    }
+
+    /**
+     * Renders the chart and then saves it (see {@link #save(Executor)}) as
+     * soon as rendering is complete. {@link #future} is set to the result. If
+     * there is an {@link #admissionController} then rendering waits until it
+     * admits the estimated memory needed, which is released once saved. If
+     * {@link #format} is "SVG" or "PDF" the chart is instead streamed to
+     * {@link #file} on this thread (see {@link #saveSvg(Path)} and
+     * {@link #savePdf(Path)}) without an image.
+     */
+    @Override
+    public void run() {
+        Chart_AdmissionController ac = admissionController;
+        Chart_PngEncoder encoder = Chart_AdmissionController.getEncoder(
+                imageWriter, format);
+        long bytes = 0L;
+        CompletableFuture<Path> saved = null;
+        try {
+            if (headless && ("SVG".equalsIgnoreCase(format)
+                    || "PDF".equalsIgnoreCase(format))) {
+                future = CompletableFuture.completedFuture(
+                        "SVG".equalsIgnoreCase(format) ? saveSvg(file)
+                        : savePdf(file));
+                notifyListenersOfRenderingComplete(
+                        new Chart_RenderingCompleteEvent(this, file, null));
+                return;
+            }
+            if (headless) {
+                Dimension d = layout();
+                if (ac != null) {
+                    long estimate = ac.estimate(this, d);
+                    ac.acquire(estimate, encoder);
+                    bytes = estimate;
+                }
+                render(d);
+            } else {
+                renderViaPrintService();
+            }
+            ExecutorService es;
+            if (executionMode == Chart_ExecutionMode.VIRTUAL) {
+                es = Chart_ExecutionMode.getSharedVirtualThreadExecutor();
+            } else {
+                es = getExecutorService();
+            }
+            saved = save(es);
+            future = saved;
+        } catch (IOException | InterruptedException | RuntimeException
+                | OutOfMemoryError ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
             }
-        } catch (OutOfMemoryError e) {
-            long time;
-            //time = 60000L; // 1 minute
-            //time = 120000L;// 2 minutes
-            time = 240000L; // 4 minutes
-            Generic_Execution.waitSychronized(env, this, time); // wait a time
-            System.out.println("...on we go.");
-            run();
-        } catch (IOException ex) {
             Logger.getLogger(Chart.class.getName()).log(Level.SEVERE, null, ex);
+            future = CompletableFuture.failedFuture(ex);
+            notifyListenersOfRenderingComplete(
+                    new Chart_RenderingCompleteEvent(this, null, ex));
+        } finally {
+            // Release the image and the memory admitted once saved, or now if
+            // rendering or saving failed to start.
+            Chart_RasterPool pool = rasterPool;
+            BufferedImage image = pool == null ? null : bi;
+            if (image != null) {
+                bi = null;
+            }
+            long admitted = bytes;
+            Runnable release = () -> {
+                if (image != null) {
+                    pool.release(image);
+                }
+                if (admitted > 0L) {
+                    ac.release(admitted, encoder);
+                }
+            };
+            if (saved == null) {
+                release.run();
+            } else {
+                saved.whenComplete((f, t) -> release.run());
+            }
         }
     }
 }
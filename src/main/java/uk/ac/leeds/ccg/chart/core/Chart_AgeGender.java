@@ -20,7 +20,9 @@ import java.awt.geom.Line2D;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
 
@@ -28,8 +30,10 @@ import uk.ac.leeds.ccg.math.Math_BigDecimal;
  * An abstract class for creating Age by Gender Population visualisations and
  * possibly rendering them in a lightweight component as suited to headless
  * rendering.
+ *
+ * @param <V> The type of the value for each age interval.
  */
-public abstract class Chart_AgeGender extends Chart {
+public abstract class Chart_AgeGender<V> extends Chart<Data_AgeGender<V>> {
 
     public Chart_AgeGender(Generic_Environment e) {
         super(e);
@@ -63,9 +67,9 @@ public abstract class Chart_AgeGender extends Chart {
     }
 
     @Override
-    public void initialiseParameters(Object[] data) {
-        maxX = new BigDecimal(((BigDecimal) data[2]).toString());
-        minX = maxX.negate();
+    public void initialiseParameters(Data_AgeGender<V> data) {
+        maxX = data.getMaxX();
+        minX = data.getMinX();
         maxY = BigDecimal.valueOf(getStartAgeOfEndYearInterval() + getAgeInterval());
         minY = BigDecimal.ZERO;
         setCellHeight();
@@ -74,6 +78,22 @@ public abstract class Chart_AgeGender extends Chart {
         setOriginCol();
     }
 
+    /**
+     * The background depends on the layout parameters and the x and y
+     * extents, but not on the values for each age.
+     *
+     * @return A key for the background layer.
+     */
+    @Override
+    protected Object getLayerKey() {
+        return Arrays.asList(getClass(), title, xAxisLabel, yAxisLabel,
+                dataWidth, dataHeight, minX, maxX, minY, maxY,
+                getAgeInterval(), getStartAgeOfEndYearInterval(),
+                drawOriginLinesOnPlot, decimalPlacePrecisionForCalculations,
+                decimalPlacePrecisionForDisplay, roundingMode,
+                Chart_Palette.getKey(palette));
+    }
+
     @Override
     public void setOriginCol() {
 //        originCol = dataStartCol;
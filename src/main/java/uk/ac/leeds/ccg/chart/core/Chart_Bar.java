@@ -22,18 +22,18 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.NavigableMap;
 import java.util.concurrent.ExecutorService;
+import uk.ac.leeds.ccg.chart.data.Data_Bar;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
-import uk.ac.leeds.ccg.generic.util.Generic_Collections;
 
 /**
  * An abstract class for creating Age by Gender Population visualisations and
  * possibly rendering them in a lightweight component as suited to headless
  * rendering.
  */
-public abstract class Chart_Bar extends Chart {
+public abstract class Chart_Bar extends Chart<Data_Bar> {
 
     protected int xAxisIncrement;
     protected int numberOfYAxisTicks;
@@ -74,25 +74,9 @@ public abstract class Chart_Bar extends Chart {
     }
 
     @Override
-    public void initialiseParameters(Object[] data) {
-        Object[] intervalCountsAndLabels;
-        intervalCountsAndLabels = (Object[]) data[0];
-
-        TreeMap<Integer, Integer> map;
-        map = (TreeMap<Integer, Integer>) intervalCountsAndLabels[0];
-
-        BigDecimal[] minmMaxBigDecimal = (BigDecimal[]) data[1];
-        minX = minmMaxBigDecimal[0];
-        BigDecimal intervalWidth = (BigDecimal) data[2];
-        maxX = new BigDecimal(map.lastKey()).multiply(intervalWidth);
-        int[] minMax = Generic_Collections.getMinMaxInteger(map);
-        minY = BigDecimal.ZERO;
-        maxY = BigDecimal.valueOf(minMax[1]);
-        setCellHeight();
-        setCellWidth();
-        setOriginRow();
-        setOriginCol();
-
+    public void initialiseParameters(Data_Bar data) {
+        super.initialiseParameters(data);
+        BigDecimal intervalWidth = data.getIntervalWidth();
         BigDecimal cellWidth = getCellWidth();
         if (cellWidth.compareTo(BigDecimal.ZERO) == 0) {
             barWidth = 1;
@@ -282,14 +266,9 @@ public abstract class Chart_Bar extends Chart {
             int seperationDistanceOfAxisAndData) {
 //        MathContext mc;
 //        mc = new MathContext(getDecimalPlacePrecisionForCalculations(), getRoundingMode());               
-        Object[] intervalCountsLabelsMins;
-        intervalCountsLabelsMins = (Object[]) data[0];
-        TreeMap<Integer, Integer> counts;
-        counts = (TreeMap<Integer, Integer>) intervalCountsLabelsMins[0];
-        TreeMap<Integer, String> labels;
-        labels = (TreeMap<Integer, String>) intervalCountsLabelsMins[1];
-        TreeMap<Integer, BigDecimal> mins;
-        mins = (TreeMap<Integer, BigDecimal>) intervalCountsLabelsMins[2];
+        NavigableMap<Integer, Integer> counts = data.getCounts();
+        NavigableMap<Integer, String> labels = data.getLabels();
+        NavigableMap<Integer, BigDecimal> mins = data.getMins();
 //        int xIncrement;
 //        xIncrement = getxIncrement();
 //        if (xIncrement == 0) {
@@ -30,7 +30,7 @@ public class Chart_Canvas extends Canvas {
     public Chart_Canvas() {
     }
 
-    public Chart Plot;
+    public Chart<?> Plot;
     public Graphics2D g2d;
     public BufferedImage bi;
     public Rectangle rect;
@@ -46,7 +46,10 @@ public class Chart_Canvas extends Canvas {
 
     //public int paintedCounter; 
     /**
-     * This is a bit strange as the input Graphics g are ignored!
+     * This is a bit strange as the input Graphics g are ignored! The chart is
+     * drawn into {@link #bi}, which is cleared and reused if it is already the
+     * right size, and otherwise is replaced with an image from the raster
+     * pool of the chart (see {@link Chart#newImage(int, int)}).
      *
      * @param g The graphics.
      */
@@ -54,8 +57,20 @@ public class Chart_Canvas extends Canvas {
     public void paint(Graphics g) {
 
         //Rectangle rect = getBounds();
-        bi = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
+        if (g2d != null) {
+            g2d.dispose();
+        }
+        if (bi != null && bi.getWidth() == rect.width
+                && bi.getHeight() == rect.height) {
+            Chart_RasterPool.clear(bi);
+        } else {
+            if (bi != null && Plot.getRasterPool() != null) {
+                Plot.getRasterPool().release(bi);
+            }
+            bi = Plot.newImage(rect.width, rect.height);
+        }
         g2d = (Graphics2D) bi.getGraphics();
+        Plot.initHints(g2d);
 
 //        g2d = (Graphics2D) g;
         // draw all components
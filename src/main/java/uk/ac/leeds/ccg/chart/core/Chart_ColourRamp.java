@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * A colour ramp for mapping counts to colours, held as a lookup table of ARGB
+ * values interpolated between evenly spaced colours.
+ */
+public class Chart_ColourRamp {
+
+    /**
+     * The number of entries in the lookup table.
+     */
+    public static final int SIZE = 256;
+
+    /**
+     * The ARGB lookup table.
+     */
+    protected final int[] argb;
+
+    /**
+     * @param colours The colours evenly spaced from the lowest to the highest
+     * value. There must be at least two.
+     */
+    public Chart_ColourRamp(Color... colours) {
+        if (colours.length < 2) {
+            throw new IllegalArgumentException("At least two colours needed");
+        }
+        argb = new int[SIZE];
+        int segments = colours.length - 1;
+        for (int i = 0; i < SIZE; i++) {
+            double f = i * segments / (double) (SIZE - 1);
+            int s = Math.min(segments - 1, (int) f);
+            double t = f - s;
+            Color a = colours[s];
+            Color b = colours[s + 1];
+            argb[i] = (lerp(a.getAlpha(), b.getAlpha(), t) << 24)
+                    | (lerp(a.getRed(), b.getRed(), t) << 16)
+                    | (lerp(a.getGreen(), b.getGreen(), t) << 8)
+                    | lerp(a.getBlue(), b.getBlue(), t);
+        }
+    }
+
+    private static int lerp(int a, int b, double t) {
+        return (int) Math.round(a + (b - a) * t);
+    }
+
+    /**
+     * @return A ramp from light blue through teal to dark blue.
+     */
+    public static Chart_ColourRamp getDefault() {
+        return new Chart_ColourRamp(new Color(198, 219, 239),
+                new Color(65, 182, 196), new Color(34, 94, 168),
+                new Color(8, 29, 88));
+    }
+
+    /**
+     * @param n The number of colours, at least 2.
+     * @return n colours evenly spaced along the ramp, e.g. for a palette.
+     */
+    public Color[] getColours(int n) {
+        Color[] r = new Color[n];
+        for (int i = 0; i < n; i++) {
+            r[i] = new Color(argb[i * (SIZE - 1) / (n - 1)], true);
+        }
+        return r;
+    }
+
+    /**
+     * @param f A fraction from 0 to 1.
+     * @return The ARGB value for f.
+     */
+    public int getARGB(double f) {
+        int i = (int) (f * (SIZE - 1));
+        return argb[Math.max(0, Math.min(SIZE - 1, i))];
+    }
+
+    /**
+     * Colours counts on a logarithmic scale so that sparse cells remain
+     * visible next to dense ones. Cells with a count of zero are transparent.
+     *
+     * @param counts The counts in row major order.
+     * @param cols The number of columns.
+     * @param rows The number of rows.
+     * @param max The maximum count.
+     * @return A new image of cols by rows pixels.
+     */
+    public BufferedImage toImage(int[] counts, int cols, int rows, int max) {
+        int[] pixels = new int[counts.length];
+        double scale = getScale(max);
+        for (int i = 0; i < counts.length; i++) {
+            int c = counts[i];
+            if (c > 0) {
+                pixels[i] = argb[getIndex(c, scale)];
+            }
+        }
+        BufferedImage r = new BufferedImage(cols, rows,
+                BufferedImage.TYPE_INT_ARGB);
+        r.setRGB(0, 0, cols, rows, pixels, 0, cols);
+        return r;
+    }
+
+    /**
+     * Colours counts as {@link #toImage(int[], int, int, int)} does but
+     * writes them straight into the raster of dst, each cell as a bin by bin
+     * block of pixels, without an intermediate image. Cells with a count of
+     * zero and pixels outside dst are left as they are. If dst has an
+     * {@link IndexColorModel} the index of the nearest colour is written
+     * unless that is transparent. Otherwise dst must be
+     * {@link BufferedImage#TYPE_INT_ARGB} and colours that are not opaque are
+     * composited over the pixels as drawing them would.
+     *
+     * @param dst The image to write into.
+     * @param counts The counts in row major order.
+     * @param cols The number of columns.
+     * @param rows The number of rows.
+     * @param max The maximum count.
+     * @param col The column of dst of the left of the first cell.
+     * @param row The row of dst of the top of the first cell.
+     * @param bin The width and height of each cell in pixels.
+     */
+    public void paint(BufferedImage dst, int[] counts, int cols, int rows,
+            int max, int col, int row, int bin) {
+        int x0 = Math.max(0, col);
+        int x1 = (int) Math.min(dst.getWidth(), col + (long) cols * bin);
+        int y0 = Math.max(0, row);
+        int y1 = (int) Math.min(dst.getHeight(), row + (long) rows * bin);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int w = x1 - x0;
+        double scale = getScale(max);
+        WritableRaster raster = dst.getRaster();
+        ColorModel cm = dst.getColorModel();
+        // The index into argb of each cell of the current row or -1.
+        int[] levels = new int[cols];
+        int r = -1;
+        if (cm instanceof IndexColorModel) {
+            IndexColorModel icm = (IndexColorModel) cm;
+            int[] lut = new int[SIZE];
+            Object pixel = null;
+            for (int i = 0; i < SIZE; i++) {
+                pixel = icm.getDataElements(argb[i], pixel);
+                int index = ((byte[]) pixel)[0] & 0xFF;
+                lut[i] = icm.getAlpha(index) == 0 ? -1 : index;
+            }
+            byte[] line = new byte[w];
+            for (int y = y0; y < y1; y++) {
+                r = setLevels(counts, cols, (y - row) / bin, r, scale, levels);
+                raster.getDataElements(x0, y, w, 1, line);
+                for (int x = x0; x < x1; x++) {
+                    int l = levels[(x - col) / bin];
+                    if (l >= 0 && lut[l] >= 0) {
+                        line[x - x0] = (byte) lut[l];
+                    }
+                }
+                raster.setDataElements(x0, y, w, 1, line);
+            }
+        } else {
+            if (dst.getType() != BufferedImage.TYPE_INT_ARGB) {
+                throw new IllegalArgumentException("Image type "
+                        + dst.getType() + " not supported");
+            }
+            int[] line = new int[w];
+            for (int y = y0; y < y1; y++) {
+                r = setLevels(counts, cols, (y - row) / bin, r, scale, levels);
+                raster.getDataElements(x0, y, w, 1, line);
+                for (int x = x0; x < x1; x++) {
+                    int l = levels[(x - col) / bin];
+                    if (l >= 0) {
+                        int c = argb[l];
+                        line[x - x0] = (c >>> 24) == 0xFF ? c
+                                : over(c, line[x - x0]);
+                    }
+                }
+                raster.setDataElements(x0, y, w, 1, line);
+            }
+        }
+    }
+
+    /**
+     * Sets levels to the index into {@link #argb} of each cell of row r, or
+     * -1 for cells with a count of zero, unless r is last.
+     *
+     * @return r
+     */
+    private int setLevels(int[] counts, int cols, int r, int last,
+            double scale, int[] levels) {
+        if (r != last) {
+            int offset = r * cols;
+            for (int c = 0; c < cols; c++) {
+                int n = counts[offset + c];
+                levels[c] = n > 0 ? getIndex(n, scale) : -1;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param max The maximum count.
+     * @return The scale for {@link #getIndex(int, double)}.
+     */
+    private static double getScale(int max) {
+        return max > 0 ? (SIZE - 1) / Math.log1p(max) : 0d;
+    }
+
+    /**
+     * @param count A count greater than 0.
+     * @param scale The scale for the maximum count.
+     * @return The index into {@link #argb} for count on a logarithmic scale.
+     */
+    private static int getIndex(int count, double scale) {
+        return Math.min(SIZE - 1, (int) (Math.log1p(count) * scale));
+    }
+
+    /**
+     * @param src A colour that is not opaque.
+     * @param dst The colour src is drawn over.
+     * @return The colour of src composited over dst.
+     */
+    private static int over(int src, int dst) {
+        int sa = src >>> 24;
+        int da = dst >>> 24;
+        // The alpha of the result times 255.
+        int a = sa * 255 + da * (255 - sa);
+        if (a == 0) {
+            return 0;
+        }
+        int r = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int s = (src >> shift) & 0xFF;
+            int d = (dst >> shift) & 0xFF;
+            int c = (s * sa * 255 + d * da * (255 - sa) + a / 2) / a;
+            r |= c << shift;
+        }
+        return r | ((a + 127) / 255) << 24;
+    }
+}
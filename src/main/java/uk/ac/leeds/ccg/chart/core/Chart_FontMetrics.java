@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides font metrics without a display and caches text widths. Metrics
+ * are obtained from the graphics of a small image with the default rendering
+ * hints, so they are those of an unscaled image without anti-aliased text or
+ * fractional metrics, as charts are drawn. Metrics are created once for each
+ * font and shared. Text widths are cached keyed by metrics and text. The cache
+ * is bounded by clearing it when it holds {@link #maxEntries} widths, which
+ * is simpler and cheaper to look up concurrently than evicting the least
+ * recently used widths and suits the few labels a batch of charts repeats.
+ * All methods are thread safe and lookups do not lock.
+ */
+public class Chart_FontMetrics {
+
+    /**
+     * The default maximum number of widths held in the cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 14;
+
+    /**
+     * The maximum number of widths held in the cache.
+     */
+    protected final int maxEntries;
+
+    /**
+     * The metrics of each font.
+     */
+    private final ConcurrentHashMap<Font, FontMetrics> metrics;
+
+    /**
+     * The widths of text keyed by metrics.
+     */
+    private final ConcurrentHashMap<FontMetrics, ConcurrentHashMap<String, Integer>> widths;
+
+    /**
+     * The number of widths held, which may briefly exceed the number in
+     * widths while the cache is cleared.
+     */
+    private final AtomicInteger size;
+
+    /**
+     * For creating metrics. Guarded by itself.
+     */
+    private final Graphics2D g;
+
+    /**
+     * The number of lookups that found a width.
+     */
+    private final LongAdder hits;
+
+    /**
+     * The number of lookups that did not find a width.
+     */
+    private final LongAdder misses;
+
+    /**
+     * Creates a cache of up to {@link #DEFAULT_MAX_ENTRIES} widths.
+     */
+    public Chart_FontMetrics() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries The maximum number of widths held in the cache.
+     */
+    public Chart_FontMetrics(int maxEntries) {
+        this.maxEntries = maxEntries;
+        metrics = new ConcurrentHashMap<>();
+        widths = new ConcurrentHashMap<>();
+        size = new AtomicInteger();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+                .createGraphics();
+    }
+
+    /**
+     * @return The metrics and cache shared by all charts that are not given
+     * one.
+     */
+    public static Chart_FontMetrics getDefault() {
+        return Default.INSTANCE;
+    }
+
+    private static class Default {
+
+        static final Chart_FontMetrics INSTANCE = new Chart_FontMetrics();
+    }
+
+    /**
+     * @param f The font.
+     * @return The shared metrics of f.
+     */
+    public FontMetrics getFontMetrics(Font f) {
+        return metrics.computeIfAbsent(f, k -> {
+            synchronized (g) {
+                return g.getFontMetrics(k);
+            }
+        });
+    }
+
+    /**
+     * @param fm The metrics, which need not be from this.
+     * @param text The text.
+     * @return The advance width of text in fm.
+     */
+    public int getTextWidth(FontMetrics fm, String text) {
+        ConcurrentHashMap<String, Integer> m = widths.get(fm);
+        if (m != null) {
+            Integer r = m.get(text);
+            if (r != null) {
+                hits.increment();
+                return r;
+            }
+        }
+        misses.increment();
+        int r = fm.stringWidth(text);
+        if (maxEntries > 0) {
+            if (size.incrementAndGet() > maxEntries) {
+                clear();
+                size.incrementAndGet();
+            }
+            if (m == null) {
+                m = widths.computeIfAbsent(fm, k -> new ConcurrentHashMap<>());
+            }
+            m.put(text, r);
+        }
+        return r;
+    }
+
+    /**
+     * @param f The font.
+     * @param text The text.
+     * @return The advance width of text in f.
+     */
+    public int getTextWidth(Font f, String text) {
+        return getTextWidth(getFontMetrics(f), text);
+    }
+
+    /**
+     * Removes all the widths from the cache.
+     */
+    public void clear() {
+        widths.clear();
+        size.set(0);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return The number of widths held.
+     */
+    public int size() {
+        int r = 0;
+        for (ConcurrentHashMap<String, Integer> m : widths.values()) {
+            r += m.size();
+        }
+        return r;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
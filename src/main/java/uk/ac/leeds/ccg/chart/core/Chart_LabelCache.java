@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of images of rotated text, so that labels repeated across charts
+ * are drawn by copying an image rather than by rasterising rotated glyphs,
+ * which is slow. Labels are keyed by text, font, colour, angle and the
+ * rendering hints that affect text. A label is only drawn into an image the
+ * second time it is looked up, so text that is not repeated, such as data
+ * dependent tick values, is not cached. The text in an image is drawn at the
+ * same position relative to the pixel grid as it is drawn directly, so
+ * copying the image gives the same pixels. The cache holds at most
+ * {@link #maxBytes} of images, evicting the least recently used labels first.
+ */
+public class Chart_LabelCache {
+
+    /**
+     * The number of pixels around the bounds of the text in a label image,
+     * e.g. for italic overhang.
+     */
+    public static final int MARGIN = 2;
+
+    /**
+     * The maximum number of keys looked up once that are remembered.
+     */
+    public static final int MAX_SEEN = 4096;
+
+    /**
+     * The maximum number of bytes of images held in the cache.
+     */
+    protected final long maxBytes;
+
+    /**
+     * The labels in least recently used order.
+     */
+    private final LinkedHashMap<Key, Label> labels;
+
+    /**
+     * The keys looked up once in least recently used order.
+     */
+    private final LinkedHashMap<Key, Boolean> seen;
+
+    /**
+     * The number of bytes of images held.
+     */
+    private long bytes;
+
+    /**
+     * The number of lookups that found a label.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups that did not find a label.
+     */
+    private long misses;
+
+    /**
+     * The number of labels evicted.
+     */
+    private long evictions;
+
+    /**
+     * Creates a cache of up to one two hundred and fifty-sixth of the maximum
+     * heap size.
+     */
+    public Chart_LabelCache() {
+        this(Runtime.getRuntime().maxMemory() / 256L);
+    }
+
+    /**
+     * @param maxBytes The maximum number of bytes of images held in the
+     * cache.
+     */
+    public Chart_LabelCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        labels = new LinkedHashMap<>(16, 0.75f, true);
+        seen = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> e) {
+                return size() > MAX_SEEN;
+            }
+        };
+    }
+
+    /**
+     * @return The cache shared by all charts that are not given one.
+     */
+    public static Chart_LabelCache getDefault() {
+        return Default.INSTANCE;
+    }
+
+    private static class Default {
+
+        static final Chart_LabelCache INSTANCE = new Chart_LabelCache();
+    }
+
+    /**
+     * @param text The text.
+     * @param font The font.
+     * @param colour The colour.
+     * @param angle The angle of rotation in radians.
+     * @param g The graphics the label is for, which gives the rendering
+     * hints.
+     * @return An image of the text drawn rotated about its origin or
+     * {@code null} if this is the first time the label is looked up.
+     */
+    public Label get(String text, Font font, Color colour, double angle,
+            Graphics2D g) {
+        Key k = new Key(text, font, colour.getRGB(), angle,
+                g.getRenderingHint(RenderingHints.KEY_ANTIALIASING),
+                g.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING),
+                g.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS),
+                g.getRenderingHint(RenderingHints.KEY_TEXT_LCD_CONTRAST));
+        synchronized (this) {
+            Label r = labels.get(k);
+            if (r != null) {
+                hits++;
+                return r;
+            }
+            misses++;
+            if (seen.put(k, Boolean.TRUE) == null) {
+                return null;
+            }
+        }
+        Label r = draw(k, colour);
+        synchronized (this) {
+            seen.remove(k);
+            long b = Chart_RasterPool.getBytes(r.image);
+            if (b <= maxBytes) {
+                Label old = labels.put(k, r);
+                if (old != null) {
+                    bytes -= Chart_RasterPool.getBytes(old.image);
+                }
+                bytes += b;
+                Iterator<Label> ite = labels.values().iterator();
+                while (bytes > maxBytes && ite.hasNext()) {
+                    bytes -= Chart_RasterPool.getBytes(ite.next().image);
+                    ite.remove();
+                    evictions++;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param k The key.
+     * @param colour The colour.
+     * @return A new label.
+     */
+    private static Label draw(Key k, Color colour) {
+        AffineTransform rotate = AffineTransform.getRotateInstance(k.angle);
+        FontRenderContext frc = new FontRenderContext(null,
+                k.antialiasing == RenderingHints.VALUE_ANTIALIAS_ON
+                || k.textAntialiasing == RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+                k.fractionalMetrics
+                == RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        Rectangle2D b = k.font.getStringBounds(k.text, frc);
+        b.add(k.font.createGlyphVector(frc, k.text).getVisualBounds());
+        Rectangle r = rotate.createTransformedShape(b).getBounds();
+        int x = MARGIN - r.x;
+        int y = MARGIN - r.y;
+        BufferedImage image = new BufferedImage(r.width + 2 * MARGIN,
+                r.height + 2 * MARGIN, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            setHint(g, RenderingHints.KEY_ANTIALIASING, k.antialiasing);
+            setHint(g, RenderingHints.KEY_TEXT_ANTIALIASING,
+                    k.textAntialiasing);
+            setHint(g, RenderingHints.KEY_FRACTIONALMETRICS,
+                    k.fractionalMetrics);
+            setHint(g, RenderingHints.KEY_TEXT_LCD_CONTRAST, k.lcdContrast);
+            g.setFont(k.font);
+            g.setPaint(colour);
+            g.translate(x, y);
+            g.rotate(k.angle);
+            g.drawString(k.text, 0, 0);
+        } finally {
+            g.dispose();
+        }
+        return new Label(image, x, y);
+    }
+
+    private static void setHint(Graphics2D g, RenderingHints.Key key,
+            Object value) {
+        if (value != null) {
+            g.setRenderingHint(key, value);
+        }
+    }
+
+    /**
+     * Removes all the labels from the cache.
+     */
+    public synchronized void clear() {
+        labels.clear();
+        seen.clear();
+        bytes = 0L;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return labels.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[maxBytes=" + maxBytes
+                + ", bytes=" + bytes + ", size=" + labels.size()
+                + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * An image of text and the position of the origin of the text in it.
+     * Neither is modified once cached.
+     */
+    public static class Label {
+
+        /**
+         * The image.
+         */
+        protected final BufferedImage image;
+
+        /**
+         * The column of the origin of the text in image.
+         */
+        protected final int x;
+
+        /**
+         * The row of the origin of the text in image.
+         */
+        protected final int y;
+
+        /**
+         * @param image The image.
+         * @param x The column of the origin of the text in image.
+         * @param y The row of the origin of the text in image.
+         */
+        public Label(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+    }
+
+    private static class Key {
+
+        final String text;
+        final Font font;
+        final int rgb;
+        final double angle;
+        final Object antialiasing;
+        final Object textAntialiasing;
+        final Object fractionalMetrics;
+        final Object lcdContrast;
+        final int hash;
+
+        Key(String text, Font font, int rgb, double angle, Object antialiasing,
+                Object textAntialiasing, Object fractionalMetrics,
+                Object lcdContrast) {
+            this.text = text;
+            this.font = font;
+            this.rgb = rgb;
+            this.angle = angle;
+            this.antialiasing = antialiasing;
+            this.textAntialiasing = textAntialiasing;
+            this.fractionalMetrics = fractionalMetrics;
+            this.lcdContrast = lcdContrast;
+            int h = text.hashCode();
+            h = 31 * h + font.hashCode();
+            h = 31 * h + rgb;
+            h = 31 * h + Double.hashCode(angle);
+            h = 31 * h + Objects.hashCode(antialiasing);
+            h = 31 * h + Objects.hashCode(textAntialiasing);
+            h = 31 * h + Objects.hashCode(fractionalMetrics);
+            hash = 31 * h + Objects.hashCode(lcdContrast);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return rgb == k.rgb && Double.compare(angle, k.angle) == 0
+                    && text.equals(k.text) && font.equals(k.font)
+                    && Objects.equals(antialiasing, k.antialiasing)
+                    && Objects.equals(textAntialiasing, k.textAntialiasing)
+                    && Objects.equals(fractionalMetrics, k.fractionalMetrics)
+                    && Objects.equals(lcdContrast, k.lcdContrast);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of chart background layers (the outline, title and axes) keyed by
+ * {@link Chart#getLayerKey()}. Charts with equal keys lay out and draw their
+ * backgrounds identically, so a chart that finds its key in the cache need
+ * not lay itself out or draw its background, but can restore the layout and
+ * copy the background before drawing its data. The cache holds at most
+ * {@link #maxBytes} of images, evicting the least recently used layers first.
+ */
+public class Chart_LayerCache {
+
+    /**
+     * The maximum number of bytes of images held in the cache.
+     */
+    protected final long maxBytes;
+
+    /**
+     * The layers in least recently used order.
+     */
+    private final LinkedHashMap<Object, Layer> layers;
+
+    /**
+     * The number of bytes of images held.
+     */
+    private long bytes;
+
+    /**
+     * The number of lookups that found a layer.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups that did not find a layer.
+     */
+    private long misses;
+
+    /**
+     * The number of layers evicted.
+     */
+    private long evictions;
+
+    /**
+     * Creates a cache of up to one thirty-second of the maximum heap size.
+     */
+    public Chart_LayerCache() {
+        this(Runtime.getRuntime().maxMemory() / 32L);
+    }
+
+    /**
+     * @param maxBytes The maximum number of bytes of images held in the
+     * cache.
+     */
+    public Chart_LayerCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        layers = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param key The key.
+     * @return The layer for key or {@code null} if there is none.
+     */
+    public synchronized Layer get(Object key) {
+        Layer r = layers.get(key);
+        if (r == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return r;
+    }
+
+    /**
+     * Adds a layer, evicting the least recently used layers as necessary.
+     *
+     * @param key The key.
+     * @param layer The layer.
+     */
+    public synchronized void put(Object key, Layer layer) {
+        long b = Chart_RasterPool.getBytes(layer.background);
+        if (b > maxBytes) {
+            return;
+        }
+        Layer old = layers.put(key, layer);
+        if (old != null) {
+            bytes -= Chart_RasterPool.getBytes(old.background);
+        }
+        bytes += b;
+        Iterator<Map.Entry<Object, Layer>> ite = layers.entrySet().iterator();
+        while (bytes > maxBytes && ite.hasNext()) {
+            bytes -= Chart_RasterPool.getBytes(ite.next().getValue().background);
+            ite.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all the layers from the cache.
+     */
+    public synchronized void clear() {
+        layers.clear();
+        bytes = 0L;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return layers.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[maxBytes=" + maxBytes
+                + ", bytes=" + bytes + ", size=" + layers.size()
+                + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * A background image and the layout it was drawn with. Neither is
+     * modified once cached.
+     */
+    public static class Layer {
+
+        /**
+         * The background image.
+         */
+        protected final BufferedImage background;
+
+        /**
+         * The layout as returned from {@link Chart#getLayout()}.
+         */
+        protected final int[] layout;
+
+        /**
+         * @param background The background image.
+         * @param layout The layout as returned from {@link Chart#getLayout()}.
+         */
+        public Layer(BufferedImage background, int[] layout) {
+            this.background = background;
+            this.layout = layout;
+        }
+
+        public BufferedImage getBackground() {
+            return background;
+        }
+
+        public int[] getLayout() {
+            return layout.clone();
+        }
+    }
+}
@@ -24,8 +24,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.SortedMap;
 import java.util.concurrent.ExecutorService;
+import uk.ac.leeds.ccg.chart.data.Data_Line;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.util.Generic_Collections;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
@@ -35,7 +37,7 @@ import uk.ac.leeds.ccg.math.Math_BigDecimal;
  * possibly rendering them in a lightweight component as suited to headless
  * rendering.
  */
-public abstract class Chart_Line extends Chart {
+public abstract class Chart_Line extends Chart<Data_Line> {
 
     protected BigDecimal yMax;
 
@@ -67,14 +69,14 @@ public abstract class Chart_Line extends Chart {
      */
     protected int numberOfYAxisTicksLT0;
 
-    protected TreeMap<BigDecimal, ?> xAxisLabels;
+    protected SortedMap<BigDecimal, ?> xAxisLabels;
     protected BigDecimal xMax;
     protected BigDecimal xPin;
     protected BigDecimal xIncrement;
     protected int numberOfXAxisTicks;
 
     private Color[] colours;
-    private ArrayList<String> labels;
+    private List<String> labels;
 
     public Chart_Line(Generic_Environment e) {
         super(e);
@@ -115,13 +117,13 @@ public abstract class Chart_Line extends Chart {
      * @param data -
      */
     @Override
-    public void initialiseParameters(Object[] data) {
-        minY = (BigDecimal) data[1];
-        maxY = (BigDecimal) data[2];
-        minX = (BigDecimal) data[3];
-        maxX = (BigDecimal) data[4];
-        labels = (ArrayList<String>) data[5];
-        xAxisLabels = (TreeMap<BigDecimal, String>) data[6];
+    public void initialiseParameters(Data_Line data) {
+        minY = data.getMinY();
+        maxY = data.getMaxY();
+        minX = data.getMinX();
+        maxX = data.getMaxX();
+        labels = data.getLabels();
+        xAxisLabels = data.getxAxisLabels();
         setCellHeight();
         setCellWidth();
         setOriginRow();
@@ -541,6 +543,14 @@ public abstract class Chart_Line extends Chart {
         this.colours = colours;
     }
 
+    /**
+     * @return The colours of the lines (see {@link #getColours()}).
+     */
+    @Override
+    protected Color[] getPaletteColours() {
+        return getColours();
+    }
+
     public void initColours() {
         colours = new Color[11];
         colours[0] = Color.BLACK;
@@ -559,28 +569,28 @@ public abstract class Chart_Line extends Chart {
     /**
      * @return the labels
      */
-    public ArrayList<String> getLabels() {
+    public List<String> getLabels() {
         return labels;
     }
 
     /**
      * @param labels the labels to set
      */
-    public final void setLabels(ArrayList<String> labels) {
+    public final void setLabels(List<String> labels) {
         this.labels = labels;
     }
 
     /**
      * @return the xAxisLabels
      */
-    public TreeMap<BigDecimal, ?> getxAxisLabels() {
+    public SortedMap<BigDecimal, ?> getxAxisLabels() {
         return xAxisLabels;
     }
 
     /**
      * @param xAxisLabels the xAxisLabels to set
      */
-    public final void setxAxisLabels(TreeMap<BigDecimal, ?> xAxisLabels) {
+    public final void setxAxisLabels(SortedMap<BigDecimal, ?> xAxisLabels) {
         this.xAxisLabels = xAxisLabels;
     }
 
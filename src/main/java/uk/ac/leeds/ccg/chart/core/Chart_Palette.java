@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * For creating the palettes of charts rendered as 8 bit indexed colour images
+ * (see {@link Chart#setPalette(IndexColorModel)}). Charts are mostly drawn in
+ * a few colours, so with a palette of those colours they are drawn exactly
+ * in a quarter of the memory of an ARGB image. Colours drawn that are not in
+ * the palette are drawn as the nearest colour that is.
+ */
+public class Chart_Palette {
+
+    /**
+     * The maximum number of colours in a palette.
+     */
+    public static final int MAX_COLOURS = 256;
+
+    /**
+     * The colours every chart draws with: the background, outline, text and
+     * axes.
+     */
+    private static final Color[] STANDARD = {Color.WHITE, Color.BLACK,
+        Color.DARK_GRAY, Color.GRAY, Color.LIGHT_GRAY};
+
+    private Chart_Palette() {
+    }
+
+    /**
+     * Creates a palette of transparent, the standard colours of charts (white,
+     * black and grey) and colours. Index 0 is transparent so that a new image
+     * with the palette is transparent as a new ARGB image is. Colours that are
+     * not opaque are made opaque as they would not be drawn exactly anyway,
+     * duplicates are dropped and any beyond {@link #MAX_COLOURS} are ignored.
+     *
+     * @param colours Colours to add to the standard ones.
+     * @return A new palette.
+     */
+    public static IndexColorModel of(Color... colours) {
+        Set<Integer> rgbs = new LinkedHashSet<>();
+        for (Color c : STANDARD) {
+            rgbs.add(c.getRGB() & 0xFFFFFF);
+        }
+        for (Color c : colours) {
+            rgbs.add(c.getRGB() & 0xFFFFFF);
+        }
+        int n = Math.min(MAX_COLOURS, rgbs.size() + 1);
+        byte[] r = new byte[n];
+        byte[] g = new byte[n];
+        byte[] b = new byte[n];
+        byte[] a = new byte[n];
+        int i = 1;
+        for (int rgb : rgbs) {
+            if (i == n) {
+                break;
+            }
+            r[i] = (byte) (rgb >>> 16);
+            g[i] = (byte) (rgb >>> 8);
+            b[i] = (byte) rgb;
+            a[i] = (byte) 255;
+            i++;
+        }
+        return new IndexColorModel(8, n, r, g, b, a);
+    }
+
+    /**
+     * IndexColorModel does not compare by its colours in all supported Java
+     * versions, so keys that depend on a palette use this instead.
+     *
+     * @param palette The palette or {@code null}.
+     * @return The ARGB colours of palette in index order or {@code null} if
+     * palette is {@code null}.
+     */
+    public static List<Integer> getKey(IndexColorModel palette) {
+        if (palette == null) {
+            return null;
+        }
+        int n = palette.getMapSize();
+        List<Integer> r = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            r.add(palette.getRGB(i));
+        }
+        return r;
+    }
+
+    /**
+     * Maps each pixel of img to the nearest colour of palette.
+     *
+     * @param img The image.
+     * @param palette The palette.
+     * @return A new indexed colour image with palette.
+     */
+    public static BufferedImage toIndexed(BufferedImage img,
+            IndexColorModel palette) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage r = new BufferedImage(width, height,
+                BufferedImage.TYPE_BYTE_INDEXED, palette);
+        WritableRaster raster = r.getRaster();
+        int[] argb = new int[width];
+        byte[] row = new byte[width];
+        Object pixel = null;
+        for (int y = 0; y < height; y++) {
+            img.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0; x < width; x++) {
+                pixel = palette.getDataElements(argb[x], pixel);
+                row[x] = ((byte[]) pixel)[0];
+            }
+            raster.setDataElements(0, y, width, 1, row);
+        }
+        return r;
+    }
+
+    /**
+     * Draws an indexed colour image scaled to width by height pixels as one
+     * solid fill of each colour in it, with the runs of each colour along
+     * each row as rectangles. Java2D dithers images drawn onto an indexed
+     * colour image, even one with the same palette, which speckles areas of
+     * colour such as density grids. Solid fills are drawn in the nearest
+     * colour of the palette without dithering, so in the colour itself if
+     * that is in the palette. Transparent pixels are not drawn.
+     *
+     * @param g The graphics to draw with.
+     * @param img The indexed colour image (see
+     * {@link #toIndexed(BufferedImage, IndexColorModel)}).
+     * @param col The column of the left of the image.
+     * @param row The row of the top of the image.
+     * @param width The width to draw the image.
+     * @param height The height to draw the image.
+     */
+    public static void fill(Graphics2D g, BufferedImage img, int col,
+            int row, int width, int height) {
+        IndexColorModel cm = (IndexColorModel) img.getColorModel();
+        int w = img.getWidth();
+        int h = img.getHeight();
+        double sx = width / (double) w;
+        double sy = height / (double) h;
+        Path2D.Double[] paths = new Path2D.Double[cm.getMapSize()];
+        Raster raster = img.getRaster();
+        byte[] line = new byte[w];
+        for (int y = 0; y < h; y++) {
+            raster.getDataElements(0, y, w, 1, line);
+            double y0 = row + y * sy;
+            double y1 = row + (y + 1) * sy;
+            int x = 0;
+            while (x < w) {
+                int i = line[x] & 0xFF;
+                int x1 = x + 1;
+                while (x1 < w && line[x1] == line[x]) {
+                    x1++;
+                }
+                if (cm.getAlpha(i) != 0) {
+                    if (paths[i] == null) {
+                        paths[i] = new Path2D.Double();
+                    }
+                    double x0 = col + x * sx;
+                    double x2 = col + x1 * sx;
+                    paths[i].moveTo(x0, y0);
+                    paths[i].lineTo(x2, y0);
+                    paths[i].lineTo(x2, y1);
+                    paths[i].lineTo(x0, y1);
+                    paths[i].closePath();
+                }
+                x = x1;
+            }
+        }
+        Paint p = g.getPaint();
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] != null) {
+                g.setPaint(new Color(cm.getRGB(i), true));
+                g.fill(paths[i]);
+            }
+        }
+        g.setPaint(p);
+    }
+}
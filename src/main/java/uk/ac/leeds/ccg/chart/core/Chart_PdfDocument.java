@@ -0,0 +1,741 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * For writing charts as the pages of a Portable Document Format (PDF) file.
+ * Each page is streamed: its drawing operations are compressed and written
+ * out as they are drawn (see {@link Page}), and once the page ends only the
+ * byte offsets of its objects are kept, so a document can hold any number of
+ * charts, e.g. the age by gender pyramids of every region, in little memory.
+ * The page tree, fonts and cross reference table are written on
+ * {@link #close()}.
+ *
+ * Pages are sized in points with one point for each pixel of the chart. Text
+ * is written in the standard Helvetica fonts, which are not embedded and are
+ * close to but not exactly the width of the font the chart is laid out with.
+ */
+public class Chart_PdfDocument implements Closeable {
+
+    /**
+     * The object number of the document catalog.
+     */
+    private static final int CATALOG = 1;
+
+    /**
+     * The object number of the page tree.
+     */
+    private static final int PAGES = 2;
+
+    /**
+     * The object number of the first font. The fonts are Helvetica,
+     * Helvetica-Bold, Helvetica-Oblique and Helvetica-BoldOblique indexed by
+     * {@link Font#getStyle()}.
+     */
+    private static final int FONTS = 3;
+
+    private static final String[] FONT_NAMES = {"Helvetica",
+        "Helvetica-Bold", "Helvetica-Oblique", "Helvetica-BoldOblique"};
+
+    /**
+     * The stream the document is written to.
+     */
+    private final CountingOutputStream os;
+
+    /**
+     * The byte offset of each object indexed by object number - 1.
+     */
+    private final List<Long> offsets = new ArrayList<>();
+
+    /**
+     * The object number of each page.
+     */
+    private final List<Integer> pages = new ArrayList<>();
+
+    /**
+     * The page being written or {@code null}.
+     */
+    private Page page;
+
+    /**
+     * Writes the start of a document to os.
+     *
+     * @param os The stream to write to. It is closed on {@link #close()}.
+     * @throws IOException If encountered.
+     */
+    public Chart_PdfDocument(OutputStream os) throws IOException {
+        this.os = new CountingOutputStream(os);
+        for (int i = 0; i < FONTS - 1 + FONT_NAMES.length; i++) {
+            offsets.add(0L);
+        }
+        // The comment of binary characters marks the file as binary.
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+    }
+
+    /**
+     * Writes a document of a page for each chart to file. Charts are taken
+     * from the stream one at a time, so a batch of any size can be written
+     * lazily. Any missing parent directories are created.
+     *
+     * @param file The file to write to.
+     * @param charts The charts, each with its data set.
+     * @return file
+     * @throws IOException If encountered.
+     */
+    public static Path write(Path file, Stream<? extends Chart<?>> charts)
+            throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (Chart_PdfDocument doc = new Chart_PdfDocument(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            Iterator<? extends Chart<?>> ite = charts.iterator();
+            while (ite.hasNext()) {
+                ite.next().renderPdf(doc);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return The number of pages ended.
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Begins a new page, ending any page being written.
+     *
+     * @param width The width of the page.
+     * @param height The height of the page.
+     * @param font The font text is written in.
+     * @return The new page to draw to.
+     * @throws IOException If encountered.
+     */
+    public Page beginPage(int width, int height, Font font)
+            throws IOException {
+        if (page != null) {
+            page.end();
+        }
+        page = new Page(width, height, font);
+        return page;
+    }
+
+    /**
+     * Ends any page being written and writes the rest of the document.
+     *
+     * @throws IOException If encountered.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (page != null) {
+                page.end();
+            }
+            for (int i = 0; i < FONT_NAMES.length; i++) {
+                beginObject(FONTS + i);
+                write("<< /Type /Font /Subtype /Type1 /BaseFont /"
+                        + FONT_NAMES[i]
+                        + " /Encoding /WinAnsiEncoding >>\nendobj\n");
+            }
+            beginObject(PAGES);
+            StringBuilder kids = new StringBuilder();
+            for (int p : pages) {
+                kids.append(p).append(" 0 R ");
+            }
+            write("<< /Type /Pages /Kids [" + kids + "] /Count "
+                    + pages.size() + " >>\nendobj\n");
+            beginObject(CATALOG);
+            write("<< /Type /Catalog /Pages " + PAGES
+                    + " 0 R >>\nendobj\n");
+            long xref = os.count;
+            StringBuilder sb = new StringBuilder(20 * offsets.size() + 64);
+            sb.append("xref\n0 ").append(offsets.size() + 1)
+                    .append("\n0000000000 65535 f \n");
+            for (long offset : offsets) {
+                String o = Long.toString(offset);
+                for (int i = o.length(); i < 10; i++) {
+                    sb.append('0');
+                }
+                sb.append(o).append(" 00000 n \n");
+            }
+            sb.append("trailer\n<< /Size ").append(offsets.size() + 1)
+                    .append(" /Root ").append(CATALOG)
+                    .append(" 0 R >>\nstartxref\n").append(xref)
+                    .append("\n%%EOF\n");
+            write(sb);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * @return The number of a new object.
+     */
+    private int newObject() {
+        offsets.add(0L);
+        return offsets.size();
+    }
+
+    /**
+     * Records the offset of object n and writes its start.
+     *
+     * @param n The object number.
+     * @throws IOException If encountered.
+     */
+    private void beginObject(int n) throws IOException {
+        offsets.set(n - 1, os.count);
+        write(n + " 0 obj\n");
+    }
+
+    /**
+     * @param s Characters that are all ISO 8859-1.
+     */
+    private void write(CharSequence s) throws IOException {
+        os.write(s.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Writes pixels as a compressed image object.
+     *
+     * @param n The object number.
+     * @param width The width.
+     * @param height The height.
+     * @param pixels The pixels, three or one bytes each.
+     * @param colourSpace The colour space.
+     * @param sMask The object number of a soft mask or 0 for none.
+     * @throws IOException If encountered.
+     */
+    private void writeImage(int n, int width, int height, byte[] pixels,
+            String colourSpace, int sMask) throws IOException {
+        Deflater d = new Deflater();
+        byte[] buf = new byte[pixels.length + 64];
+        int length;
+        try {
+            d.setInput(pixels);
+            d.finish();
+            length = 0;
+            while (!d.finished()) {
+                if (length == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                length += d.deflate(buf, length, buf.length - length);
+            }
+        } finally {
+            d.end();
+        }
+        beginObject(n);
+        write("<< /Type /XObject /Subtype /Image /Width " + width
+                + " /Height " + height + " /ColorSpace /" + colourSpace
+                + " /BitsPerComponent 8"
+                + (sMask == 0 ? "" : " /SMask " + sMask + " 0 R")
+                + " /Filter /FlateDecode /Length " + length
+                + " >>\nstream\n");
+        os.write(buf, 0, length);
+        write("\nendstream\nendobj\n");
+    }
+
+    /**
+     * A page being written. Drawing operations are written as PDF content
+     * stream operators to a compressed stream as they are drawn, with
+     * consecutive lines of the same colour and transform stroked together as
+     * one path. Images are written as objects after the content once the page
+     * ends. As for {@link Chart_SvgWriter}, lines are stroked one pixel wide
+     * with square caps and offset by half a pixel. The alpha of colours is
+     * ignored.
+     */
+    public class Page implements Chart_VectorWriter {
+
+        protected final int width;
+        protected final int height;
+
+        /**
+         * The font text is written in.
+         */
+        protected final Font font;
+
+        /**
+         * The object number of the content stream.
+         */
+        private final int contents;
+
+        /**
+         * The offset at which the content stream data starts.
+         */
+        private final long start;
+
+        /**
+         * The compressor of {@link #content}.
+         */
+        private final Deflater deflater;
+
+        /**
+         * The compressed content stream.
+         */
+        private final DeflaterOutputStream content;
+
+        /**
+         * For building operators before they are compressed.
+         */
+        private final StringBuilder sb = new StringBuilder(8192);
+
+        /**
+         * The images drawn, written once the page ends.
+         */
+        private final List<BufferedImage> images = new ArrayList<>();
+
+        /**
+         * The WinAnsi encoding of text.
+         */
+        private final Charset charset;
+
+        /**
+         * For testing whether text can be written in {@link #charset}.
+         */
+        private final CharsetEncoder encoder;
+
+        private Color paint = Color.WHITE;
+
+        private AffineTransform transform = new AffineTransform();
+
+        /**
+         * The transform in the content stream.
+         */
+        private AffineTransform applied = new AffineTransform();
+
+        /**
+         * The stroke colour in the content stream or {@code null} if unknown.
+         */
+        private Color stroke;
+
+        /**
+         * The fill colour in the content stream or {@code null} if unknown.
+         */
+        private Color fill;
+
+        /**
+         * Whether there is a path to stroke.
+         */
+        private boolean inPath;
+
+        /**
+         * The end of the last line in the path in thousandths.
+         */
+        private long pathX;
+        private long pathY;
+
+        private boolean ended;
+
+        Page(int width, int height, Font font) throws IOException {
+            this.width = width;
+            this.height = height;
+            this.font = font;
+            charset = Charset.isSupported("windows-1252")
+                    ? Charset.forName("windows-1252")
+                    : StandardCharsets.ISO_8859_1;
+            encoder = charset.newEncoder();
+            contents = newObject();
+            beginObject(contents);
+            write("<< /Length " + (contents + 1)
+                    + " 0 R /Filter /FlateDecode >>\nstream\n");
+            start = os.count;
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            content = new DeflaterOutputStream(os, deflater, 8192);
+            // Flip to y down with the origin top left.
+            sb.append("1 0 0 -1 0 ").append(height)
+                    .append(" cm 1 w 2 J\n");
+        }
+
+        @Override
+        public void setPaint(Color c) {
+            paint = c;
+        }
+
+        @Override
+        public Color getPaint() {
+            return paint;
+        }
+
+        @Override
+        public AffineTransform getTransform() {
+            return new AffineTransform(transform);
+        }
+
+        @Override
+        public void setTransform(AffineTransform at) {
+            transform = new AffineTransform(at);
+        }
+
+        @Override
+        public void transform(AffineTransform at) {
+            transform.concatenate(at);
+        }
+
+        @Override
+        public void draw(Line2D l) {
+            long x1 = Chart_SvgWriter.toThousandths(l.getX1() + 0.5d);
+            long y1 = Chart_SvgWriter.toThousandths(l.getY1() + 0.5d);
+            long x2 = Chart_SvgWriter.toThousandths(l.getX2() + 0.5d);
+            long y2 = Chart_SvgWriter.toThousandths(l.getY2() + 0.5d);
+            if (inPath && (!paint.equals(stroke)
+                    || !transform.equals(applied))) {
+                strokePath();
+            }
+            boolean newPath = !inPath;
+            if (newPath) {
+                applyTransform();
+                if (!paint.equals(stroke)) {
+                    appendColour(paint).append(" RG\n");
+                    stroke = paint;
+                }
+                inPath = true;
+            }
+            if (newPath || x1 != pathX || y1 != pathY) {
+                appendPoint(x1, y1).append(" m ");
+            }
+            appendPoint(x2, y2).append(" l\n");
+            pathX = x2;
+            pathY = y2;
+            flushIfFull();
+        }
+
+        @Override
+        public void draw(Shape s) {
+            strokePath();
+            applyTransform();
+            if (!paint.equals(stroke)) {
+                appendColour(paint).append(" RG\n");
+                stroke = paint;
+            }
+            double[] c = new double[6];
+            PathIterator pi = s.getPathIterator(null);
+            for (; !pi.isDone(); pi.next()) {
+                int type = pi.currentSegment(c);
+                switch (type) {
+                    case PathIterator.SEG_MOVETO:
+                        appendPoints(c, 1).append(" m\n");
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        appendPoints(c, 1).append(" l\n");
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        // PDF has only cubic curves so raise the degree.
+                        double x0 = pathX / 1000d - 0.5d;
+                        double y0 = pathY / 1000d - 0.5d;
+                        double[] q = {
+                            x0 + 2d / 3d * (c[0] - x0),
+                            y0 + 2d / 3d * (c[1] - y0),
+                            c[2] + 2d / 3d * (c[0] - c[2]),
+                            c[3] + 2d / 3d * (c[1] - c[3]), c[2], c[3]};
+                        appendPoints(q, 3).append(" c\n");
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        appendPoints(c, 3).append(" c\n");
+                        break;
+                    default:
+                        sb.append("h\n");
+                }
+            }
+            sb.append("S\n");
+            flushIfFull();
+        }
+
+        @Override
+        public void fillRect(int col, int row, int width, int height) {
+            strokePath();
+            applyTransform();
+            setFill();
+            sb.append(col).append(' ').append(row).append(' ')
+                    .append(width).append(' ').append(height)
+                    .append(" re f\n");
+            flushIfFull();
+        }
+
+        @Override
+        public void drawString(String text, int col, int row) {
+            strokePath();
+            applyTransform();
+            setFill();
+            // Flip text back up the right way.
+            sb.append("BT /F").append(font.getStyle() & 3).append(' ')
+                    .append(font.getSize()).append(" Tf 1 0 0 -1 ")
+                    .append(col).append(' ').append(row)
+                    .append(" Tm (");
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '(' || c == ')' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c >= 32 && c < 127) {
+                    sb.append(c);
+                } else {
+                    int b = '?';
+                    if (encoder.canEncode(c)) {
+                        b = String.valueOf(c).getBytes(charset)[0] & 0xFF;
+                    }
+                    sb.append('\\').append(Integer.toOctalString(b));
+                }
+            }
+            sb.append(") Tj ET\n");
+            flushIfFull();
+        }
+
+        @Override
+        public void drawImage(BufferedImage img, int col, int row,
+                int width, int height) {
+            strokePath();
+            applyTransform();
+            images.add(img);
+            sb.append("q ").append(width).append(" 0 0 ").append(-height)
+                    .append(' ').append(col).append(' ')
+                    .append(row + height).append(" cm /Im")
+                    .append(images.size() - 1).append(" Do Q\n");
+            flushIfFull();
+        }
+
+        /**
+         * Ends the page: writes the rest of the content stream, the images
+         * and the page object. Nothing more can be drawn to the page.
+         *
+         * @throws IOException If encountered.
+         */
+        public void end() throws IOException {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            page = null;
+            strokePath();
+            if (!applied.isIdentity()) {
+                sb.append("Q\n");
+            }
+            flush();
+            try {
+                // The document stream stays open.
+                content.finish();
+            } finally {
+                deflater.end();
+            }
+            long length = os.count - start;
+            write("\nendstream\nendobj\n");
+            int lengthObject = newObject();
+            beginObject(lengthObject);
+            write(length + "\nendobj\n");
+            StringBuilder xObjects = new StringBuilder();
+            for (int i = 0; i < images.size(); i++) {
+                int n = writeImage(images.get(i));
+                xObjects.append(" /Im").append(i).append(' ').append(n)
+                        .append(" 0 R");
+            }
+            images.clear();
+            int p = newObject();
+            beginObject(p);
+            StringBuilder fonts = new StringBuilder();
+            for (int i = 0; i < FONT_NAMES.length; i++) {
+                fonts.append(" /F").append(i).append(' ').append(FONTS + i)
+                        .append(" 0 R");
+            }
+            write("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 "
+                    + width + " " + height + "] /Contents " + contents
+                    + " 0 R /Resources << /Font <<" + fonts + " >>"
+                    + (xObjects.length() == 0 ? ""
+                    : " /XObject <<" + xObjects + " >>")
+                    + " >> >>\nendobj\n");
+            pages.add(p);
+        }
+
+        /**
+         * @param img The image.
+         * @return The object number of the image written.
+         */
+        private int writeImage(BufferedImage img) throws IOException {
+            int w = img.getWidth();
+            int h = img.getHeight();
+            int[] argb = img.getRGB(0, 0, w, h, null, 0, w);
+            byte[] rgb = new byte[argb.length * 3];
+            byte[] alpha = null;
+            for (int i = 0; i < argb.length; i++) {
+                int v = argb[i];
+                rgb[3 * i] = (byte) (v >> 16);
+                rgb[3 * i + 1] = (byte) (v >> 8);
+                rgb[3 * i + 2] = (byte) v;
+                if ((v >>> 24) != 255 && alpha == null) {
+                    alpha = new byte[argb.length];
+                    for (int j = 0; j < i; j++) {
+                        alpha[j] = (byte) 255;
+                    }
+                }
+                if (alpha != null) {
+                    alpha[i] = (byte) (v >>> 24);
+                }
+            }
+            int mask = 0;
+            if (alpha != null) {
+                mask = newObject();
+                Chart_PdfDocument.this.writeImage(mask, w, h, alpha,
+                        "DeviceGray", 0);
+            }
+            int n = newObject();
+            Chart_PdfDocument.this.writeImage(n, w, h, rgb, "DeviceRGB",
+                    mask);
+            return n;
+        }
+
+        /**
+         * Strokes any path.
+         */
+        private void strokePath() {
+            if (inPath) {
+                inPath = false;
+                sb.append("S\n");
+            }
+        }
+
+        /**
+         * Sets the transform in the content stream to {@link #transform}.
+         * Transforms other than the identity are set within a saved graphics
+         * state, restoring which also restores the colours.
+         */
+        private void applyTransform() {
+            if (transform.equals(applied)) {
+                return;
+            }
+            if (!applied.isIdentity()) {
+                sb.append("Q\n");
+                stroke = null;
+                fill = null;
+            }
+            if (!transform.isIdentity()) {
+                sb.append("q ");
+                double[] m = new double[6];
+                transform.getMatrix(m);
+                for (double v : m) {
+                    Chart_SvgWriter.appendThousandths(sb,
+                            Chart_SvgWriter.toThousandths(v)).append(' ');
+                }
+                sb.append("cm\n");
+            }
+            applied = new AffineTransform(transform);
+        }
+
+        private void setFill() {
+            if (!paint.equals(fill)) {
+                appendColour(paint).append(" rg\n");
+                fill = paint;
+            }
+        }
+
+        private StringBuilder appendColour(Color c) {
+            Chart_SvgWriter.appendThousandths(sb,
+                    Math.round(c.getRed() * 1000d / 255d)).append(' ');
+            Chart_SvgWriter.appendThousandths(sb,
+                    Math.round(c.getGreen() * 1000d / 255d)).append(' ');
+            return Chart_SvgWriter.appendThousandths(sb,
+                    Math.round(c.getBlue() * 1000d / 255d));
+        }
+
+        private StringBuilder appendPoint(long x, long y) {
+            Chart_SvgWriter.appendThousandths(sb, x).append(' ');
+            return Chart_SvgWriter.appendThousandths(sb, y);
+        }
+
+        private StringBuilder appendPoints(double[] c, int n) {
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                pathX = Chart_SvgWriter.toThousandths(c[2 * i] + 0.5d);
+                pathY = Chart_SvgWriter.toThousandths(c[2 * i + 1] + 0.5d);
+                appendPoint(pathX, pathY);
+            }
+            return sb;
+        }
+
+        /**
+         * Compresses and writes the operators built so far if there are
+         * many.
+         */
+        private void flushIfFull() {
+            if (sb.length() >= 8192) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (sb.length() == 0) {
+                return;
+            }
+            try {
+                content.write(sb.toString().getBytes(
+                        StandardCharsets.ISO_8859_1));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            sb.setLength(0);
+        }
+    }
+
+    /**
+     * Counts the bytes written so that object offsets are known.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
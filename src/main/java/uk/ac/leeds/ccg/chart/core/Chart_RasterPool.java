@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A pool of images for charts to render into so that a batch of charts of the
+ * same size reuses the same few large rasters rather than allocating a new
+ * one for each chart. Images are pooled by width, height and type, and
+ * indexed colour images also by palette. The pool
+ * holds at most {@link #maxBytes} of images; when returning an image would
+ * exceed this, images of the least recently used size are evicted first.
+ */
+public class Chart_RasterPool {
+
+    /**
+     * The maximum number of bytes of images held in the pool.
+     */
+    protected final long maxBytes;
+
+    /**
+     * The images held keyed by size and type in least recently used order.
+     */
+    private final LinkedHashMap<Key, ArrayDeque<BufferedImage>> images;
+
+    /**
+     * The number of bytes of images held.
+     */
+    private long bytes;
+
+    /**
+     * The number of images borrowed that were taken from the pool.
+     */
+    private long hits;
+
+    /**
+     * The number of images borrowed that were newly allocated.
+     */
+    private long misses;
+
+    /**
+     * The number of images evicted or not pooled as there was no room.
+     */
+    private long evictions;
+
+    /**
+     * Creates a pool of up to one sixteenth of the maximum heap size.
+     */
+    public Chart_RasterPool() {
+        this(Runtime.getRuntime().maxMemory() / 16L);
+    }
+
+    /**
+     * @param maxBytes The maximum number of bytes of images held in the pool.
+     */
+    public Chart_RasterPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        images = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param width The image width.
+     * @param height The image height.
+     * @param type The image type, e.g. {@link BufferedImage#TYPE_INT_ARGB}.
+     * @return A cleared image from the pool if there is one or a new image.
+     */
+    public BufferedImage borrow(int width, int height, int type) {
+        BufferedImage r = take(new Key(width, height, type, null));
+        if (r == null) {
+            return new BufferedImage(width, height, type);
+        }
+        clear(r);
+        return r;
+    }
+
+    /**
+     * @param width The image width.
+     * @param height The image height.
+     * @param palette The palette of the image.
+     * @return A cleared {@link BufferedImage#TYPE_BYTE_INDEXED} image with
+     * palette from the pool if there is one or a new image.
+     */
+    public BufferedImage borrow(int width, int height,
+            IndexColorModel palette) {
+        BufferedImage r = take(new Key(width, height,
+                BufferedImage.TYPE_BYTE_INDEXED, palette));
+        if (r == null) {
+            return new BufferedImage(width, height,
+                    BufferedImage.TYPE_BYTE_INDEXED, palette);
+        }
+        clear(r);
+        return r;
+    }
+
+    /**
+     * @param k The key.
+     * @return An image for k removed from the pool or {@code null}.
+     */
+    private BufferedImage take(Key k) {
+        BufferedImage r = null;
+        synchronized (this) {
+            ArrayDeque<BufferedImage> q = images.get(k);
+            if (q != null) {
+                r = q.pollLast();
+            }
+            if (r == null) {
+                misses++;
+            } else {
+                hits++;
+                bytes -= getBytes(r);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns an image to the pool. The image must no longer be used by the
+     * caller.
+     *
+     * @param bi The image, which may be {@code null} (or of a custom type) in
+     * which case this does nothing.
+     */
+    public synchronized void release(BufferedImage bi) {
+        if (bi == null || bi.getType() == BufferedImage.TYPE_CUSTOM) {
+            return;
+        }
+        long b = getBytes(bi);
+        if (b > maxBytes) {
+            evictions++;
+            return;
+        }
+        Key k = new Key(bi.getWidth(), bi.getHeight(), bi.getType(),
+                bi.getType() == BufferedImage.TYPE_BYTE_INDEXED
+                ? bi.getColorModel() : null);
+        images.computeIfAbsent(k, x -> new ArrayDeque<>()).addLast(bi);
+        bytes += b;
+        // Evict from the least recently used sizes.
+        Iterator<Map.Entry<Key, ArrayDeque<BufferedImage>>> ite
+                = images.entrySet().iterator();
+        while (bytes > maxBytes && ite.hasNext()) {
+            ArrayDeque<BufferedImage> q = ite.next().getValue();
+            while (bytes > maxBytes && !q.isEmpty()) {
+                bytes -= getBytes(q.pollFirst());
+                evictions++;
+            }
+            if (q.isEmpty()) {
+                ite.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the images from the pool.
+     */
+    public synchronized void clear() {
+        images.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * Sets every pixel of bi to transparent black as in a new image.
+     *
+     * @param bi The image to clear.
+     */
+    public static void clear(BufferedImage bi) {
+        Graphics2D g = bi.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, bi.getWidth(), bi.getHeight());
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * @param bi The image.
+     * @return The number of bytes in the raster of bi.
+     */
+    public static long getBytes(BufferedImage bi) {
+        return (long) bi.getWidth() * bi.getHeight()
+                * bi.getColorModel().getPixelSize() / 8L;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[maxBytes=" + maxBytes
+                + ", bytes=" + bytes + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+
+    /**
+     * The size and type of an image, and the palette of an indexed colour
+     * image.
+     */
+    private static class Key {
+
+        final int width;
+        final int height;
+        final int type;
+        final ColorModel palette;
+
+        Key(int width, int height, int type, ColorModel palette) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.palette = palette;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return width == k.width && height == k.height && type == k.type
+                    && Objects.equals(palette, k.palette);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((width * 31 + height) * 31 + type) * 31
+                    + Objects.hashCode(palette);
+        }
+    }
+}
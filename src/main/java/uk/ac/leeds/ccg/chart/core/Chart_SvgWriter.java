@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+
+/**
+ * For drawing a chart as Scalable Vector Graphics (SVG). Each drawing
+ * operation is written to a {@link Writer} as an SVG element as it is drawn,
+ * so no raster is allocated and memory use does not grow with the size of
+ * the image or the number of things drawn. Optionally consecutive lines with
+ * the same paint and transform are merged into a single path of relative
+ * commands, with each line that starts where the previous one ended
+ * continuing the path rather than starting a new sub path, which keeps files
+ * of line graphs and scatter plots compact. Coordinates are written to three
+ * decimal places.
+ *
+ * Lines and shapes are stroked one pixel wide with square caps, like the
+ * default {@link java.awt.BasicStroke}. Their coordinates are offset
+ * by half a pixel so that, like the default stroke normalisation of
+ * {@link java.awt.Graphics2D}, lines between whole pixel coordinates cover
+ * whole pixels.
+ */
+public class Chart_SvgWriter implements Chart_VectorWriter {
+
+    /**
+     * The offset of stroked coordinates.
+     */
+    private static final double STROKE_OFFSET = 0.5d;
+
+    /**
+     * The writer the SVG is written to.
+     */
+    protected final Writer w;
+
+    protected final int width;
+    protected final int height;
+
+    /**
+     * The font text is written in.
+     */
+    protected final Font font;
+
+    /**
+     * Whether consecutive lines are merged into paths.
+     */
+    protected final boolean mergePaths;
+
+    /**
+     * For building each element before it is written.
+     */
+    private final StringBuilder sb = new StringBuilder(256);
+
+    /**
+     * The current paint.
+     */
+    private Color paint = Color.WHITE;
+
+    /**
+     * The current transform.
+     */
+    private AffineTransform transform = new AffineTransform();
+
+    /**
+     * Whether there is a path being merged into that is not yet written.
+     */
+    private boolean inPath;
+
+    /**
+     * The end of the last line merged into the path in thousandths.
+     */
+    private long pathX;
+    private long pathY;
+
+    /**
+     * The number of elements written.
+     */
+    private long elements;
+
+    /**
+     * @param w The writer the SVG is written to. This should be buffered.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param font The font text is written in.
+     * @param mergePaths Whether consecutive lines are merged into paths.
+     */
+    public Chart_SvgWriter(Writer w, int width, int height, Font font,
+            boolean mergePaths) {
+        this.w = w;
+        this.width = width;
+        this.height = height;
+        this.font = font;
+        this.mergePaths = mergePaths;
+    }
+
+    /**
+     * Writes the start of the SVG document.
+     *
+     * @throws IOException If encountered.
+     */
+    public void begin() throws IOException {
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""
+                + width + "\" height=\"" + height + "\" viewBox=\"0 0 "
+                + width + " " + height + "\" font-family=\""
+                + escape(font.getFamily()) + "\" font-size=\""
+                + font.getSize() + "\"" + getFontStyle()
+                + " stroke-width=\"1\" stroke-linecap=\"square\">\n");
+    }
+
+    /**
+     * Writes any path being merged into and the end of the SVG document and
+     * flushes the writer. The writer is not closed.
+     *
+     * @throws IOException If encountered.
+     */
+    public void end() throws IOException {
+        flushPath();
+        w.write("</svg>\n");
+        w.flush();
+    }
+
+    /**
+     * @return The number of elements written.
+     */
+    public long getElements() {
+        return elements;
+    }
+
+    @Override
+    public void setPaint(Color c) {
+        if (!c.equals(paint)) {
+            flushPath();
+            paint = c;
+        }
+    }
+
+    @Override
+    public Color getPaint() {
+        return paint;
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    @Override
+    public void setTransform(AffineTransform at) {
+        if (!at.equals(transform)) {
+            flushPath();
+            transform = new AffineTransform(at);
+        }
+    }
+
+    @Override
+    public void transform(AffineTransform at) {
+        AffineTransform t = getTransform();
+        t.concatenate(at);
+        setTransform(t);
+    }
+
+    @Override
+    public void draw(Line2D l) {
+        double x1 = l.getX1() + STROKE_OFFSET;
+        double y1 = l.getY1() + STROKE_OFFSET;
+        double x2 = l.getX2() + STROKE_OFFSET;
+        double y2 = l.getY2() + STROKE_OFFSET;
+        if (!mergePaths) {
+            sb.setLength(0);
+            sb.append("<line x1=\"");
+            append(x1).append("\" y1=\"");
+            append(y1).append("\" x2=\"");
+            append(x2).append("\" y2=\"");
+            append(y2).append("\"");
+            appendStroke();
+            appendTransform();
+            sb.append("/>\n");
+            write();
+            return;
+        }
+        long tx1 = toThousandths(x1);
+        long ty1 = toThousandths(y1);
+        long tx2 = toThousandths(x2);
+        long ty2 = toThousandths(y2);
+        if (!inPath) {
+            sb.setLength(0);
+            sb.append("<path");
+            appendStroke();
+            appendTransform();
+            sb.append(" fill=\"none\" d=\"M");
+            appendThousandths(tx1).append(' ');
+            appendThousandths(ty1);
+            inPath = true;
+        } else if (tx1 != pathX || ty1 != pathY) {
+            sb.append('m');
+            appendThousandths(tx1 - pathX);
+            appendSigned(ty1 - pathY);
+        }
+        sb.append('l');
+        appendThousandths(tx2 - tx1);
+        appendSigned(ty2 - ty1);
+        pathX = tx2;
+        pathY = ty2;
+        if (sb.length() > 8192) {
+            // Keep the buffer small by continuing in a new path.
+            flushPath();
+        }
+    }
+
+    @Override
+    public void fillRect(int col, int row, int width, int height) {
+        flushPath();
+        sb.setLength(0);
+        sb.append("<rect x=\"").append(col).append("\" y=\"").append(row)
+                .append("\" width=\"").append(width).append("\" height=\"")
+                .append(height).append("\" fill=\"");
+        appendColour(paint);
+        sb.append('"');
+        appendOpacity("fill-opacity", paint);
+        appendTransform();
+        sb.append("/>\n");
+        write();
+    }
+
+    @Override
+    public void draw(Shape s) {
+        flushPath();
+        sb.setLength(0);
+        sb.append("<path");
+        appendStroke();
+        appendTransform();
+        sb.append(" fill=\"none\" d=\"");
+        double[] c = new double[6];
+        PathIterator pi = s.getPathIterator(null);
+        for (; !pi.isDone(); pi.next()) {
+            int type = pi.currentSegment(c);
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    sb.append('M');
+                    appendPoints(c, 1);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    sb.append('L');
+                    appendPoints(c, 1);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    sb.append('Q');
+                    appendPoints(c, 2);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    sb.append('C');
+                    appendPoints(c, 3);
+                    break;
+                default:
+                    sb.append('Z');
+            }
+        }
+        sb.append("\"/>\n");
+        write();
+    }
+
+    @Override
+    public void drawString(String text, int col, int row) {
+        flushPath();
+        sb.setLength(0);
+        sb.append("<text x=\"").append(col).append("\" y=\"").append(row)
+                .append("\" fill=\"");
+        appendColour(paint);
+        sb.append('"');
+        appendOpacity("fill-opacity", paint);
+        appendTransform();
+        sb.append('>').append(escape(text)).append("</text>\n");
+        write();
+    }
+
+    /**
+     * Writes img as an embedded PNG scaled to width by height pixels without
+     * smoothing.
+     */
+    @Override
+    public void drawImage(BufferedImage img, int col, int row, int width,
+            int height) {
+        flushPath();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(img, "PNG", png);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        sb.setLength(0);
+        sb.append("<image x=\"").append(col).append("\" y=\"").append(row)
+                .append("\" width=\"").append(width).append("\" height=\"")
+                .append(height).append("\" preserveAspectRatio=\"none\"")
+                .append(" image-rendering=\"pixelated\"");
+        appendTransform();
+        sb.append(" href=\"data:image/png;base64,")
+                .append(Base64.getEncoder().encodeToString(png.toByteArray()))
+                .append("\"/>\n");
+        write();
+    }
+
+    /**
+     * Writes the path being merged into if there is one.
+     */
+    private void flushPath() {
+        if (inPath) {
+            inPath = false;
+            sb.append("\"/>\n");
+            write();
+        }
+    }
+
+    private void write() {
+        try {
+            w.append(sb);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        elements++;
+    }
+
+    private void appendPoints(double[] c, int n) {
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            append(c[2 * i] + STROKE_OFFSET).append(' ');
+            append(c[2 * i + 1] + STROKE_OFFSET);
+        }
+    }
+
+    private void appendStroke() {
+        sb.append(" stroke=\"");
+        appendColour(paint);
+        sb.append('"');
+        appendOpacity("stroke-opacity", paint);
+    }
+
+    private void appendColour(Color c) {
+        sb.append('#');
+        String hex = Integer.toHexString(c.getRGB() & 0xFFFFFF);
+        for (int i = hex.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        sb.append(hex);
+    }
+
+    private void appendOpacity(String name, Color c) {
+        int a = c.getAlpha();
+        if (a != 255) {
+            sb.append(' ').append(name).append("=\"");
+            append(a / 255d).append('"');
+        }
+    }
+
+    private void appendTransform() {
+        if (!transform.isIdentity()) {
+            sb.append(" transform=\"matrix(");
+            append(transform.getScaleX()).append(' ');
+            append(transform.getShearY()).append(' ');
+            append(transform.getShearX()).append(' ');
+            append(transform.getScaleY()).append(' ');
+            append(transform.getTranslateX()).append(' ');
+            append(transform.getTranslateY()).append(")\"");
+        }
+    }
+
+    static long toThousandths(double v) {
+        return Math.round(v * 1000d);
+    }
+
+    /**
+     * Appends v rounded to 3 decimal places without trailing zeros.
+     *
+     * @param v The value.
+     * @return {@link #sb}
+     */
+    private StringBuilder append(double v) {
+        return appendThousandths(toThousandths(v));
+    }
+
+    /**
+     * Appends a second path coordinate, separated from the first by a space
+     * unless it starts with a minus sign.
+     *
+     * @param r The coordinate in thousandths.
+     */
+    private void appendSigned(long r) {
+        if (r >= 0L) {
+            sb.append(' ');
+        }
+        appendThousandths(r);
+    }
+
+    /**
+     * Appends r thousandths without trailing zeros.
+     *
+     * @param r The value in thousandths.
+     * @return {@link #sb}
+     */
+    private StringBuilder appendThousandths(long r) {
+        return appendThousandths(sb, r);
+    }
+
+    /**
+     * Appends r thousandths to sb without trailing zeros.
+     *
+     * @param sb The builder to append to.
+     * @param r The value in thousandths.
+     * @return sb
+     */
+    static StringBuilder appendThousandths(StringBuilder sb, long r) {
+        if (r % 1000L == 0L) {
+            return sb.append(r / 1000L);
+        }
+        if (r < 0L) {
+            sb.append('-');
+            r = -r;
+        }
+        sb.append(r / 1000L).append('.');
+        int f = (int) (r % 1000L);
+        if (f < 100) {
+            sb.append('0');
+        }
+        if (f < 10) {
+            sb.append('0');
+        }
+        while (f % 10 == 0) {
+            f /= 10;
+        }
+        return sb.append(f);
+    }
+
+    private String getFontStyle() {
+        String r = "";
+        if (font.isBold()) {
+            r += " font-weight=\"bold\"";
+        }
+        if (font.isItalic()) {
+            r += " font-style=\"italic\"";
+        }
+        return r;
+    }
+
+    /**
+     * @param s The text.
+     * @return s with the characters special to XML escaped.
+     */
+    private static String escape(String s) {
+        StringBuilder r = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String e;
+            switch (c) {
+                case '<':
+                    e = "&lt;";
+                    break;
+                case '>':
+                    e = "&gt;";
+                    break;
+                case '&':
+                    e = "&amp;";
+                    break;
+                case '"':
+                    e = "&quot;";
+                    break;
+                default:
+                    e = null;
+            }
+            if (e != null && r == null) {
+                r = new StringBuilder(s.length() + 16);
+                r.append(s, 0, i);
+            }
+            if (r != null) {
+                if (e == null) {
+                    r.append(c);
+                } else {
+                    r.append(e);
+                }
+            }
+        }
+        return r == null ? s : r.toString();
+    }
+}
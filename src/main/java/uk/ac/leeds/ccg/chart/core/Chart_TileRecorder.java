@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * For drawing a large image in tiles concurrently. Drawing operations are
+ * recorded in order into a list for each tile they may touch, then each tile
+ * is drawn from its list into its own image on a {@link ForkJoinPool}. Shapes
+ * are generated once by the recording thread and only rasterised per tile.
+ */
+public class Chart_TileRecorder {
+
+    /**
+     * The number of pixels by which a shape may extend outside its geometric
+     * bounds when drawn, e.g. for the width of a stroke.
+     */
+    public static final int MARGIN = 2;
+
+    private static final int PAINT = 0;
+    private static final int TRANSFORM = 1;
+    private static final int LINE = 2;
+    private static final int FILL_RECT = 3;
+    private static final int DRAW = 4;
+    private static final int STRING = 5;
+    private static final int IMAGE = 6;
+
+    /**
+     * A recorded operation. The meaning of the coordinates and o depends on
+     * the kind.
+     */
+    private static final class Op {
+
+        final int kind;
+        final double a;
+        final double b;
+        final double c;
+        final double d;
+        final Object o;
+
+        Op(int kind, double a, double b, double c, double d, Object o) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+            this.o = o;
+        }
+    }
+
+    /**
+     * The graphics that tiles are set up like.
+     */
+    protected final Graphics2D g;
+
+    protected final int width;
+    protected final int height;
+    protected final int tileSize;
+    protected final int cols;
+    protected final int rows;
+
+    /**
+     * The operations for each tile in row major order.
+     */
+    private final List<List<Op>> tiles;
+
+    /**
+     * The current transform or {@code null} for the transform of
+     * {@link #g}.
+     */
+    private AffineTransform transform;
+
+    /**
+     * The current paint or {@code null} for the paint of {@link #g}.
+     */
+    private Paint paint;
+
+    /**
+     * @param g The graphics that tiles are set up like: rendering hints,
+     * font, paint, stroke and transform are copied from g.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param tileSize The width and height of the tiles.
+     */
+    public Chart_TileRecorder(Graphics2D g, int width, int height,
+            int tileSize) {
+        this.g = g;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        cols = (width + tileSize - 1) / tileSize;
+        rows = (height + tileSize - 1) / tileSize;
+        tiles = new ArrayList<>(cols * rows);
+        for (int i = 0; i < cols * rows; i++) {
+            tiles.add(new ArrayList<>());
+        }
+    }
+
+    public void setPaint(Paint p) {
+        paint = p;
+        addToAll(new Op(PAINT, 0, 0, 0, 0, p));
+    }
+
+    /**
+     * @return The current paint.
+     */
+    public Paint getPaint() {
+        return paint == null ? g.getPaint() : paint;
+    }
+
+    /**
+     * @return A copy of the current transform.
+     */
+    public AffineTransform getTransform() {
+        return transform == null ? g.getTransform()
+                : new AffineTransform(transform);
+    }
+
+    public void setTransform(AffineTransform at) {
+        transform = new AffineTransform(at);
+        addToAll(new Op(TRANSFORM, 0, 0, 0, 0, transform));
+    }
+
+    public void transform(AffineTransform at) {
+        AffineTransform t = getTransform();
+        t.concatenate(at);
+        setTransform(t);
+    }
+
+    public void draw(Line2D l) {
+        add(new Op(LINE, l.getX1(), l.getY1(), l.getX2(), l.getY2(), null),
+                l.getBounds2D());
+    }
+
+    public void fillRect(int col, int row, int width, int height) {
+        add(new Op(FILL_RECT, col, row, width, height, null),
+                new Rectangle(col, row, width, height));
+    }
+
+    public void draw(Shape s) {
+        add(new Op(DRAW, 0, 0, 0, 0, s), s.getBounds2D());
+    }
+
+    public void drawString(String text, int col, int row) {
+        // Text is rare so it is not worth measuring.
+        addToAll(new Op(STRING, col, row, 0, 0, text));
+    }
+
+    public void drawImage(BufferedImage img, int col, int row, int width,
+            int height) {
+        add(new Op(IMAGE, col, row, width, height, img),
+                new Rectangle(col, row, width, height));
+    }
+
+    private void addToAll(Op op) {
+        for (List<Op> t : tiles) {
+            t.add(op);
+        }
+    }
+
+    /**
+     * Adds op to the tiles that bounds may touch.
+     *
+     * @param op The operation.
+     * @param bounds The bounds of op in user space.
+     */
+    private void add(Op op, Rectangle2D bounds) {
+        if (transform != null && !transform.isIdentity()) {
+            bounds = transform.createTransformedShape(bounds).getBounds2D();
+        }
+        int c0 = Math.max(0, (int) Math.floor(
+                (bounds.getMinX() - MARGIN) / tileSize));
+        int c1 = Math.min(cols - 1, (int) Math.floor(
+                (bounds.getMaxX() + MARGIN) / tileSize));
+        int r0 = Math.max(0, (int) Math.floor(
+                (bounds.getMinY() - MARGIN) / tileSize));
+        int r1 = Math.min(rows - 1, (int) Math.floor(
+                (bounds.getMaxY() + MARGIN) / tileSize));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                tiles.get(r * cols + c).add(op);
+            }
+        }
+    }
+
+    /**
+     * Draws the tiles concurrently on pool and then draws the tile images
+     * onto dst in order.
+     *
+     * @param pool The pool to draw the tiles on.
+     * @param dst The graphics to draw the tiles onto.
+     */
+    public void render(ForkJoinPool pool, Graphics2D dst) {
+        List<ForkJoinTask<BufferedImage>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < tiles.size(); i++) {
+                if (hasDrawing(tiles.get(i))) {
+                    int t = i;
+                    tasks.add(pool.submit(() -> drawTile(t)));
+                } else {
+                    tasks.add(null);
+                }
+            }
+            for (int i = 0; i < tiles.size(); i++) {
+                ForkJoinTask<BufferedImage> task = tasks.get(i);
+                if (task != null) {
+                    dst.drawImage(task.join(), (i % cols) * tileSize,
+                            (i / cols) * tileSize, null);
+                }
+            }
+        } finally {
+            for (ForkJoinTask<BufferedImage> task : tasks) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+
+    private static boolean hasDrawing(List<Op> ops) {
+        for (Op op : ops) {
+            if (op.kind != PAINT && op.kind != TRANSFORM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param i The index of the tile.
+     * @return An image of the tile drawn.
+     */
+    private BufferedImage drawTile(int i) {
+        int x = (i % cols) * tileSize;
+        int y = (i / cols) * tileSize;
+        BufferedImage r = new BufferedImage(Math.min(tileSize, width - x),
+                Math.min(tileSize, height - y),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D tg = r.createGraphics();
+        try {
+            tg.setRenderingHints(g.getRenderingHints());
+            tg.setFont(g.getFont());
+            tg.setPaint(g.getPaint());
+            tg.setStroke(g.getStroke());
+            AffineTransform origin = AffineTransform.getTranslateInstance(-x,
+                    -y);
+            AffineTransform t = new AffineTransform(origin);
+            t.concatenate(g.getTransform());
+            tg.setTransform(t);
+            Line2D.Double line = new Line2D.Double();
+            for (Op op : tiles.get(i)) {
+                switch (op.kind) {
+                    case PAINT:
+                        tg.setPaint((Paint) op.o);
+                        break;
+                    case TRANSFORM:
+                        t = new AffineTransform(origin);
+                        t.concatenate((AffineTransform) op.o);
+                        tg.setTransform(t);
+                        break;
+                    case LINE:
+                        line.setLine(op.a, op.b, op.c, op.d);
+                        tg.draw(line);
+                        break;
+                    case FILL_RECT:
+                        tg.fillRect((int) op.a, (int) op.b, (int) op.c,
+                                (int) op.d);
+                        break;
+                    case DRAW:
+                        tg.draw((Shape) op.o);
+                        break;
+                    case STRING:
+                        tg.drawString((String) op.o, (int) op.a, (int) op.b);
+                        break;
+                    default:
+                        tg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                        tg.drawImage((BufferedImage) op.o, (int) op.a,
+                                (int) op.b, (int) op.c, (int) op.d, null);
+                }
+            }
+        } finally {
+            tg.dispose();
+        }
+        return r;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.core;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A vector output format that a chart draws to instead of an image, e.g.
+ * {@link Chart_SvgWriter} or a page of a {@link Chart_PdfDocument}. The
+ * methods mirror the drawing methods of {@link Chart} and write each
+ * operation out as it is drawn. As the drawing methods of a chart do not
+ * throw {@link java.io.IOException}, implementations wrap any thrown in an
+ * {@link java.io.UncheckedIOException}.
+ */
+public interface Chart_VectorWriter {
+
+    public void setPaint(Color c);
+
+    /**
+     * @return The current paint.
+     */
+    public Color getPaint();
+
+    /**
+     * @return A copy of the current transform.
+     */
+    public AffineTransform getTransform();
+
+    public void setTransform(AffineTransform at);
+
+    public void transform(AffineTransform at);
+
+    public void draw(Line2D l);
+
+    public void draw(Shape s);
+
+    public void fillRect(int col, int row, int width, int height);
+
+    public void drawString(String text, int col, int row);
+
+    /**
+     * Draws img scaled to width by height pixels without smoothing.
+     *
+     * @param img The image.
+     * @param col The column of the left of the image.
+     * @param row The row of the top of the image.
+     * @param width The width to draw the image.
+     * @param height The height to draw the image.
+     */
+    public void drawImage(BufferedImage img, int col, int row, int width,
+            int height);
+}
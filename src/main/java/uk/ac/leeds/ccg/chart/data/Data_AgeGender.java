@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A dataset for an age by gender population chart. Values are keyed by the
+ * start age of each age interval. Female values are drawn to the right of the
+ * origin and male values to the left, so the x extent is symmetric about zero.
+ * The y extent runs from zero to the last age key; charts of this type
+ * generally set the y extent from their age interval settings instead.
+ *
+ * @param <V> The type of the value for each age interval, e.g. a population
+ * count or summary statistics.
+ */
+public class Data_AgeGender<V> extends Data_Chart {
+
+    /**
+     * The female values keyed by age.
+     */
+    protected final NavigableMap<Integer, V> female;
+
+    /**
+     * The male values keyed by age.
+     */
+    protected final NavigableMap<Integer, V> male;
+
+    /**
+     * @param female The female values keyed by age.
+     * @param male The male values keyed by age.
+     * @param maxPopulation The maximum population to draw on either side of
+     * the origin.
+     */
+    public Data_AgeGender(Map<Integer, V> female, Map<Integer, V> male,
+            BigDecimal maxPopulation) {
+        super(maxPopulation.negate(), maxPopulation, BigDecimal.ZERO,
+                BigDecimal.valueOf(getMaxAge(female, male)));
+        this.female = Collections.unmodifiableNavigableMap(
+                new TreeMap<>(female));
+        this.male = Collections.unmodifiableNavigableMap(new TreeMap<>(male));
+    }
+
+    private static int getMaxAge(Map<Integer, ?> female, Map<Integer, ?> male) {
+        int r = 0;
+        for (Integer age : female.keySet()) {
+            r = Math.max(r, age);
+        }
+        for (Integer age : male.keySet()) {
+            r = Math.max(r, age);
+        }
+        return r;
+    }
+
+    public NavigableMap<Integer, V> getFemale() {
+        return female;
+    }
+
+    public NavigableMap<Integer, V> getMale() {
+        return male;
+    }
+
+    /**
+     * @return The maximum population to draw on either side of the origin.
+     */
+    public BigDecimal getMaxPopulation() {
+        return maxX;
+    }
+}
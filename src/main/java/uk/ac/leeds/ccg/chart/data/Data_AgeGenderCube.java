@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Population counts by area, year, gender and single year of age, for
+ * producing age by gender datasets for many areas and years without holding
+ * maps of BigDecimals. Areas, years and ages are indexed from 0; the last age
+ * may be an open interval such as 90 and over.
+ *
+ * The counts are held as long values in a buffer with a stripe for each area,
+ * year and gender. Counts are added to a cube and then {@link #build()}
+ * replaces each stripe with cumulative counts, after which the count of any
+ * range of ages is a difference of two values. A built cube can be written to
+ * a file with {@link #write(Path)} and mapped back into memory with
+ * {@link #map(Path)} in a later run, so that only the pages used are read.
+ * The buffer is indexed by int, so a cube can be at most 2 GB, which is about
+ * 268 million counts.
+ */
+public class Data_AgeGenderCube {
+
+    /**
+     * The first bytes of a cube file.
+     */
+    public static final long MAGIC = 0x4147434355424531L;
+
+    /**
+     * The length of the header of a cube file in bytes: MAGIC, then the
+     * number of areas, years and ages as ints, then an int for whether the
+     * cube is built.
+     */
+    public static final int HEADER_LENGTH = 32;
+
+    /**
+     * Cubes with at least this many stripes are built in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    /**
+     * The number of areas.
+     */
+    protected final int areas;
+
+    /**
+     * The number of years.
+     */
+    protected final int years;
+
+    /**
+     * The number of single years of age.
+     */
+    protected final int ages;
+
+    /**
+     * The counts and, once built, the cumulative counts. Each stripe has
+     * ages + 1 values: before building, value age + 1 is the count of age;
+     * after building, value age + 1 is the count of ages 0 to age and value 0
+     * is 0.
+     */
+    protected final LongBuffer counts;
+
+    /**
+     * The bytes of counts.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Whether the cube is built.
+     */
+    protected boolean built;
+
+    /**
+     * Creates an empty cube in memory.
+     *
+     * @param areas The number of areas.
+     * @param years The number of years.
+     * @param ages The number of single years of age.
+     */
+    public Data_AgeGenderCube(int areas, int years, int ages) {
+        this(areas, years, ages, ByteBuffer.allocate(
+                HEADER_LENGTH + getLength(areas, years, ages) * Long.BYTES),
+                false);
+    }
+
+    /**
+     * @param areas The number of areas.
+     * @param years The number of years.
+     * @param ages The number of single years of age.
+     * @param b A buffer of a header and then the counts in little endian
+     * order.
+     * @param built Whether the counts are cumulative.
+     */
+    protected Data_AgeGenderCube(int areas, int years, int ages, ByteBuffer b,
+            boolean built) {
+        this.areas = areas;
+        this.years = years;
+        this.ages = ages;
+        this.built = built;
+        b.position(HEADER_LENGTH);
+        bytes = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+        counts = bytes.asLongBuffer();
+    }
+
+    /**
+     * @param areas The number of areas.
+     * @param years The number of years.
+     * @param ages The number of single years of age.
+     * @return The number of values in the buffer.
+     */
+    private static int getLength(int areas, int years, int ages) {
+        if (areas < 1 || years < 1 || ages < 1) {
+            throw new IllegalArgumentException("areas " + areas + " years "
+                    + years + " ages " + ages);
+        }
+        long r = (long) areas * years * 2L * (ages + 1L);
+        if (r > (Integer.MAX_VALUE - HEADER_LENGTH) / Long.BYTES) {
+            throw new IllegalArgumentException("Too many counts " + r);
+        }
+        return (int) r;
+    }
+
+    /**
+     * Maps a cube written by {@link #write(Path)} read only into memory.
+     *
+     * @param p The path of the file.
+     * @return The cube.
+     * @throws IOException If encountered or the file is not a cube.
+     */
+    public static Data_AgeGenderCube map(Path p) throws IOException {
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0L,
+                    fc.size());
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            if (fc.size() < HEADER_LENGTH || b.getLong(0) != MAGIC) {
+                throw new IOException(p + " is not a cube");
+            }
+            int areas = b.getInt(8);
+            int years = b.getInt(12);
+            int ages = b.getInt(16);
+            if (fc.size() != HEADER_LENGTH
+                    + (long) getLength(areas, years, ages) * Long.BYTES) {
+                throw new IOException(p + " is truncated");
+            }
+            return new Data_AgeGenderCube(areas, years, ages,
+                    b.asReadOnlyBuffer(), b.getInt(20) != 0);
+        }
+    }
+
+    /**
+     * Writes the header and counts of this to a file.
+     *
+     * @param p The path of the file, which is replaced if it exists.
+     * @throws IOException If encountered.
+     */
+    public void write(Path p) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        h.putLong(MAGIC).putInt(areas).putInt(years).putInt(ages)
+                .putInt(built ? 1 : 0);
+        h.clear();
+        ByteBuffer b = bytes.duplicate();
+        b.clear();
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (h.hasRemaining()) {
+                fc.write(h);
+            }
+            while (b.hasRemaining()) {
+                fc.write(b);
+            }
+        }
+    }
+
+    /**
+     * @param area The area.
+     * @param year The year.
+     * @param isFemale Whether for females.
+     * @return The index of the stripe in counts.
+     */
+    private int getStripe(int area, int year, boolean isFemale) {
+        if (area < 0 || area >= areas || year < 0 || year >= years) {
+            throw new IllegalArgumentException("area " + area + " year "
+                    + year);
+        }
+        return ((area * years + year) * 2 + (isFemale ? 1 : 0)) * (ages + 1);
+    }
+
+    /**
+     * Adds to a count. Counts of different areas, years or genders can be
+     * added concurrently.
+     *
+     * @param area The area.
+     * @param year The year.
+     * @param isFemale Whether for females.
+     * @param age The age.
+     * @param count The count to add.
+     */
+    public void add(int area, int year, boolean isFemale, int age,
+            long count) {
+        if (built) {
+            throw new IllegalStateException("Built");
+        }
+        if (age < 0 || age >= ages) {
+            throw new IllegalArgumentException("age " + age);
+        }
+        int i = getStripe(area, year, isFemale) + age + 1;
+        counts.put(i, counts.get(i) + count);
+    }
+
+    /**
+     * Replaces the counts with cumulative counts so that counts can be rolled
+     * up. Nothing can be added afterwards.
+     */
+    public void build() {
+        if (built) {
+            return;
+        }
+        int stripes = areas * years * 2;
+        IntStream s = IntStream.range(0, stripes);
+        if (stripes >= PARALLEL_THRESHOLD) {
+            s = s.parallel();
+        }
+        s.forEach(stripe -> {
+            int i = stripe * (ages + 1);
+            long c = 0L;
+            for (int age = 1; age <= ages; age++) {
+                c += counts.get(i + age);
+                counts.put(i + age, c);
+            }
+        });
+        built = true;
+    }
+
+    /**
+     * @param area The area.
+     * @param year The year.
+     * @param isFemale Whether for females.
+     * @param fromAge The first age.
+     * @param toAge The last age. Ages beyond the last are ignored.
+     * @return The count of ages from fromAge to toAge.
+     */
+    public long getCount(int area, int year, boolean isFemale, int fromAge,
+            int toAge) {
+        if (!built) {
+            throw new IllegalStateException("Not built");
+        }
+        toAge = Math.min(toAge, ages - 1);
+        if (fromAge < 0 || fromAge > toAge) {
+            return 0L;
+        }
+        int i = getStripe(area, year, isFemale);
+        return counts.get(i + toAge + 1) - counts.get(i + fromAge);
+    }
+
+    /**
+     * @param area The area.
+     * @param year The year.
+     * @param isFemale Whether for females.
+     * @return The count of all ages.
+     */
+    public long getTotal(int area, int year, boolean isFemale) {
+        return getCount(area, year, isFemale, 0, ages - 1);
+    }
+
+    /**
+     * Rolls up the counts for an area and year into age intervals keyed by
+     * their start age as for {@code Chart_AgeGenderBar}: intervals of
+     * ageInterval years from age 0, and an end interval of
+     * startAgeOfEndYearInterval and all older ages.
+     *
+     * @param area The area.
+     * @param year The year.
+     * @param ageInterval The age interval.
+     * @param startAgeOfEndYearInterval The start age of the end interval.
+     * @return A dataset for {@code Chart_AgeGenderBar}. The maximum
+     * population is the greatest count.
+     */
+    public Data_AgeGender<BigDecimal> getData(int area, int year,
+            int ageInterval, int startAgeOfEndYearInterval) {
+        if (ageInterval < 1 || startAgeOfEndYearInterval < 0) {
+            throw new IllegalArgumentException("ageInterval " + ageInterval
+                    + " startAgeOfEndYearInterval "
+                    + startAgeOfEndYearInterval);
+        }
+        TreeMap<Integer, BigDecimal> f = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> m = new TreeMap<>();
+        long max = 0L;
+        for (int age = 0; age < ages; age += ageInterval) {
+            int to = age >= startAgeOfEndYearInterval ? ages - 1
+                    : Math.min(age + ageInterval, startAgeOfEndYearInterval)
+                    - 1;
+            long fc = getCount(area, year, true, age, to);
+            long mc = getCount(area, year, false, age, to);
+            f.put(age, BigDecimal.valueOf(fc));
+            m.put(age, BigDecimal.valueOf(mc));
+            max = Math.max(max, Math.max(fc, mc));
+            if (to == ages - 1) {
+                break;
+            }
+            age = to + 1 - ageInterval;
+        }
+        return new Data_AgeGender<>(f, m, BigDecimal.valueOf(max));
+    }
+
+    /**
+     * Adds the counts of each age interval of each area for a year to b, so
+     * that the box plot built from b shows the distribution of the counts
+     * across areas.
+     *
+     * @param b The builder, which gives the age intervals.
+     * @param year The year.
+     */
+    public void addTo(Data_BoxPlotBuilder b, int year) {
+        int ai = b.ageInterval;
+        int saeyi = b.startAgeOfEndYearInterval;
+        for (int area = 0; area < areas; area++) {
+            for (int age = 0; age < ages; age += ai) {
+                int to = age >= saeyi ? ages - 1
+                        : Math.min(age + ai, saeyi) - 1;
+                b.add(true, age, getCount(area, year, true, age, to));
+                b.add(false, age, getCount(area, year, false, age, to));
+                if (to == ages - 1) {
+                    break;
+                }
+                age = to + 1 - ai;
+            }
+        }
+    }
+
+    public int getAreas() {
+        return areas;
+    }
+
+    public int getYears() {
+        return years;
+    }
+
+    public int getAges() {
+        return ages;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import uk.ac.leeds.ccg.generic.util.Generic_Collections;
+
+/**
+ * A dataset for a bar chart of counts of values in equal width intervals.
+ * Intervals are indexed from 0 for the interval starting at the minimum value.
+ */
+public class Data_Bar extends Data_Chart {
+
+    /**
+     * The count of values in each interval.
+     */
+    protected final NavigableMap<Integer, Integer> counts;
+
+    /**
+     * The label of each interval.
+     */
+    protected final NavigableMap<Integer, String> labels;
+
+    /**
+     * The minimum of each interval.
+     */
+    protected final NavigableMap<Integer, BigDecimal> mins;
+
+    /**
+     * The width of each interval.
+     */
+    protected final BigDecimal intervalWidth;
+
+    /**
+     * The minimum value.
+     */
+    protected final BigDecimal min;
+
+    /**
+     * The maximum value.
+     */
+    protected final BigDecimal max;
+
+    /**
+     * @param counts The count of values in each interval.
+     * @param labels The label of each interval.
+     * @param mins The minimum of each interval.
+     * @param intervalWidth The width of each interval.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     */
+    public Data_Bar(Map<Integer, Integer> counts, Map<Integer, String> labels,
+            Map<Integer, BigDecimal> mins, BigDecimal intervalWidth,
+            BigDecimal min, BigDecimal max) {
+        super(min, new BigDecimal(Collections.max(counts.keySet()))
+                .multiply(intervalWidth), BigDecimal.ZERO,
+                BigDecimal.valueOf(Collections.max(counts.values())));
+        this.counts = Collections.unmodifiableNavigableMap(
+                new TreeMap<>(counts));
+        this.labels = Collections.unmodifiableNavigableMap(
+                new TreeMap<>(labels));
+        this.mins = Collections.unmodifiableNavigableMap(new TreeMap<>(mins));
+        this.intervalWidth = intervalWidth;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Counts the values in m into intervals of width intervalWidth starting at
+     * the minimum value.
+     *
+     * @param <K> The key type.
+     * @param m The values to count.
+     * @param intervalWidth The width of each interval.
+     * @param mc The MathContext for the interval calculations.
+     * @return A new dataset.
+     */
+    public static <K> Data_Bar of(Map<K, BigDecimal> m,
+            BigDecimal intervalWidth, MathContext mc) {
+        BigDecimal[] minMax = Generic_Collections.getMinMaxBigDecimal(m);
+        // The counts, labels and minimums of the intervals are returned as
+        // maps keyed by interval index in an Object[].
+        Object[] intervalCountsLabelsMins
+                = Generic_Collections.getIntervalCountsLabelsMins(minMax[0],
+                        intervalWidth, m, mc);
+        @SuppressWarnings("unchecked")
+        Map<Integer, Integer> counts
+                = (Map<Integer, Integer>) intervalCountsLabelsMins[0];
+        @SuppressWarnings("unchecked")
+        Map<Integer, String> labels
+                = (Map<Integer, String>) intervalCountsLabelsMins[1];
+        @SuppressWarnings("unchecked")
+        Map<Integer, BigDecimal> mins
+                = (Map<Integer, BigDecimal>) intervalCountsLabelsMins[2];
+        return new Data_Bar(counts, labels, mins, intervalWidth, minMax[0],
+                minMax[1]);
+    }
+
+    /**
+     * Counts values into intervals of width intervalWidth starting at the
+     * minimum value using {@link Data_Histogram}, which is much faster than
+     * {@link #of(Map, BigDecimal, MathContext)} for many values.
+     *
+     * @param values The values to count.
+     * @param intervalWidth The width of each interval.
+     * @param exact Whether values near an interval edge are placed exactly.
+     * @return A new dataset.
+     */
+    public static Data_Bar of(double[] values, BigDecimal intervalWidth,
+            boolean exact) {
+        return Data_Histogram.of(values, intervalWidth, exact).toDataBar();
+    }
+
+    public NavigableMap<Integer, Integer> getCounts() {
+        return counts;
+    }
+
+    public NavigableMap<Integer, String> getLabels() {
+        return labels;
+    }
+
+    public NavigableMap<Integer, BigDecimal> getMins() {
+        return mins;
+    }
+
+    public BigDecimal getIntervalWidth() {
+        return intervalWidth;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+}
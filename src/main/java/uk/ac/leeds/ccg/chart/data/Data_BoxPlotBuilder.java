@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * For building the dataset of an age by gender box plot from individual
+ * values without holding them as BigDecimals. The values of each age
+ * interval and gender are summarised in a {@link Data_Quantiles}: either a
+ * {@link Data_ExactQuantiles} or, so that memory does not grow with the
+ * number of values, a {@link Data_KLLSketch}. Builders with the same settings
+ * can be filled concurrently and merged.
+ *
+ * The statistics for each age interval are as from
+ * {@code Generic_Statistics.getSummaryStatistics_0}: sum, mean, median, q1,
+ * q3, mode, min and max. The mode is only calculated for exact summaries and
+ * is {@code null} otherwise. Age intervals are keyed as in
+ * {@code Chart_AgeGenderBoxPlot.getDefaultData()}: by the last age of each
+ * interval, and by startAgeOfEndYearInterval + ageInterval for the end
+ * interval which includes all older ages.
+ */
+public class Data_BoxPlotBuilder {
+
+    /**
+     * Value arrays with at least this many values are added in parallel by
+     * {@link #addAll(boolean[], int[], double[])}.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    protected final int ageInterval;
+
+    protected final int startAgeOfEndYearInterval;
+
+    /**
+     * For creating the summary of each age interval and gender.
+     */
+    protected final Supplier<? extends Data_Quantiles> factory;
+
+    /**
+     * The female summaries indexed by age interval.
+     */
+    protected final Data_Quantiles[] female;
+
+    /**
+     * The male summaries indexed by age interval.
+     */
+    protected final Data_Quantiles[] male;
+
+    /**
+     * @param ageInterval The age interval.
+     * @param startAgeOfEndYearInterval The start age of the end interval.
+     * @param factory For creating the summary of each age interval and
+     * gender.
+     */
+    public Data_BoxPlotBuilder(int ageInterval, int startAgeOfEndYearInterval,
+            Supplier<? extends Data_Quantiles> factory) {
+        if (ageInterval < 1 || startAgeOfEndYearInterval < 0) {
+            throw new IllegalArgumentException("ageInterval " + ageInterval
+                    + " startAgeOfEndYearInterval "
+                    + startAgeOfEndYearInterval);
+        }
+        this.ageInterval = ageInterval;
+        this.startAgeOfEndYearInterval = startAgeOfEndYearInterval;
+        this.factory = factory;
+        int n = (startAgeOfEndYearInterval + ageInterval - 1) / ageInterval + 1;
+        female = new Data_Quantiles[n];
+        male = new Data_Quantiles[n];
+    }
+
+    /**
+     * @param ageInterval The age interval.
+     * @param startAgeOfEndYearInterval The start age of the end interval.
+     * @return A builder of exact statistics.
+     */
+    public static Data_BoxPlotBuilder exact(int ageInterval,
+            int startAgeOfEndYearInterval) {
+        return new Data_BoxPlotBuilder(ageInterval, startAgeOfEndYearInterval,
+                Data_ExactQuantiles::new);
+    }
+
+    /**
+     * @param ageInterval The age interval.
+     * @param startAgeOfEndYearInterval The start age of the end interval.
+     * @param k The accuracy parameter of the sketches (see
+     * {@link Data_KLLSketch#Data_KLLSketch(int)}).
+     * @return A builder of approximate statistics.
+     */
+    public static Data_BoxPlotBuilder approximate(int ageInterval,
+            int startAgeOfEndYearInterval, int k) {
+        return new Data_BoxPlotBuilder(ageInterval, startAgeOfEndYearInterval,
+                () -> new Data_KLLSketch(k));
+    }
+
+    /**
+     * @return A new empty builder with the same settings as this.
+     */
+    public Data_BoxPlotBuilder newBuilder() {
+        return new Data_BoxPlotBuilder(ageInterval, startAgeOfEndYearInterval,
+                factory);
+    }
+
+    /**
+     * @param age The age.
+     * @return The index of the age interval of age.
+     */
+    private int getIndex(int age) {
+        if (age < 0) {
+            throw new IllegalArgumentException("age " + age);
+        }
+        return age >= startAgeOfEndYearInterval ? female.length - 1
+                : age / ageInterval;
+    }
+
+    /**
+     * @param isFemale Whether the value is for a female.
+     * @param age The age.
+     * @param v The value.
+     */
+    public void add(boolean isFemale, int age, double v) {
+        Data_Quantiles[] qs = isFemale ? female : male;
+        int i = getIndex(age);
+        Data_Quantiles q = qs[i];
+        if (q == null) {
+            q = factory.get();
+            qs[i] = q;
+        }
+        q.add(v);
+    }
+
+    /**
+     * Adds the values of individuals given as columns, partitioning them
+     * across the common fork join pool if there are at least
+     * {@link #PARALLEL_THRESHOLD}.
+     *
+     * @param isFemale Whether each individual is female.
+     * @param ages The age of each individual.
+     * @param values The value of each individual.
+     */
+    public void addAll(boolean[] isFemale, int[] ages, double[] values) {
+        int n = values.length;
+        int parts = n < PARALLEL_THRESHOLD ? 1
+                : Runtime.getRuntime().availableProcessors();
+        if (parts == 1) {
+            for (int i = 0; i < n; i++) {
+                add(isFemale[i], ages[i], values[i]);
+            }
+            return;
+        }
+        merge(IntStream.range(0, parts).parallel().mapToObj(p -> {
+            Data_BoxPlotBuilder b = newBuilder();
+            int to = (int) ((long) n * (p + 1) / parts);
+            for (int i = (int) ((long) n * p / parts); i < to; i++) {
+                b.add(isFemale[i], ages[i], values[i]);
+            }
+            return b;
+        }).reduce((a, b) -> {
+            a.merge(b);
+            return a;
+        }).get());
+    }
+
+    /**
+     * Adds the values summarised in b to this. Summaries may be shared with
+     * b, so b should not be used afterwards.
+     *
+     * @param b A builder with the same settings as this.
+     */
+    public void merge(Data_BoxPlotBuilder b) {
+        if (b.ageInterval != ageInterval
+                || b.startAgeOfEndYearInterval != startAgeOfEndYearInterval) {
+            throw new IllegalArgumentException("Builders differ");
+        }
+        merge(female, b.female);
+        merge(male, b.male);
+    }
+
+    private static void merge(Data_Quantiles[] a, Data_Quantiles[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (b[i] != null) {
+                if (a[i] == null) {
+                    a[i] = b[i];
+                } else {
+                    a[i].merge(b[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param dp The number of decimal places for the mean.
+     * @param rm The RoundingMode for the mean.
+     * @return A dataset for {@code Chart_AgeGenderBoxPlot}. The maximum
+     * population is the greatest value.
+     */
+    public Data_AgeGender<BigDecimal[]> build(int dp, RoundingMode rm) {
+        TreeMap<Integer, BigDecimal[]> f = new TreeMap<>();
+        TreeMap<Integer, BigDecimal[]> m = new TreeMap<>();
+        double max = 0d;
+        for (int i = 0; i < female.length; i++) {
+            int age = i == female.length - 1
+                    ? startAgeOfEndYearInterval + ageInterval
+                    : (i + 1) * ageInterval - 1;
+            if (female[i] != null && female[i].getN() > 0) {
+                f.put(age, getStatistics(female[i], dp, rm));
+                max = Math.max(max, female[i].getMax());
+            }
+            if (male[i] != null && male[i].getN() > 0) {
+                m.put(age, getStatistics(male[i], dp, rm));
+                max = Math.max(max, male[i].getMax());
+            }
+        }
+        return new Data_AgeGender<>(f, m, BigDecimal.valueOf(max));
+    }
+
+    /**
+     * @param q The summary.
+     * @param dp The number of decimal places for the mean.
+     * @param rm The RoundingMode for the mean.
+     * @return The statistics of q: sum, mean, median, q1, q3, mode, min and
+     * max.
+     */
+    public static BigDecimal[] getStatistics(Data_Quantiles q, int dp,
+            RoundingMode rm) {
+        BigDecimal[] r = new BigDecimal[8];
+        r[0] = BigDecimal.valueOf(q.getSum());
+        r[1] = r[0].divide(BigDecimal.valueOf(q.getN()), dp, rm);
+        r[2] = BigDecimal.valueOf(q.getQuantile(0.5d));
+        r[3] = BigDecimal.valueOf(q.getQuantile(0.25d));
+        r[4] = BigDecimal.valueOf(q.getQuantile(0.75d));
+        if (q instanceof Data_ExactQuantiles) {
+            r[5] = BigDecimal.valueOf(((Data_ExactQuantiles) q).getMode());
+        }
+        r[6] = BigDecimal.valueOf(q.getMin());
+        r[7] = BigDecimal.valueOf(q.getMax());
+        return r;
+    }
+}
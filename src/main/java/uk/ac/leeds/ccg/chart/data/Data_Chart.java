@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+
+/**
+ * The base of the datasets that charts are rendered from. A dataset is
+ * immutable once constructed and carries the extent of the data area so the
+ * same dataset can be rendered any number of times without preprocessing.
+ */
+public abstract class Data_Chart {
+
+    /**
+     * The minimum x of the data area.
+     */
+    protected final BigDecimal minX;
+
+    /**
+     * The maximum x of the data area.
+     */
+    protected final BigDecimal maxX;
+
+    /**
+     * The minimum y of the data area.
+     */
+    protected final BigDecimal minY;
+
+    /**
+     * The maximum y of the data area.
+     */
+    protected final BigDecimal maxY;
+
+    /**
+     * @param minX The minimum x of the data area.
+     * @param maxX The maximum x of the data area.
+     * @param minY The minimum y of the data area.
+     * @param maxY The maximum y of the data area.
+     */
+    protected Data_Chart(BigDecimal minX, BigDecimal maxX, BigDecimal minY,
+            BigDecimal maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    public BigDecimal getMinX() {
+        return minX;
+    }
+
+    public BigDecimal getMaxX() {
+        return maxX;
+    }
+
+    public BigDecimal getMinY() {
+        return minY;
+    }
+
+    public BigDecimal getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @param v A value as returned from {@link Data_PointSeries#getMinX()}
+     * and the like.
+     * @return v as a BigDecimal or {@link BigDecimal#ZERO} if v is infinite
+     * (as it is for the extent of an empty series).
+     */
+    protected static BigDecimal valueOf(double v) {
+        if (Double.isInfinite(v) || Double.isNaN(v)) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(v);
+    }
+}
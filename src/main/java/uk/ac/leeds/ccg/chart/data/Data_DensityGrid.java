@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.stream.IntStream;
+
+/**
+ * Counts of points in a grid of equal sized cells covering an extent. Row 0
+ * is at the top (maximum y) so that the grid is in image order. Points outside
+ * the extent or with a NaN coordinate are not counted. Grids of the same
+ * extent and dimensions can be merged, so counting can be partitioned.
+ */
+public class Data_DensityGrid {
+
+    /**
+     * Series with at least this many points are counted in parallel by
+     * {@link #of(Data_PointSeries, double, double, double, double, int, int)}.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    protected final double minX;
+    protected final double maxX;
+    protected final double minY;
+    protected final double maxY;
+
+    /**
+     * The number of columns.
+     */
+    protected final int cols;
+
+    /**
+     * The number of rows.
+     */
+    protected final int rows;
+
+    /**
+     * The counts in row major order.
+     */
+    protected final int[] counts;
+
+    /**
+     * The number of points counted.
+     */
+    protected long n;
+
+    private final double xScale;
+    private final double yScale;
+
+    /**
+     * @param minX The minimum x of the extent.
+     * @param maxX The maximum x of the extent.
+     * @param minY The minimum y of the extent.
+     * @param maxY The maximum y of the extent.
+     * @param cols The number of columns.
+     * @param rows The number of rows.
+     */
+    public Data_DensityGrid(double minX, double maxX, double minY,
+            double maxY, int cols, int rows) {
+        if (cols < 1 || rows < 1) {
+            throw new IllegalArgumentException("cols " + cols + " rows "
+                    + rows);
+        }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.cols = cols;
+        this.rows = rows;
+        counts = new int[cols * rows];
+        xScale = maxX > minX ? cols / (maxX - minX) : 0d;
+        yScale = maxY > minY ? rows / (maxY - minY) : 0d;
+    }
+
+    /**
+     * Counts the points in s, partitioning s across the common fork join pool
+     * if it has at least {@link #PARALLEL_THRESHOLD} points. Each partition
+     * counts into its own grid, so there are at most as many partitions as
+     * there are cells in the grid for every point. The partial grids then
+     * take no more memory than a quarter of that of the points and merging
+     * them takes no longer than counting, however large the grid and however
+     * many processors there are.
+     *
+     * @param s The points.
+     * @param minX The minimum x of the extent.
+     * @param maxX The maximum x of the extent.
+     * @param minY The minimum y of the extent.
+     * @param maxY The maximum y of the extent.
+     * @param cols The number of columns.
+     * @param rows The number of rows.
+     * @return A new grid of the counts of the points in s.
+     */
+    public static Data_DensityGrid of(Data_PointSeries s, double minX,
+            double maxX, double minY, double maxY, int cols, int rows) {
+        int n = s.size();
+        long cells = (long) cols * rows;
+        int parts = (int) Math.min(Runtime.getRuntime().availableProcessors(),
+                n / Math.max(PARALLEL_THRESHOLD, cells));
+        if (parts <= 1) {
+            Data_DensityGrid r = new Data_DensityGrid(minX, maxX, minY, maxY,
+                    cols, rows);
+            r.addAll(s, 0, n);
+            return r;
+        }
+        return IntStream.range(0, parts).parallel().mapToObj(p -> {
+            Data_DensityGrid r = new Data_DensityGrid(minX, maxX, minY, maxY,
+                    cols, rows);
+            int from = (int) ((long) n * p / parts);
+            int to = (int) ((long) n * (p + 1) / parts);
+            r.addAll(s, from, to);
+            return r;
+        }).reduce((a, b) -> {
+            a.merge(b);
+            return a;
+        }).get();
+    }
+
+    /**
+     * @param x The x of the point.
+     * @param y The y of the point.
+     */
+    public void add(double x, double y) {
+        // Written so that NaN is excluded.
+        if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+            return;
+        }
+        int col = Math.min(cols - 1, (int) ((x - minX) * xScale));
+        int row = Math.min(rows - 1, (int) ((maxY - y) * yScale));
+        counts[row * cols + col]++;
+        n++;
+    }
+
+    /**
+     * @param s The points.
+     * @param from The index of the first point to add.
+     * @param to The index after the last point to add.
+     */
+    public void addAll(Data_PointSeries s, int from, int to) {
+        double[] xs = s.x;
+        double[] ys = s.y;
+        for (int i = from; i < to; i++) {
+            add(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * Adds the counts of g to this.
+     *
+     * @param g A grid of the same extent and dimensions as this.
+     */
+    public void merge(Data_DensityGrid g) {
+        if (g.cols != cols || g.rows != rows || g.minX != minX
+                || g.maxX != maxX || g.minY != minY || g.maxY != maxY) {
+            throw new IllegalArgumentException("Grids differ");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += g.counts[i];
+        }
+        n += g.n;
+    }
+
+    /**
+     * @param col The column.
+     * @param row The row.
+     * @return The count in the cell at col, row.
+     */
+    public int getCount(int col, int row) {
+        return counts[row * cols + col];
+    }
+
+    /**
+     * @return The maximum count in any cell.
+     */
+    public int getMaxCount() {
+        int r = 0;
+        for (int c : counts) {
+            r = Math.max(r, c);
+        }
+        return r;
+    }
+
+    /**
+     * @return The counts in row major order. This is not a copy.
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of points counted.
+     */
+    public long getN() {
+        return n;
+    }
+}
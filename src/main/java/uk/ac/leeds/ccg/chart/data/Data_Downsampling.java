@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+/**
+ * Ways of reducing a series of points ordered by x to about as many points as
+ * can be distinguished when the series is drawn as a line across a given
+ * number of pixel columns. Both methods keep the first and last points.
+ */
+public enum Data_Downsampling {
+
+    /**
+     * Keep every point.
+     */
+    NONE,
+
+    /**
+     * Largest-Triangle-Three-Buckets: keep 4 points per column, choosing from
+     * each bucket the point that forms the largest triangle with the point
+     * chosen from the previous bucket and the average of the next bucket.
+     * This preserves the visual shape of the line well.
+     */
+    LTTB,
+
+    /**
+     * M4: for each pixel column keep the first, last, minimum y and maximum y
+     * points. The line drawn then spans the same rows in each column and
+     * joins neighbouring columns at the same points as the full series.
+     */
+    M4;
+
+    /**
+     * @param s The points ordered by x.
+     * @param minX The x of the left edge of the first column.
+     * @param maxX The x of the right edge of the last column.
+     * @param columns The number of pixel columns.
+     * @return s downsampled, or s itself if it already has no more than 4
+     * points per column or this is {@link #NONE}.
+     */
+    public Data_PointSeries apply(Data_PointSeries s, double minX,
+            double maxX, int columns) {
+        switch (this) {
+            case LTTB:
+                return lttb(s, columns * 4);
+            case M4:
+                return m4(s, minX, maxX, columns);
+            default:
+                return s;
+        }
+    }
+
+    /**
+     * @param s The points ordered by x.
+     * @param threshold The number of points to keep.
+     * @return A new series of threshold points chosen from s, or s itself if
+     * s has no more than threshold points or threshold is less than 3.
+     */
+    public static Data_PointSeries lttb(Data_PointSeries s, int threshold) {
+        int n = s.size;
+        if (threshold >= n || threshold < 3) {
+            return s;
+        }
+        double[] xs = s.x;
+        double[] ys = s.y;
+        Data_PointSeries r = new Data_PointSeries(threshold);
+        r.add(xs[0], ys[0]);
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // The average of the next bucket.
+            int avgStart = (int) ((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) ((i + 2) * every) + 1, n);
+            double avgX = 0d;
+            double avgY = 0d;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += xs[j];
+                avgY += ys[j];
+            }
+            int avgLength = avgEnd - avgStart;
+            avgX /= avgLength;
+            avgY /= avgLength;
+            // The point in this bucket making the largest triangle.
+            int start = (int) (i * every) + 1;
+            int end = (int) ((i + 1) * every) + 1;
+            double ax = xs[a];
+            double ay = ys[a];
+            double maxArea = -1d;
+            int next = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (ys[j] - ay)
+                        - (ax - xs[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            r.add(xs[next], ys[next]);
+            a = next;
+        }
+        r.add(xs[n - 1], ys[n - 1]);
+        return r;
+    }
+
+    /**
+     * @param s The points ordered by x.
+     * @param minX The x of the left edge of the first column.
+     * @param maxX The x of the right edge of the last column.
+     * @param columns The number of pixel columns. Points outside the columns
+     * are counted in the nearest column.
+     * @return A new series of at most 4 points per column chosen from s, or
+     * s itself if s has no more than 4 points per column.
+     */
+    public static Data_PointSeries m4(Data_PointSeries s, double minX,
+            double maxX, int columns) {
+        int n = s.size;
+        if (n <= columns * 4 || columns < 1) {
+            return s;
+        }
+        double[] xs = s.x;
+        double[] ys = s.y;
+        double scale = maxX > minX ? columns / (maxX - minX) : 0d;
+        Data_PointSeries r = new Data_PointSeries(columns * 4);
+        int column = getColumn(xs[0], minX, scale, columns);
+        int first = 0;
+        int min = 0;
+        int max = 0;
+        for (int i = 1; i < n; i++) {
+            int c = getColumn(xs[i], minX, scale, columns);
+            if (c != column) {
+                add(r, xs, ys, first, min, max, i - 1);
+                column = c;
+                first = i;
+                min = i;
+                max = i;
+            } else {
+                if (ys[i] < ys[min]) {
+                    min = i;
+                }
+                if (ys[i] > ys[max]) {
+                    max = i;
+                }
+            }
+        }
+        add(r, xs, ys, first, min, max, n - 1);
+        r.trimToSize();
+        return r;
+    }
+
+    private static int getColumn(double x, double minX, double scale,
+            int columns) {
+        int c = (int) Math.floor((x - minX) * scale);
+        return Math.max(0, Math.min(columns - 1, c));
+    }
+
+    /**
+     * Adds the points at indexes first, min, max and last to r in index order
+     * without repeats.
+     */
+    private static void add(Data_PointSeries r, double[] xs, double[] ys,
+            int first, int min, int max, int last) {
+        int lo = Math.min(min, max);
+        int hi = Math.max(min, max);
+        r.add(xs[first], ys[first]);
+        if (lo != first && lo != last) {
+            r.add(xs[lo], ys[lo]);
+        }
+        if (hi != lo && hi != last) {
+            r.add(xs[hi], ys[hi]);
+        }
+        if (last != first) {
+            r.add(xs[last], ys[last]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Data_Quantiles} that keeps every value in a primitive array and
+ * sorts it when queried, so quantiles are exact. Memory is 8 bytes per
+ * value.
+ */
+public class Data_ExactQuantiles implements Data_Quantiles {
+
+    /**
+     * The values. Only the first {@link #size} are used.
+     */
+    protected double[] values;
+
+    protected int size;
+
+    /**
+     * If {@code true} the values are in ascending order.
+     */
+    protected boolean sorted = true;
+
+    protected double sum;
+
+    public Data_ExactQuantiles() {
+        values = new double[Data_PointSeries.DEFAULT_CAPACITY];
+    }
+
+    @Override
+    public void add(double v) {
+        if (Double.isNaN(v)) {
+            return;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = v;
+        sum += v;
+        sorted = false;
+    }
+
+    @Override
+    public void merge(Data_Quantiles q) {
+        Data_ExactQuantiles e = (Data_ExactQuantiles) q;
+        if (size + e.size > values.length) {
+            values = Arrays.copyOf(values,
+                    Math.max(values.length * 2, size + e.size));
+        }
+        System.arraycopy(e.values, 0, values, size, e.size);
+        size += e.size;
+        sum += e.sum;
+        sorted = sorted && e.size == 0;
+    }
+
+    private void sort() {
+        if (!sorted) {
+            Arrays.sort(values, 0, size);
+            sorted = true;
+        }
+    }
+
+    @Override
+    public double getQuantile(double q) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        sort();
+        int rank = (int) Math.ceil(q * size);
+        return values[Math.max(0, Math.min(size - 1, rank - 1))];
+    }
+
+    /**
+     * @return The most frequent value, the least if there are ties, or NaN if
+     * there are no values.
+     */
+    public double getMode() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        sort();
+        double r = values[0];
+        int rc = 0;
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            c = (i > 0 && values[i] == values[i - 1]) ? c + 1 : 1;
+            if (c > rc) {
+                rc = c;
+                r = values[i];
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public long getN() {
+        return size;
+    }
+
+    @Override
+    public double getSum() {
+        return sum;
+    }
+
+    @Override
+    public double getMin() {
+        return getQuantile(0d);
+    }
+
+    @Override
+    public double getMax() {
+        return getQuantile(1d);
+    }
+}
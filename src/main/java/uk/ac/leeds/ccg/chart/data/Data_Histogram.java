@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.TreeMap;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * Counts of values in equal width intervals, for a {@link Data_Bar}. Interval
+ * i runs from origin + i * intervalWidth inclusive to origin + (i + 1) *
+ * intervalWidth exclusive. Values outside the intervals or NaN are not
+ * counted. Histograms of the same intervals can be merged, so counting can be
+ * partitioned.
+ *
+ * In approximate mode the interval of a value is calculated in double
+ * precision, so a value within a rounding error of an interval edge may be
+ * counted in the adjacent interval. In exact mode each value is taken as its
+ * shortest decimal representation, as by {@link BigDecimal#valueOf(double)},
+ * and values near an edge are placed using BigDecimal arithmetic, so for
+ * example 0.3 is counted in interval 3 of intervals of width 0.1 starting at
+ * 0. This is the same as counting BigDecimal values with
+ * {@link Data_Bar#of(java.util.Map, BigDecimal, java.math.MathContext)}, but
+ * only values near an edge are slower to count.
+ */
+public class Data_Histogram {
+
+    /**
+     * Arrays with at least this many values are counted in parallel by
+     * {@link #of(double[], BigDecimal, boolean)}.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The start of interval 0.
+     */
+    protected final BigDecimal origin;
+
+    /**
+     * The width of each interval.
+     */
+    protected final BigDecimal intervalWidth;
+
+    /**
+     * Whether values near an interval edge are placed exactly.
+     */
+    protected final boolean exact;
+
+    /**
+     * The count of values in each interval.
+     */
+    protected final long[] counts;
+
+    /**
+     * The number of values counted.
+     */
+    protected long n;
+
+    /**
+     * The minimum value counted.
+     */
+    protected double minValue = Double.POSITIVE_INFINITY;
+
+    /**
+     * The maximum value counted.
+     */
+    protected double maxValue = Double.NEGATIVE_INFINITY;
+
+    private final double min;
+    private final double width;
+
+    /**
+     * Whether origin and intervalWidth are integers that are exactly
+     * represented as doubles, in which case integer values on an interval
+     * edge can be placed without BigDecimal arithmetic.
+     */
+    private final boolean integral;
+
+    /**
+     * @param origin The start of interval 0.
+     * @param intervalWidth The width of each interval.
+     * @param intervals The number of intervals.
+     * @param exact Whether values near an interval edge are placed exactly.
+     */
+    public Data_Histogram(BigDecimal origin, BigDecimal intervalWidth,
+            int intervals, boolean exact) {
+        if (intervalWidth.signum() <= 0 || intervals < 1) {
+            throw new IllegalArgumentException("intervalWidth "
+                    + intervalWidth + " intervals " + intervals);
+        }
+        this.origin = origin;
+        this.intervalWidth = intervalWidth;
+        this.exact = exact;
+        counts = new long[intervals];
+        min = origin.doubleValue();
+        width = intervalWidth.doubleValue();
+        integral = isIntegral(origin) && isIntegral(intervalWidth);
+    }
+
+    private static boolean isIntegral(BigDecimal x) {
+        return x.signum() == 0 || (x.stripTrailingZeros().scale() <= 0
+                && x.abs().compareTo(BigDecimal.valueOf(1L << 52)) < 0);
+    }
+
+    /**
+     * Counts values in intervals starting at the minimum value, partitioning
+     * values across the common fork join pool if there are at least
+     * {@link #PARALLEL_THRESHOLD} of them. The values are read twice: once for
+     * the minimum and maximum and once to count them.
+     *
+     * @param values The values. NaN values are not counted.
+     * @param intervalWidth The width of each interval.
+     * @param exact Whether values near an interval edge are placed exactly.
+     * @return A new histogram of values.
+     */
+    public static Data_Histogram of(double[] values, BigDecimal intervalWidth,
+            boolean exact) {
+        double[] minMax = getMinMax(values);
+        if (minMax[0] > minMax[1]) {
+            throw new IllegalArgumentException("No values");
+        }
+        BigDecimal origin = BigDecimal.valueOf(minMax[0]);
+        Data_Histogram h = new Data_Histogram(origin, intervalWidth, 1, exact);
+        long last = h.getIndex(minMax[1]);
+        // Long.MIN_VALUE is returned if the maximum is too far from the origin.
+        if (last == Long.MIN_VALUE || last < 0 || last >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many intervals from "
+                    + minMax[0] + " to " + minMax[1] + " of width "
+                    + intervalWidth);
+        }
+        return of(values, origin, intervalWidth, (int) last + 1, exact);
+    }
+
+    /**
+     * Counts values in the given intervals, partitioning values across the
+     * common fork join pool if there are at least {@link #PARALLEL_THRESHOLD}
+     * of them.
+     *
+     * @param values The values. NaN values are not counted.
+     * @param origin The start of interval 0.
+     * @param intervalWidth The width of each interval.
+     * @param intervals The number of intervals.
+     * @param exact Whether values near an interval edge are placed exactly.
+     * @return A new histogram of values.
+     */
+    public static Data_Histogram of(double[] values, BigDecimal origin,
+            BigDecimal intervalWidth, int intervals, boolean exact) {
+        int n = values.length;
+        int parts = n < PARALLEL_THRESHOLD ? 1
+                : Runtime.getRuntime().availableProcessors();
+        if (parts == 1) {
+            Data_Histogram r = new Data_Histogram(origin, intervalWidth,
+                    intervals, exact);
+            r.addAll(values, 0, n);
+            return r;
+        }
+        return IntStream.range(0, parts).parallel().mapToObj(p -> {
+            Data_Histogram r = new Data_Histogram(origin, intervalWidth,
+                    intervals, exact);
+            int from = (int) ((long) n * p / parts);
+            int to = (int) ((long) n * (p + 1) / parts);
+            r.addAll(values, from, to);
+            return r;
+        }).reduce((a, b) -> {
+            a.merge(b);
+            return a;
+        }).get();
+    }
+
+    /**
+     * Counts the values of s in the given intervals. If s is parallel each
+     * split of it is counted in its own histogram and these are merged.
+     *
+     * @param s The values. NaN values are not counted.
+     * @param origin The start of interval 0.
+     * @param intervalWidth The width of each interval.
+     * @param intervals The number of intervals.
+     * @param exact Whether values near an interval edge are placed exactly.
+     * @return A new histogram of the values of s.
+     */
+    public static Data_Histogram of(DoubleStream s, BigDecimal origin,
+            BigDecimal intervalWidth, int intervals, boolean exact) {
+        return s.collect(() -> new Data_Histogram(origin, intervalWidth,
+                intervals, exact), Data_Histogram::add, Data_Histogram::merge);
+    }
+
+    /**
+     * @param values The values.
+     * @return {min, max} of the values that are not NaN, or {+Infinity,
+     * -Infinity} if there are none.
+     */
+    private static double[] getMinMax(double[] values) {
+        int n = values.length;
+        int parts = n < PARALLEL_THRESHOLD ? 1
+                : Runtime.getRuntime().availableProcessors();
+        return IntStream.range(0, parts).parallel().mapToObj(p -> {
+            double mn = Double.POSITIVE_INFINITY;
+            double mx = Double.NEGATIVE_INFINITY;
+            int from = (int) ((long) n * p / parts);
+            int to = (int) ((long) n * (p + 1) / parts);
+            for (int i = from; i < to; i++) {
+                double v = values[i];
+                // NaN compares false so is skipped.
+                if (v < mn) {
+                    mn = v;
+                }
+                if (v > mx) {
+                    mx = v;
+                }
+            }
+            return new double[]{mn, mx};
+        }).reduce((a, b) -> new double[]{Math.min(a[0], b[0]),
+            Math.max(a[1], b[1])}).get();
+    }
+
+    /**
+     * @param v The value.
+     * @return The index of the interval v is in, which may be negative or not
+     * less than the number of intervals, or {@link Long#MIN_VALUE} if v is NaN
+     * or too far from the origin.
+     */
+    public long getIndex(double v) {
+        double q = (v - min) / width;
+        // Written so that NaN is excluded.
+        if (!(Math.abs(q) < 1.0e15d)) {
+            return Long.MIN_VALUE;
+        }
+        double f = Math.floor(q);
+        if (!exact) {
+            return (long) f;
+        }
+        /*
+         * Bound the difference between q and the exact quotient from the
+         * rounding of v, min and width to doubles and of the arithmetic.
+         */
+        double d = v - min;
+        double tol = 2d * ((Math.ulp(v) + Math.ulp(min) + Math.ulp(d)) / width
+                + Math.ulp(q)) + Math.abs(q) * 0x1p-51;
+        if (Math.floor(q - tol) == f && Math.floor(q + tol) == f) {
+            return (long) f;
+        }
+        if (integral && v == Math.rint(v) && Math.abs(v) < 0x1p52) {
+            // d is exact and f * width - d is rounded with the right sign.
+            if (Math.fma(f, width, -d) > 0d) {
+                return (long) f - 1L;
+            }
+            if (Math.fma(f + 1d, width, -d) <= 0d) {
+                return (long) f + 1L;
+            }
+            return (long) f;
+        }
+        return BigDecimal.valueOf(v).subtract(origin).divide(intervalWidth, 0,
+                RoundingMode.FLOOR).longValue();
+    }
+
+    /**
+     * @param v The value to count.
+     */
+    public void add(double v) {
+        long i = getIndex(v);
+        if (i >= 0L && i < counts.length) {
+            counts[(int) i]++;
+            n++;
+            if (v < minValue) {
+                minValue = v;
+            }
+            if (v > maxValue) {
+                maxValue = v;
+            }
+        }
+    }
+
+    /**
+     * @param values The values.
+     * @param from The index of the first value to add.
+     * @param to The index after the last value to add.
+     */
+    public void addAll(double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(values[i]);
+        }
+    }
+
+    /**
+     * Adds the counts of h to this.
+     *
+     * @param h A histogram of the same intervals as this.
+     */
+    public void merge(Data_Histogram h) {
+        if (h.counts.length != counts.length || h.exact != exact
+                || h.origin.compareTo(origin) != 0
+                || h.intervalWidth.compareTo(intervalWidth) != 0) {
+            throw new IllegalArgumentException("Histograms differ");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += h.counts[i];
+        }
+        n += h.n;
+        minValue = Math.min(minValue, h.minValue);
+        maxValue = Math.max(maxValue, h.maxValue);
+    }
+
+    /**
+     * @param i The index of an interval.
+     * @return The start of interval i.
+     */
+    public BigDecimal getMin(int i) {
+        return origin.add(intervalWidth.multiply(BigDecimal.valueOf(i)));
+    }
+
+    /**
+     * @param i The index of an interval.
+     * @return A label for interval i of its start and end.
+     */
+    public String getLabel(int i) {
+        BigDecimal a = getMin(i);
+        return a + " - " + a.add(intervalWidth);
+    }
+
+    /**
+     * Intervals are included from the first to the last with a count, so
+     * there are bars of height zero for any empty intervals between. The
+     * minimum of the dataset is the start of the first of these intervals.
+     *
+     * @return A new dataset for a bar chart of the counts.
+     */
+    public Data_Bar toDataBar() {
+        TreeMap<Integer, Integer> c = new TreeMap<>();
+        TreeMap<Integer, String> l = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> m = new TreeMap<>();
+        int first = 0;
+        while (first < counts.length - 1 && counts[first] == 0) {
+            first++;
+        }
+        int last = counts.length - 1;
+        while (last > first && counts[last] == 0) {
+            last--;
+        }
+        for (int i = first; i <= last; i++) {
+            c.put(i - first, Math.toIntExact(counts[i]));
+            l.put(i - first, getLabel(i));
+            m.put(i - first, getMin(i));
+        }
+        BigDecimal start = getMin(first);
+        BigDecimal max = n == 0 ? getMin(last + 1) : BigDecimal.valueOf(maxValue);
+        return new Data_Bar(c, l, m, intervalWidth, start, max);
+    }
+
+    /**
+     * @param i The index of an interval.
+     * @return The count of values in interval i.
+     */
+    public long getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @return The count of values in each interval. This is not a copy.
+     */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return The number of intervals.
+     */
+    public int getIntervals() {
+        return counts.length;
+    }
+
+    /**
+     * @return The number of values counted.
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * @return The minimum value counted, or +Infinity if none were counted.
+     */
+    public double getMinValue() {
+        return minValue;
+    }
+
+    /**
+     * @return The maximum value counted, or -Infinity if none were counted.
+     */
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    public BigDecimal getOrigin() {
+        return origin;
+    }
+
+    public BigDecimal getIntervalWidth() {
+        return intervalWidth;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+}
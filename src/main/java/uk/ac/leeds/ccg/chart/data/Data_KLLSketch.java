@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Data_Quantiles} that is a KLL sketch (Karnin, Lang and Liberty,
+ * "Optimal Quantile Approximation in Streams", 2016). Values are held in a
+ * hierarchy of compactors: when a level is full it is sorted and every other
+ * value, starting at random, is promoted to the next level with twice the
+ * weight. The number of values held grows with log(n) and k, and the rank
+ * error of a quantile is about 1.7 / k of n with high probability (about
+ * 0.85% for the default k of 200). The count, sum, minimum and maximum are
+ * exact. The random bits are from a fixed seed so the same values added in
+ * the same order always give the same sketch.
+ */
+public class Data_KLLSketch implements Data_Quantiles {
+
+    /**
+     * The default accuracy parameter.
+     */
+    public static final int DEFAULT_K = 200;
+
+    /**
+     * The ratio of the capacity of each level to that of the level above.
+     */
+    private static final double C = 2d / 3d;
+
+    /**
+     * The accuracy parameter: the capacity of the top level.
+     */
+    protected final int k;
+
+    /**
+     * The values at each level. Values at level h have weight 2^h.
+     */
+    protected double[][] levels;
+
+    /**
+     * The number of values at each level.
+     */
+    protected int[] sizes;
+
+    /**
+     * The number of levels in use.
+     */
+    protected int numLevels;
+
+    /**
+     * The capacity of each level in use.
+     */
+    private int[] capacities;
+
+    /**
+     * The sum of {@link #capacities}.
+     */
+    private int capacity;
+
+    protected long n;
+    protected double sum;
+    protected double min = Double.POSITIVE_INFINITY;
+    protected double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The state of the xorshift generator for choosing which values are
+     * promoted.
+     */
+    private long random = 0x9E3779B97F4A7C15L;
+
+    public Data_KLLSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k The accuracy parameter, at least 8. The rank error is about
+     * 1.7 / k and the memory used is about 3k values.
+     */
+    public Data_KLLSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k " + k + " < 8");
+        }
+        this.k = k;
+        levels = new double[1][];
+        sizes = new int[1];
+        levels[0] = new double[k];
+        numLevels = 1;
+        setCapacities();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Sets {@link #capacities} and {@link #capacity} for {@link #numLevels}.
+     * Each level has capacity k * C^d where d is its depth below the top
+     * level, and at least 2.
+     */
+    private void setCapacities() {
+        capacities = new int[numLevels];
+        capacity = 0;
+        for (int h = 0; h < numLevels; h++) {
+            capacities[h] = Math.max(2,
+                    (int) Math.ceil(k * Math.pow(C, numLevels - 1 - h)));
+            capacity += capacities[h];
+        }
+    }
+
+    /**
+     * @return The number of values held.
+     */
+    public int getRetained() {
+        int r = 0;
+        for (int h = 0; h < numLevels; h++) {
+            r += sizes[h];
+        }
+        return r;
+    }
+
+    private void append(int h, double v) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = v;
+    }
+
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, numLevels * 2);
+            sizes = Arrays.copyOf(sizes, numLevels * 2);
+        }
+        levels[numLevels] = new double[Math.max(2, k / 2)];
+        numLevels++;
+        setCapacities();
+    }
+
+    @Override
+    public void add(double v) {
+        if (Double.isNaN(v)) {
+            return;
+        }
+        append(0, v);
+        n++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Compacts levels from the bottom up until the values held are within
+     * the capacity.
+     */
+    private void compress() {
+        while (getRetained() > capacity || sizes[0] >= capacities[0]) {
+            int h = 0;
+            while (sizes[h] < capacities[h]) {
+                h++;
+            }
+            if (h + 1 == numLevels) {
+                addLevel();
+            }
+            double[] l = levels[h];
+            int m = sizes[h];
+            Arrays.sort(l, 0, m);
+            // Keep one value at this level if there is an odd number.
+            int start = m % 2;
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            for (int i = start + (int) (random & 1L); i < m; i += 2) {
+                append(h + 1, l[i]);
+            }
+            sizes[h] = start;
+        }
+    }
+
+    @Override
+    public void merge(Data_Quantiles q) {
+        Data_KLLSketch s = (Data_KLLSketch) q;
+        if (s.n == 0) {
+            return;
+        }
+        while (numLevels < s.numLevels) {
+            addLevel();
+        }
+        for (int h = 0; h < s.numLevels; h++) {
+            for (int i = 0; i < s.sizes[h]; i++) {
+                append(h, s.levels[h][i]);
+            }
+        }
+        n += s.n;
+        sum += s.sum;
+        min = Math.min(min, s.min);
+        max = Math.max(max, s.max);
+        compress();
+    }
+
+    @Override
+    public double getQuantile(double q) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0d) {
+            return min;
+        }
+        if (q >= 1d) {
+            return max;
+        }
+        long target = (long) Math.ceil(q * n);
+        // Merge the sorted levels, accumulating weights.
+        int[] pos = new int[numLevels];
+        for (int h = 0; h < numLevels; h++) {
+            Arrays.sort(levels[h], 0, sizes[h]);
+        }
+        long cumulative = 0;
+        while (true) {
+            int best = -1;
+            for (int h = 0; h < numLevels; h++) {
+                if (pos[h] < sizes[h] && (best < 0
+                        || levels[h][pos[h]] < levels[best][pos[best]])) {
+                    best = h;
+                }
+            }
+            if (best < 0) {
+                return max;
+            }
+            double v = levels[best][pos[best]++];
+            cumulative += 1L << best;
+            if (cumulative >= target) {
+                return v;
+            }
+        }
+    }
+
+    @Override
+    public long getN() {
+        return n;
+    }
+
+    @Override
+    public double getSum() {
+        return sum;
+    }
+
+    @Override
+    public double getMin() {
+        return min;
+    }
+
+    @Override
+    public double getMax() {
+        return max;
+    }
+}
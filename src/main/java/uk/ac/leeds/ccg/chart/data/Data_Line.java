@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A dataset for a line graph: a number of named series each drawn as a line,
+ * legend labels and optional labels for the x axis. The series are not copied
+ * but are frozen (see {@link Data_PointSeries#freeze()}), so the extent
+ * cannot go stale.
+ */
+public class Data_Line extends Data_Chart {
+
+    /**
+     * The series keyed by name.
+     */
+    protected final NavigableMap<String, Data_PointSeries> series;
+
+    /**
+     * The labels for the legend.
+     */
+    protected final List<String> labels;
+
+    /**
+     * Labels for the x axis keyed by x, or {@code null} for a numeric axis.
+     */
+    protected final NavigableMap<BigDecimal, String> xAxisLabels;
+
+    /**
+     * For each series name, whether that series is drawn, or {@code null} to
+     * draw all series.
+     */
+    protected final Map<String, Boolean> nonZero;
+
+    /**
+     * For each label, whether that label is in the legend, or {@code null} to
+     * include all labels.
+     */
+    protected final Map<String, Boolean> legendNonZero;
+
+    /**
+     * The extent is that of all the series.
+     *
+     * @param series The series keyed by name, which are frozen.
+     * @param labels The labels for the legend.
+     * @param xAxisLabels Labels for the x axis keyed by x, or {@code null} for
+     * a numeric axis.
+     */
+    public Data_Line(Map<String, Data_PointSeries> series,
+            List<String> labels, Map<BigDecimal, String> xAxisLabels) {
+        this(series, labels, xAxisLabels, null, null, getMinX(series),
+                getMaxX(series), getMinY(series), getMaxY(series));
+    }
+
+    /**
+     * @param series The series keyed by name, which are frozen.
+     * @param labels The labels for the legend.
+     * @param xAxisLabels Labels for the x axis keyed by x, or {@code null} for
+     * a numeric axis.
+     * @param nonZero For each series name, whether that series is drawn, or
+     * {@code null} to draw all series.
+     * @param legendNonZero For each label, whether that label is in the
+     * legend, or {@code null} to include all labels.
+     * @param minX The minimum x of the data area.
+     * @param maxX The maximum x of the data area.
+     * @param minY The minimum y of the data area.
+     * @param maxY The maximum y of the data area.
+     */
+    public Data_Line(Map<String, Data_PointSeries> series,
+            List<String> labels, Map<BigDecimal, String> xAxisLabels,
+            Map<String, Boolean> nonZero, Map<String, Boolean> legendNonZero,
+            BigDecimal minX, BigDecimal maxX, BigDecimal minY,
+            BigDecimal maxY) {
+        super(minX, maxX, minY, maxY);
+        series.values().forEach(Data_PointSeries::freeze);
+        this.series = Collections.unmodifiableNavigableMap(
+                new TreeMap<>(series));
+        this.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+        if (xAxisLabels == null) {
+            this.xAxisLabels = null;
+        } else {
+            this.xAxisLabels = Collections.unmodifiableNavigableMap(
+                    new TreeMap<>(xAxisLabels));
+        }
+        this.nonZero = nonZero == null ? null
+                : Collections.unmodifiableMap(new TreeMap<>(nonZero));
+        this.legendNonZero = legendNonZero == null ? null
+                : Collections.unmodifiableMap(new TreeMap<>(legendNonZero));
+    }
+
+    private static BigDecimal getMinX(Map<String, Data_PointSeries> m) {
+        double r = Double.POSITIVE_INFINITY;
+        Iterator<Data_PointSeries> ite = m.values().iterator();
+        while (ite.hasNext()) {
+            r = Math.min(r, ite.next().getMinX());
+        }
+        return valueOf(r);
+    }
+
+    private static BigDecimal getMaxX(Map<String, Data_PointSeries> m) {
+        double r = Double.NEGATIVE_INFINITY;
+        Iterator<Data_PointSeries> ite = m.values().iterator();
+        while (ite.hasNext()) {
+            r = Math.max(r, ite.next().getMaxX());
+        }
+        return valueOf(r);
+    }
+
+    private static BigDecimal getMinY(Map<String, Data_PointSeries> m) {
+        double r = Double.POSITIVE_INFINITY;
+        Iterator<Data_PointSeries> ite = m.values().iterator();
+        while (ite.hasNext()) {
+            r = Math.min(r, ite.next().getMinY());
+        }
+        return valueOf(r);
+    }
+
+    private static BigDecimal getMaxY(Map<String, Data_PointSeries> m) {
+        double r = Double.NEGATIVE_INFINITY;
+        Iterator<Data_PointSeries> ite = m.values().iterator();
+        while (ite.hasNext()) {
+            r = Math.max(r, ite.next().getMaxY());
+        }
+        return valueOf(r);
+    }
+
+    public NavigableMap<String, Data_PointSeries> getSeries() {
+        return series;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public NavigableMap<BigDecimal, String> getxAxisLabels() {
+        return xAxisLabels;
+    }
+
+    public Map<String, Boolean> getNonZero() {
+        return nonZero;
+    }
+
+    public Map<String, Boolean> getLegendNonZero() {
+        return legendNonZero;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+/**
+ * A summary of a stream of values that can answer quantile queries and can
+ * be merged with summaries of the same type built from other partitions of
+ * the stream. Quantiles are by nearest rank: the quantile q of n values is
+ * the value of rank ceil(q * n) in ascending order.
+ */
+public interface Data_Quantiles {
+
+    /**
+     * @param v The value to add. NaN values are not added.
+     */
+    public void add(double v);
+
+    /**
+     * Adds the values summarised by q to this.
+     *
+     * @param q A summary of the same type as this.
+     */
+    public void merge(Data_Quantiles q);
+
+    /**
+     * @param q The quantile from 0 to 1.
+     * @return The value at quantile q, or NaN if there are no values.
+     */
+    public double getQuantile(double q);
+
+    /**
+     * @return The number of values added.
+     */
+    public long getN();
+
+    /**
+     * @return The sum of the values added.
+     */
+    public double getSum();
+
+    /**
+     * @return The minimum value added.
+     */
+    public double getMin();
+
+    /**
+     * @return The maximum value added.
+     */
+    public double getMax();
+}
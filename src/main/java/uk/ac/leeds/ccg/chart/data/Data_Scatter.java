@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+
+/**
+ * A dataset for a scatter plot. The points are not copied but are frozen (see
+ * {@link Data_PointSeries#freeze()}), so the extent cannot go stale.
+ */
+public class Data_Scatter extends Data_Chart {
+
+    /**
+     * The points.
+     */
+    protected final Data_PointSeries points;
+
+    /**
+     * The extent is that of the points.
+     *
+     * @param points The points, which are frozen.
+     */
+    public Data_Scatter(Data_PointSeries points) {
+        this(points, valueOf(points.getMinX()), valueOf(points.getMaxX()),
+                valueOf(points.getMinY()), valueOf(points.getMaxY()));
+    }
+
+    /**
+     * @param points The points, which are frozen.
+     * @param minX The minimum x of the data area.
+     * @param maxX The maximum x of the data area.
+     * @param minY The minimum y of the data area.
+     * @param maxY The maximum y of the data area.
+     */
+    public Data_Scatter(Data_PointSeries points, BigDecimal minX,
+            BigDecimal maxX, BigDecimal minY, BigDecimal maxY) {
+        super(minX, maxX, minY, maxY);
+        points.freeze();
+        this.points = points;
+    }
+
+    public Data_PointSeries getPoints() {
+        return points;
+    }
+}
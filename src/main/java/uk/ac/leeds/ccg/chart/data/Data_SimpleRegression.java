@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.stream.IntStream;
+
+/**
+ * An accumulator for an ordinary least squares regression of y on x that
+ * points can be added to one at a time and that can be queried at any time.
+ * It holds the count, the means, the sums of squared deviations and the
+ * extents rather than the points. Accumulators of separate partitions of
+ * points can be merged. The updates are those of Welford and of Chan, Golub
+ * and LeVeque so are numerically stable, and the results are as for
+ * {@code org.apache.commons.math.stat.regression.SimpleRegression}.
+ */
+public class Data_SimpleRegression {
+
+    /**
+     * Series with at least this many points are accumulated in parallel by
+     * {@link #of(Data_PointSeries)}.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The number of points.
+     */
+    protected long n;
+
+    protected double meanX;
+    protected double meanY;
+
+    /**
+     * The sum of squared deviations of x from {@link #meanX}.
+     */
+    protected double sumXX;
+
+    /**
+     * The sum of squared deviations of y from {@link #meanY}.
+     */
+    protected double sumYY;
+
+    /**
+     * The sum of the products of the deviations of x and y.
+     */
+    protected double sumXY;
+
+    protected double minX = Double.POSITIVE_INFINITY;
+    protected double maxX = Double.NEGATIVE_INFINITY;
+    protected double minY = Double.POSITIVE_INFINITY;
+    protected double maxY = Double.NEGATIVE_INFINITY;
+
+    public Data_SimpleRegression() {
+    }
+
+    /**
+     * Accumulates the points in s, partitioning s across the common fork join
+     * pool if it has at least {@link #PARALLEL_THRESHOLD} points.
+     *
+     * @param s The points.
+     * @return A new accumulator of the points in s.
+     */
+    public static Data_SimpleRegression of(Data_PointSeries s) {
+        int n = s.size();
+        int parts = n < PARALLEL_THRESHOLD ? 1
+                : Runtime.getRuntime().availableProcessors();
+        if (parts == 1) {
+            Data_SimpleRegression r = new Data_SimpleRegression();
+            r.addAll(s, 0, n);
+            return r;
+        }
+        return IntStream.range(0, parts).parallel().mapToObj(p -> {
+            Data_SimpleRegression r = new Data_SimpleRegression();
+            r.addAll(s, (int) ((long) n * p / parts),
+                    (int) ((long) n * (p + 1) / parts));
+            return r;
+        }).reduce((a, b) -> {
+            a.merge(b);
+            return a;
+        }).get();
+    }
+
+    /**
+     * @param x The x of the point.
+     * @param y The y of the point.
+     */
+    public void add(double x, double y) {
+        n++;
+        double dx = x - meanX;
+        double dy = y - meanY;
+        meanX += dx / n;
+        meanY += dy / n;
+        sumXX += dx * (x - meanX);
+        sumYY += dy * (y - meanY);
+        sumXY += dx * (y - meanY);
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * @param s The points.
+     * @param from The index of the first point to add.
+     * @param to The index after the last point to add.
+     */
+    public void addAll(Data_PointSeries s, int from, int to) {
+        double[] xs = s.x;
+        double[] ys = s.y;
+        for (int i = from; i < to; i++) {
+            add(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * Adds the points accumulated in r to this.
+     *
+     * @param r The accumulator to merge.
+     */
+    public void merge(Data_SimpleRegression r) {
+        if (r.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = r.n;
+            meanX = r.meanX;
+            meanY = r.meanY;
+            sumXX = r.sumXX;
+            sumYY = r.sumYY;
+            sumXY = r.sumXY;
+        } else {
+            long m = n + r.n;
+            double dx = r.meanX - meanX;
+            double dy = r.meanY - meanY;
+            double f = (double) n * r.n / m;
+            sumXX += r.sumXX + dx * dx * f;
+            sumYY += r.sumYY + dy * dy * f;
+            sumXY += r.sumXY + dx * dy * f;
+            meanX += dx * r.n / m;
+            meanY += dy * r.n / m;
+            n = m;
+        }
+        minX = Math.min(minX, r.minX);
+        maxX = Math.max(maxX, r.maxX);
+        minY = Math.min(minY, r.minY);
+        maxY = Math.max(maxY, r.maxY);
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * @return The slope of the regression line or NaN if there are fewer than
+     * two points or x does not vary.
+     */
+    public double getSlope() {
+        if (n < 2 || Math.abs(sumXX) < 10 * Double.MIN_VALUE) {
+            return Double.NaN;
+        }
+        return sumXY / sumXX;
+    }
+
+    /**
+     * @return The y axis intercept of the regression line or NaN if the slope
+     * is NaN.
+     */
+    public double getIntercept() {
+        return meanY - getSlope() * meanX;
+    }
+
+    /**
+     * @return The coefficient of determination or NaN if the slope is NaN.
+     */
+    public double getRSquare() {
+        double b = getSlope();
+        return b * b * sumXX / sumYY;
+    }
+
+    /**
+     * @return double[] r where: <ul> <li>r[0] is the y axis intercept;</li>
+     * <li>r[1] is the slope;</li> <li>r[2] is the coefficient of determination
+     * (RSquare);</li> <li>r[3] is the number of points.</li> </ul>
+     */
+    public double[] getParameters() {
+        return new double[]{getIntercept(), getSlope(), getRSquare(), n};
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+}
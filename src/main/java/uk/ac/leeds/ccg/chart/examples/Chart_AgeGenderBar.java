@@ -22,11 +22,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
 import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
@@ -39,7 +41,7 @@ import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
  * Bar Chart Visualization of some default data and write it out to file as a
  * PNG.
  */
-public class Chart_AgeGenderBar extends Chart_AgeGender {
+public class Chart_AgeGenderBar extends Chart_AgeGender<BigDecimal> {
 
     public Chart_AgeGenderBar(Generic_Environment e) {
         super(e);
@@ -82,11 +84,11 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
     public void drawBarChart(int ageInterval) {
         setPaint(Color.DARK_GRAY);
         BigDecimal cellWidth = getCellWidth();
-        TreeMap<Long, BigDecimal> femaleAgeInYearsPopulationCount_TreeMap = (TreeMap<Long, BigDecimal>) data[0];
-        TreeMap<Long, BigDecimal> maleAgeInYearsPopulationCount_TreeMap = (TreeMap<Long, BigDecimal>) data[1];
-        Iterator<Map.Entry<Long, BigDecimal>> ite;
-        Map.Entry<Long, BigDecimal> entry;
-        Long age;
+        NavigableMap<Integer, BigDecimal> femaleAgeInYearsPopulationCount_TreeMap = data.getFemale();
+        NavigableMap<Integer, BigDecimal> maleAgeInYearsPopulationCount_TreeMap = data.getMale();
+        Iterator<Map.Entry<Integer, BigDecimal>> ite;
+        Map.Entry<Integer, BigDecimal> entry;
+        Integer age;
         BigDecimal population;
         int barGap = 4;
 //        int barGapDiv2 = barGap / 2;
@@ -113,28 +115,14 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
         ite = femaleAgeInYearsPopulationCount_TreeMap.entrySet().iterator();
         while (ite.hasNext()) {
             entry = ite.next();
-
-            // For some reason sometimes we get a Integer instead of a Long!
-            if (!(entry.getKey() instanceof Long)) {
-                System.out.println(entry.getKey());
-                String s = String.valueOf(entry.getKey());
-                age = Long.valueOf(s);
-            } else {
-                age = entry.getKey();
-            }
-
+            age = entry.getKey();
             population = entry.getValue();
-            int barWidth = Math_BigDecimal.divideRoundIfNecessary(
-                    population,
-                    cellWidth,
-                    0,
-                    //roundingMode).intValueExact();
-                    roundingMode).intValue();
+            int barWidth = lengthToScreenCols(population.doubleValue());
 //            int barTopRow = coordinateToScreenRow(
 //                    BigDecimal.valueOf(age + ageInterval))
 //                    + barGapDiv2;
             int barTopRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age + ageInterval))
+                    (double) (age + ageInterval))
                     + barGap;
             setPaint(Color.DARK_GRAY);
 //            Rectangle2D r2 = new Rectangle2D.Double(
@@ -154,27 +142,14 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
         ite = maleAgeInYearsPopulationCount_TreeMap.entrySet().iterator();
         while (ite.hasNext()) {
             entry = ite.next();
-
-            // For some reason sometimes we get a Integer instead of a Long!
-            if (!(entry.getKey() instanceof Long)) {
-                System.out.println(entry.getKey());
-                String s = String.valueOf(entry.getKey());
-                age = Long.valueOf(s);
-            } else {
-                age = entry.getKey();
-            }
-
+            age = entry.getKey();
             population = entry.getValue();
-            int barWidth = Math_BigDecimal.divideRoundIfNecessary(
-                    population,
-                    cellWidth,
-                    0,
-                    roundingMode).intValueExact();
+            int barWidth = lengthToScreenCols(population.doubleValue());
 //            int barTopRow = coordinateToScreenRow(
 //                    BigDecimal.valueOf(age + ageInterval))
 //                    + barGapDiv2;
             int barTopRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age + ageInterval))
+                    (double) (age + ageInterval))
                     + barGap;
             setPaint(Color.LIGHT_GRAY);
 //            Rectangle2D r2 = new Rectangle2D.Double(
@@ -243,7 +218,7 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
             chart.run();
-            Future future = chart.future;
+            CompletableFuture<Path> future = chart.future;
             Generic_Execution exec = new Generic_Execution(e);
             exec.shutdownExecutorService(es, future, chart);
         } catch (Exception ex) {
@@ -252,7 +227,7 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
     }
 
     @Override
-    public Object[] getDefaultData() {
+    public Data_AgeGender<BigDecimal> getDefaultData() {
         int femalePopAge0 = 10000;
         int malePopAge0 = 9900;
         int ageInterval = 5;
@@ -266,30 +241,24 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
      * @param malePopAge0 Male population age 0.
      * @param ageInterval Age interval.
      * @param saeyi startAgeOfEndYearInterval
-     * @return Object[] r:
-     * <ul>
-     * <li>r[0] = femaleAgeInYearsPopulationCount</li>
-     * <li>r[1] = maleAgeInYearsPopulationCount</li>
-     * <li>r[2] = maxPop</li>
-     * </ul>
+     * @return The female and male population counts in age intervals.
      */
-    public static Object[] getDefaultData(int femalePopAge0, int malePopAge0,
-            int ageInterval, int saeyi) {
-        Object[] r = new Object[3];
+    public static Data_AgeGender<BigDecimal> getDefaultData(int femalePopAge0,
+            int malePopAge0, int ageInterval, int saeyi) {
         Object[] data = getDefaultData(femalePopAge0, malePopAge0);
         // fapc femaleAgeInYearsPopulationCounts
-        TreeMap<Long, BigDecimal> fapc = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> fapc = new TreeMap<>();
         // mapc maleAgeInYearsPopulationCounts
-        TreeMap<Long, BigDecimal> mapc = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> mapc = new TreeMap<>();
         // syfapc singleYearFemaleAgeInYearsPopulationCounts
-        TreeMap<Long, BigDecimal> syapc = (TreeMap<Long, BigDecimal>) data[0];
+        TreeMap<Integer, BigDecimal> syapc = (TreeMap<Integer, BigDecimal>) data[0];
         // symapc singleYearMaleAgeInYearsPopulationCounts
-        TreeMap<Long, BigDecimal> symapc = (TreeMap<Long, BigDecimal>) data[1];
-        Iterator<Long> ite;
-        Long age;
+        TreeMap<Integer, BigDecimal> symapc = (TreeMap<Integer, BigDecimal>) data[1];
+        Iterator<Integer> ite;
+        Integer age;
         BigDecimal pop;
         BigDecimal maxPop = BigDecimal.ZERO;
-        long ageGroup;
+        int ageGroup;
         BigDecimal popGroup;
         ageGroup = 0;
         popGroup = BigDecimal.ZERO;
@@ -352,21 +321,18 @@ public class Chart_AgeGenderBar extends Chart_AgeGender {
                 }
             }
         }
-        r[0] = fapc;
-        r[1] = mapc;
-        r[2] = maxPop;
-        return r;
+        return new Data_AgeGender<>(fapc, mapc, maxPop);
     }
 
     private static Object[] getDefaultData(
             int femalePopAge0,
             int malePopAge0) {
         Object[] result = new Object[2];
-        TreeMap<Long, BigDecimal> femaleAgeInYearsPopulationCount_TreeMap = new TreeMap<>();
-        TreeMap<Long, BigDecimal> maleAgeInYearsPopulationCount_TreeMap = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> femaleAgeInYearsPopulationCount_TreeMap = new TreeMap<>();
+        TreeMap<Integer, BigDecimal> maleAgeInYearsPopulationCount_TreeMap = new TreeMap<>();
         BigDecimal population_BigDecimal;
         BigDecimal change_BigDecimal;
-        long age;
+        int age;
         population_BigDecimal = new BigDecimal("" + femalePopAge0);
         change_BigDecimal = new BigDecimal("0.94");
         for (age = 0; age < 5; age++) {
@@ -25,10 +25,12 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
@@ -37,7 +39,7 @@ import uk.ac.leeds.ccg.stats.Generic_Statistics;
 /**
  * An example of generating an Age by Gender Population Box Plot Visualization.
  */
-public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
+public class Chart_AgeGenderBoxPlot extends Chart_AgeGender<BigDecimal[]> {
 
     public Chart_AgeGenderBoxPlot(Generic_Environment e) {
         super(e);
@@ -130,10 +132,10 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
     public void drawBoxplots() {
         int ageInterval = getAgeInterval();
         Line2D abLine2D;
-        TreeMap<Integer, BigDecimal[]> femaleBoxPlotData;
-        femaleBoxPlotData = (TreeMap<Integer, BigDecimal[]>) data[0];
-        TreeMap<Integer, BigDecimal[]> maleBoxPlotData;
-        maleBoxPlotData = (TreeMap<Integer, BigDecimal[]>) data[1];
+        NavigableMap<Integer, BigDecimal[]> femaleBoxPlotData;
+        femaleBoxPlotData = data.getFemale();
+        NavigableMap<Integer, BigDecimal[]> maleBoxPlotData;
+        maleBoxPlotData = data.getMale();
 
         Iterator<Map.Entry<Integer, BigDecimal[]>> ite;
         Map.Entry<Integer, BigDecimal[]> entry;
@@ -178,20 +180,19 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
 //            int boxWidth = Math_BigDecimal.divideRoundIfNecessary(
 //                    stats[4].subtract(stats[3]), cellWidth, 0,
 //                    getRoundingMode()).intValueExact();
-            int boxWidth = Math_BigDecimal.divideRoundIfNecessary(
-                    stats[4].subtract(stats[3]), cellWidth, 0,
-                    getRoundingMode()).intValue();
+            int boxWidth = lengthToScreenCols(
+                    stats[4].subtract(stats[3]).doubleValue());
 
-            int boxTopRow = coordinateToScreenRow(BigDecimal.valueOf(age + 1)) + 2;
+            int boxTopRow = coordinateToScreenRow((double) (age + 1)) + 2;
             //int boxTopRow = coordinateToScreenRow(BigDecimal.valueOf(age));
             int boxMiddleRow = boxTopRow + (boxHeight / 2);
             int boxBottomRow = boxTopRow + boxHeight;
-            int q1Col = coordinateToScreenCol(stats[3]);
-            int q3Col = coordinateToScreenCol(stats[4]);
+            int q1Col = coordinateToScreenCol(stats[3].doubleValue());
+            int q3Col = coordinateToScreenCol(stats[4].doubleValue());
 
             // Draw min line
             setPaint(Color.DARK_GRAY);
-            int minCol = coordinateToScreenCol(stats[6]);
+            int minCol = coordinateToScreenCol(stats[6].doubleValue());
             System.out.println();
             abLine2D = new Line2D.Double(minCol, boxMiddleRow, q1Col, boxMiddleRow);
             draw(abLine2D);
@@ -201,7 +202,7 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
             draw(abLine2D);
 
             // Draw max line
-            int maxCol = coordinateToScreenCol(stats[7]);
+            int maxCol = coordinateToScreenCol(stats[7].doubleValue());
             abLine2D = new Line2D.Double(maxCol, boxMiddleRow, q3Col,
                     boxMiddleRow);
             draw(abLine2D);
@@ -219,7 +220,7 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
             draw(r2);
 
             // Draw median line
-            int medianCol = coordinateToScreenCol(stats[2]);
+            int medianCol = coordinateToScreenCol(stats[2].doubleValue());
             abLine2D = new Line2D.Double(medianCol, boxTopRow, medianCol,
                     boxBottomRow);
             draw(abLine2D);
@@ -244,19 +245,18 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
             stats = entry.getValue();
 
             // Calculate plot drawing metrics
-            int boxWidth = Math_BigDecimal.divideRoundIfNecessary(
-                    stats[4].subtract(stats[3]), getCellWidth(), 0,
-                    getRoundingMode()).intValueExact();
-            int boxTopRow = coordinateToScreenRow(BigDecimal.valueOf(age + 1)) + 2;
+            int boxWidth = lengthToScreenCols(
+                    stats[4].subtract(stats[3]).doubleValue());
+            int boxTopRow = coordinateToScreenRow((double) (age + 1)) + 2;
             //int boxTopRow = coordinateToScreenRow(BigDecimal.valueOf(age));
             int boxMiddleRow = boxTopRow + (boxHeight / 2);
             int boxBottomRow = boxTopRow + boxHeight;
-            int q1Col = coordinateToScreenCol(stats[3].negate());
-            int q3Col = coordinateToScreenCol(stats[4].negate());
+            int q1Col = coordinateToScreenCol(-stats[3].doubleValue());
+            int q3Col = coordinateToScreenCol(-stats[4].doubleValue());
 
             // Draw min line
             setPaint(Color.DARK_GRAY);
-            int minCol = coordinateToScreenCol(stats[6].negate());
+            int minCol = coordinateToScreenCol(-stats[6].doubleValue());
             abLine2D = new Line2D.Double(minCol, boxMiddleRow, q1Col, boxMiddleRow);
             draw(abLine2D);
             abLine2D = new Line2D.Double(minCol, boxMiddleRow + (whiskerHeight / 2),
@@ -265,7 +265,7 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
 
             // Draw max line
             setPaint(Color.DARK_GRAY);
-            int maxCol = coordinateToScreenCol(stats[7].negate());
+            int maxCol = coordinateToScreenCol(-stats[7].doubleValue());
             abLine2D = new Line2D.Double(maxCol, boxMiddleRow, q3Col, boxMiddleRow);
             draw(abLine2D);
             abLine2D = new Line2D.Double(maxCol, boxMiddleRow + (whiskerHeight / 2),
@@ -282,21 +282,20 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
             draw(r2);
 
             // Draw median line
-            int medianCol = coordinateToScreenCol(stats[2].negate());
+            int medianCol = coordinateToScreenCol(-stats[2].doubleValue());
             abLine2D = new Line2D.Double(medianCol, boxTopRow, medianCol, boxBottomRow);
             draw(abLine2D);
         }
     }
 
     @Override
-    public Object[] getDefaultData() {
+    public Data_AgeGender<BigDecimal[]> getDefaultData() {
         int ageInterval = 5;
         int startAgeOfEndYearInterval = 70;//95;
         decimalPlacePrecisionForCalculations = 10;
         RoundingMode rm = RoundingMode.HALF_UP;
-        Object[] r = getDefaultData(ageInterval, startAgeOfEndYearInterval,
+        return getDefaultData(ageInterval, startAgeOfEndYearInterval,
                 decimalPlacePrecisionForCalculations, rm);
-        return r;
     }
 
     /**
@@ -404,10 +403,9 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
      * @param dpc decimalPlacePrecisionForCalculations
      * @return The dataset.
      */
-    public static Object[] getDefaultData(int ageInterval,
+    public static Data_AgeGender<BigDecimal[]> getDefaultData(int ageInterval,
             int saeyi, int dpc, RoundingMode rm) {
         //int startAgeOfEndYearInterval = getStartAgeOfEndYearInterval();
-        Object[] r = new Object[5];
         TreeMap<Integer, BigDecimal[]> femaleBoxPlotStats = new TreeMap<>();
         TreeMap<Integer, BigDecimal[]> maleBoxPlotStats = new TreeMap<>();
         Object[] data10000 = getPopulationData(10000, 10000);
@@ -531,13 +529,8 @@ public class Chart_AgeGenderBoxPlot extends Chart_AgeGender {
                         boxPlotStats);
             }
         }
-        r[0] = femaleBoxPlotStats;
-        r[1] = maleBoxPlotStats;
-        //minX = maxValue.negate();
-        r[2] = maxValue;
-        r[3] = BigDecimal.valueOf(100);
-        r[4] = BigDecimal.ZERO;
-        return r;
+        return new Data_AgeGender<>(femaleBoxPlotStats, maleBoxPlotStats,
+                maxValue);
     }
 
     /**
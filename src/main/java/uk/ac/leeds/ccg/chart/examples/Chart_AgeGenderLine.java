@@ -24,10 +24,12 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import uk.ac.leeds.ccg.chart.core.Chart_AgeGender;
+import uk.ac.leeds.ccg.chart.data.Data_AgeGender;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.stats.Generic_Statistics;
@@ -36,7 +38,7 @@ import uk.ac.leeds.ccg.stats.Generic_Statistics;
  * An example of generating an Age by Gender Population Line Chart
  * Visualization.
  */
-public class Chart_AgeGenderLine extends Chart_AgeGender {
+public class Chart_AgeGenderLine extends Chart_AgeGender<BigDecimal[][]> {
 
     public Chart_AgeGenderLine(Generic_Environment e) {
         super(e);
@@ -141,12 +143,12 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
     public void drawLineChartUsingMeanAndStandardDeviation() {
         int ageInterval = getAgeInterval();
         Line2D abLine2D;
-        TreeMap<Integer, Object[]> femaleSummaryStatisticsData = (TreeMap<Integer, Object[]>) data[0];
-        TreeMap<Integer, Object[]> maleSummaryStatisticsData = (TreeMap<Integer, Object[]>) data[1];
-        Iterator<Map.Entry<Integer, Object[]>> ite;
-        Map.Entry<Integer, Object[]> entry;
+        NavigableMap<Integer, BigDecimal[][]> femaleSummaryStatisticsData = data.getFemale();
+        NavigableMap<Integer, BigDecimal[][]> maleSummaryStatisticsData = data.getMale();
+        Iterator<Map.Entry<Integer, BigDecimal[][]>> ite;
+        Map.Entry<Integer, BigDecimal[][]> entry;
         Integer age;
-        Object[] stats;
+        BigDecimal[][] stats;
         BigDecimal[] firstOrderStats;
         BigDecimal[] secondOrderStats;
         BigDecimal mean;
@@ -166,18 +168,18 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
             entry = ite.next();
             age = entry.getKey();
             stats = entry.getValue();
-            firstOrderStats = (BigDecimal[]) stats[0];
-            secondOrderStats = (BigDecimal[]) stats[1];
+            firstOrderStats = stats[0];
+            secondOrderStats = stats[1];
             mean = firstOrderStats[1];
             meanAddStdDev = mean.add(secondOrderStats[5]);
             meanSubtractStdDev = mean.subtract(secondOrderStats[5]);
-            int meanPointCol = coordinateToScreenCol(mean);
+            int meanPointCol = coordinateToScreenCol(mean.doubleValue());
             int pointRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age - ageInterval / 2));
+                    (double) (age - ageInterval / 2));
             int meanAddStdDevPointCol = coordinateToScreenCol(
-                    meanAddStdDev);
+                    meanAddStdDev.doubleValue());
             int meanSubtractStdDevPointCol = coordinateToScreenCol(
-                    meanSubtractStdDev);
+                    meanSubtractStdDev.doubleValue());
             if (firstPoint) {
                 lastMeanPointCol = meanPointCol;
                 lastMeanAddStdDevPointCol = meanAddStdDevPointCol;
@@ -221,18 +223,18 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
             entry = ite.next();
             age = entry.getKey();
             stats = entry.getValue();
-            firstOrderStats = (BigDecimal[]) stats[0];
-            secondOrderStats = (BigDecimal[]) stats[1];
+            firstOrderStats = stats[0];
+            secondOrderStats = stats[1];
             mean = firstOrderStats[1];
             meanAddStdDev = mean.add(secondOrderStats[5]);
             meanSubtractStdDev = mean.subtract(secondOrderStats[5]);
-            int meanPointCol = coordinateToScreenCol(mean.negate());
+            int meanPointCol = coordinateToScreenCol(-mean.doubleValue());
             int pointRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age - ageInterval / 2));
+                    (double) (age - ageInterval / 2));
             int meanAddStdDevPointCol = coordinateToScreenCol(
-                    meanAddStdDev.negate());
+                    -meanAddStdDev.doubleValue());
             int meanSubtractStdDevPointCol = coordinateToScreenCol(
-                    meanSubtractStdDev.negate());
+                    -meanSubtractStdDev.doubleValue());
             if (firstPoint) {
                 lastMeanPointCol = meanPointCol;
                 lastMeanAddStdDevPointCol = meanAddStdDevPointCol;
@@ -272,12 +274,12 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
     public void drawLineChartUsingMinQ1MedianQ3Max() {
         int ageInterval = getAgeInterval();
         Line2D abLine2D;
-        TreeMap<Integer, Object[]> femaleSummaryStatisticsData = (TreeMap<Integer, Object[]>) data[0];
-        TreeMap<Integer, Object[]> maleSummaryStatisticsData = (TreeMap<Integer, Object[]>) data[1];
-        Iterator<Map.Entry<Integer, Object[]>> ite;
-        Map.Entry<Integer, Object[]> entry;
+        NavigableMap<Integer, BigDecimal[][]> femaleSummaryStatisticsData = data.getFemale();
+        NavigableMap<Integer, BigDecimal[][]> maleSummaryStatisticsData = data.getMale();
+        Iterator<Map.Entry<Integer, BigDecimal[][]>> ite;
+        Map.Entry<Integer, BigDecimal[][]> entry;
         Integer age;
-        Object[] stats;
+        BigDecimal[][] stats;
         BigDecimal[] firstOrderStats;
         BigDecimal[] secondOrderStats;
         BigDecimal min;
@@ -314,7 +316,7 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
              * firstOrderStats[9] = numberOfDifferentValuesInMode;
              * firstOrderStats[10] = numberOfSameValuesInAnyPartOfMode;
              */
-            firstOrderStats = (BigDecimal[]) stats[0];
+            firstOrderStats = stats[0];
             /*
              * secondOrderStats[0] = moment1 = sum of the (differences from the median)
              * secondOrderStats[1] = moment2 = sum of the (differences from the median squared)
@@ -323,19 +325,19 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
              * secondOrderStats[4] = variance = (sum of the (differences from the median))/n
              * secondOrderStats[5] = standard deviation (hacked)  
              */
-            secondOrderStats = (BigDecimal[]) stats[1];
+            secondOrderStats = stats[1];
             min = firstOrderStats[6];
             q1 = firstOrderStats[3];
             median = firstOrderStats[2];
             q3 = firstOrderStats[4];
             max = firstOrderStats[7];
-            int minPointCol = coordinateToScreenCol(min);
-            int q1PointCol = coordinateToScreenCol(q1);
-            int medianPointCol = coordinateToScreenCol(median);
-            int q3PointCol = coordinateToScreenCol(q3);
-            int maxPointCol = coordinateToScreenCol(max);
+            int minPointCol = coordinateToScreenCol(min.doubleValue());
+            int q1PointCol = coordinateToScreenCol(q1.doubleValue());
+            int medianPointCol = coordinateToScreenCol(median.doubleValue());
+            int q3PointCol = coordinateToScreenCol(q3.doubleValue());
+            int maxPointCol = coordinateToScreenCol(max.doubleValue());
             int pointRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age - ageInterval / 2));
+                    (double) (age - ageInterval / 2));
             if (firstPoint) {
                 last_minPointCol = minPointCol;
                 last_q1PointCol = q1PointCol;
@@ -415,7 +417,7 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
              * firstOrderStats[9] = numberOfDifferentValuesInMode;
              * firstOrderStats[10] = numberOfSameValuesInAnyPartOfMode;
              */
-            firstOrderStats = (BigDecimal[]) stats[0];
+            firstOrderStats = stats[0];
             /*
              * secondOrderStats[0] = moment1 = sum of the (differences from the median)
              * secondOrderStats[1] = moment2 = sum of the (differences from the median squared)
@@ -424,19 +426,19 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
              * secondOrderStats[4] = variance = (sum of the (differences from the median))/n
              * secondOrderStats[5] = standard deviation (hacked)  
              */
-            secondOrderStats = (BigDecimal[]) stats[1];
+            secondOrderStats = stats[1];
             min = firstOrderStats[6];
             q1 = firstOrderStats[3];
             median = firstOrderStats[2];
             q3 = firstOrderStats[4];
             max = firstOrderStats[7];
-            int minPointCol = coordinateToScreenCol(min.negate());
-            int q1PointCol = coordinateToScreenCol(q1.negate());
-            int medianPointCol = coordinateToScreenCol(median.negate());
-            int q3PointCol = coordinateToScreenCol(q3.negate());
-            int maxPointCol = coordinateToScreenCol(max.negate());
+            int minPointCol = coordinateToScreenCol(-min.doubleValue());
+            int q1PointCol = coordinateToScreenCol(-q1.doubleValue());
+            int medianPointCol = coordinateToScreenCol(-median.doubleValue());
+            int q3PointCol = coordinateToScreenCol(-q3.doubleValue());
+            int maxPointCol = coordinateToScreenCol(-max.doubleValue());
             int pointRow = coordinateToScreenRow(
-                    BigDecimal.valueOf(age - ageInterval / 2));
+                    (double) (age - ageInterval / 2));
             if (firstPoint) {
                 last_minPointCol = minPointCol;
                 last_q1PointCol = q1PointCol;
@@ -608,7 +610,7 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
     }
 
     @Override
-    public Object[] getDefaultData() {
+    public Data_AgeGender<BigDecimal[][]> getDefaultData() {
         int ageInterval = 1;
         int startAgeOfEndYearInterval = 90;//95;
         int decimalPlacePrecisionForCalculations = 10;
@@ -629,11 +631,10 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
      * @param dp The decimal places.
      * @return The data set.
      */
-    public static Object[] getDefaultData(int ageInterval, int saeyi, int dp,
-            RoundingMode rm) {
-        Object[] r = new Object[5];
-        TreeMap<Integer, Object[]> femaleSummaryStatistics = new TreeMap<>();
-        TreeMap<Integer, Object[]> maleSummaryStatistics = new TreeMap<>();
+    public static Data_AgeGender<BigDecimal[][]> getDefaultData(
+            int ageInterval, int saeyi, int dp, RoundingMode rm) {
+        TreeMap<Integer, BigDecimal[][]> femaleSummaryStatistics = new TreeMap<>();
+        TreeMap<Integer, BigDecimal[][]> maleSummaryStatistics = new TreeMap<>();
         Object[] data10000 = getPopulationData(10000, 10000);
         TreeMap<Integer, BigDecimal> female10000 = (TreeMap<Integer, BigDecimal>) data10000[0];
         TreeMap<Integer, BigDecimal> male10000 = (TreeMap<Integer, BigDecimal>) data10000[1];
@@ -704,12 +705,12 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
             BigDecimal[] secondOrderStatistics = (BigDecimal[]) summaryStatistics_1[1];
             maxValue = maxValue.max(
                     firstOrderStatistics[1].add(secondOrderStatistics[5]));
+            BigDecimal[][] stats = new BigDecimal[][]{firstOrderStatistics,
+                secondOrderStatistics};
             if (age < saeyi) {
-                femaleSummaryStatistics.put(age, summaryStatistics_1);
+                femaleSummaryStatistics.put(age, stats);
             } else {
-                femaleSummaryStatistics.put(
-                        saeyi + ageInterval,
-                        summaryStatistics_1);
+                femaleSummaryStatistics.put(saeyi + ageInterval, stats);
             }
         }
 //maxX = maxValue;
@@ -758,21 +759,16 @@ public class Chart_AgeGenderLine extends Chart_AgeGender {
             BigDecimal[] secondOrderStatistics = (BigDecimal[]) summaryStatistics_1[1];
             maxValue = maxValue.max(
                     firstOrderStatistics[1].add(secondOrderStatistics[5]));
+            BigDecimal[][] stats = new BigDecimal[][]{firstOrderStatistics,
+                secondOrderStatistics};
             if (age < saeyi) {
-                maleSummaryStatistics.put(age, summaryStatistics_1);
+                maleSummaryStatistics.put(age, stats);
             } else {
-                maleSummaryStatistics.put(
-                        saeyi + ageInterval,
-                        summaryStatistics_1);
+                maleSummaryStatistics.put(saeyi + ageInterval, stats);
             }
         }
-        r[0] = femaleSummaryStatistics;
-        r[1] = maleSummaryStatistics;
-        //minX = maxValue.negate();
-        r[2] = maxValue;
-        r[3] = BigDecimal.valueOf(100);
-        r[4] = BigDecimal.ZERO;
-        return r;
+        return new Data_AgeGender<>(femaleSummaryStatistics,
+                maleSummaryStatistics, maxValue);
     }
 
     /**
@@ -16,7 +16,6 @@
 package uk.ac.leeds.ccg.chart.examples;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
@@ -24,15 +23,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import uk.ac.leeds.ccg.chart.data.Data_Bar;
+import uk.ac.leeds.ccg.chart.execution.Chart_MetricsListener;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
 import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
-import uk.ac.leeds.ccg.generic.util.Generic_Collections;
 
 /**
  * An example of generating a Bar Chart Visualization.
@@ -90,20 +91,8 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
     @Override
     public void drawData() {
         setPaint(Color.DARK_GRAY);
-        Object[] intervalCountsAndLables;
-        intervalCountsAndLables = (Object[]) data[0];
-        TreeMap<Integer, Integer> counts;
-        counts = (TreeMap<Integer, Integer>) intervalCountsAndLables[0];
-        TreeMap<Integer, BigDecimal> centres;
-        centres = (TreeMap<Integer, BigDecimal>) intervalCountsAndLables[2];
-
-        BigDecimal[] minMaxBigDecimal;
-        minMaxBigDecimal = (BigDecimal[]) data[1];
-        BigDecimal minValue;
-        minValue = minMaxBigDecimal[0];
-
-        BigDecimal intervalWidth;
-        intervalWidth = (BigDecimal) data[2];
+        NavigableMap<Integer, Integer> counts = data.getCounts();
+        NavigableMap<Integer, BigDecimal> centres = data.getMins();
 
         Iterator<Map.Entry<Integer, Integer>> ite;
         Map.Entry<Integer, Integer> entry;
@@ -118,7 +107,7 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
             BigDecimal centre = centres.get(interval);
             int row = coordinateToScreenRow(
                     //new BigDecimal(count).multiply(cellHeight));
-                    new BigDecimal(count));
+                    (double) count);
             int barHeight = dataEndRow - row;
             if (barHeight == 0) {
                 barHeight = 1;
@@ -127,7 +116,7 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
             int col = coordinateToScreenCol(
                     //minValue.add(new BigDecimal(interval).multiply(intervalWidth)))
                     //minValue.add(centre))
-                    centre)
+                    centre.doubleValue())
                     + barGap;
             setPaint(Color.DARK_GRAY);
             fillRect(col, row, barWidth, barHeight);
@@ -199,7 +188,7 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
             chart.run();
-            Future future = chart.future;
+            CompletableFuture<Path> future = chart.future;
             Generic_Execution exec = new Generic_Execution(e);
             exec.shutdownExecutorService(executorService, future, chart);
         } catch (Exception ex) {
@@ -208,17 +197,15 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
     }
 
     @Override
-    public Dimension draw() {
+    public void drawBackground() {
         drawOutline();
         drawTitle(title);
         drawAxes(2);
 //        drawAxes(getAgeInterval(), getStartAgeOfEndYearInterval());
-        drawData();
-        Dimension newDim = new Dimension(imageWidth, imageHeight);
-        return newDim;
     }
 
     public void drawAxes(int interval) {
+        long start = System.nanoTime();
         int yAxisExtraWidthLeft;
 //        int yAxisExtraHeightTop = 0;
 //        int yAxisExtraHeightBottom = 0;
@@ -277,12 +264,11 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
             int diff = xAxisExtraHeightBottom - extraHeightBottom;
             imageHeight += diff;
         }
+        endPhase(Chart_MetricsListener.Phase.DRAW_AXES, start);
     }
 
     @Override
-    public Object[] getDefaultData() {
-        Object[] result;
-        result = new Object[3];
+    public Data_Bar getDefaultData() {
         BigDecimal intervalWidth;
         intervalWidth = new BigDecimal(xAxisIncrement);
         TreeMap<String, BigDecimal> map;
@@ -313,21 +299,9 @@ public class Chart_Bar extends uk.ac.leeds.ccg.chart.core.Chart_Bar {
         map.put("X", new BigDecimal(14.0d));
         map.put("Y", new BigDecimal(16.0d));
         map.put("Z", new BigDecimal(4.0d));
-        BigDecimal[] minMaxBigDecimal;
-        minMaxBigDecimal = Generic_Collections.getMinMaxBigDecimal(map);
-        Object[] intervalCountsLabelsMins;
-        BigDecimal min = minMaxBigDecimal[0];
-        //BigDecimal max = minMaxBigDEcimal[1];
-
         MathContext mc;
         mc = new MathContext(decimalPlacePrecisionForCalculations, getRoundingMode());
-
-        intervalCountsLabelsMins = Generic_Collections.getIntervalCountsLabelsMins(
-                min, intervalWidth, map, mc);
-        result[0] = intervalCountsLabelsMins;
-        result[1] = minMaxBigDecimal;
-        result[2] = intervalWidth;
-        return result;
+        return Data_Bar.of(map, intervalWidth, mc);
     }
 
     @Override
@@ -16,7 +16,6 @@
 package uk.ac.leeds.ccg.chart.examples;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.geom.Line2D;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -24,10 +23,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import uk.ac.leeds.ccg.chart.data.Data_Downsampling;
+import uk.ac.leeds.ccg.chart.data.Data_Line;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.execution.Chart_MetricsListener;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
 import uk.ac.leeds.ccg.generic.execution.Generic_Execution;
@@ -44,6 +49,13 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
      */
     boolean drawYZero;
 
+    /**
+     * How series are downsampled before they are drawn. The default is
+     * {@link Data_Downsampling#NONE}. Otherwise series are reduced to about 4
+     * points per column of {@link #dataWidth}.
+     */
+    protected Data_Downsampling downsampling = Data_Downsampling.NONE;
+
     public Chart_Line(Generic_Environment e) {
         super(e);
     }
@@ -86,12 +98,8 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
 
     @Override
     public void drawData() {
-        TreeMap<String, TreeMap<BigDecimal, BigDecimal>> maps;
-        maps = (TreeMap<String, TreeMap<BigDecimal, BigDecimal>>) data[0];
-        TreeMap<String, Boolean> nonZero = null;
-        if (data.length > 7) {
-            nonZero = (TreeMap<String, Boolean>) data[7];
-        }
+        Map<String, Data_PointSeries> maps = data.getSeries();
+        Map<String, Boolean> nonZero = data.getNonZero();
         Color[] colours;
         colours = getColours();
         int i = 1;
@@ -100,51 +108,54 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
         while (ite.hasNext()) {
             String type;
             type = ite.next();
-            if (nonZero == null) {
-                TreeMap<BigDecimal, BigDecimal> map;
-                map = maps.get(type);
+            if (nonZero == null || nonZero.get(type)) {
                 int j = i;
                 while (j >= colours.length) {
                     j -= colours.length;
                 }
-                drawMap(map, colours[j]);
+                drawSeries(maps.get(type), colours[j]);
                 i++;
-            } else {
-                if (nonZero.get(type)) {
-                    TreeMap<BigDecimal, BigDecimal> map;
-                    map = maps.get(type);
-                    int j = i;
-                    while (j >= colours.length) {
-                        j -= colours.length;
-                    }
-                    drawMap(map, colours[j]);
-                    i++;
-                }
             }
         }
     }
 
+    public Data_Downsampling getDownsampling() {
+        return downsampling;
+    }
+
+    public void setDownsampling(Data_Downsampling downsampling) {
+        this.downsampling = downsampling;
+    }
+
     /**
      * @param map The map to draw.
      * @param c The colour.
      */
     public void drawMap(TreeMap<BigDecimal, BigDecimal> map, Color c) {
+        drawSeries(Data_PointSeries.of(map), c);
+    }
+
+    /**
+     * Draws the points in s joined in order with line segments. The points
+     * are first downsampled as set by {@link #downsampling}.
+     *
+     * @param s The series to draw.
+     * @param c The colour.
+     */
+    public void drawSeries(Data_PointSeries s, Color c) {
+        s = downsampling.apply(s, minX.doubleValue(), maxX.doubleValue(),
+                dataWidth);
         int length;
         length = 3;
         int row0 = 0;
         int col0 = 0;
         setPaint(c);
-        boolean first = true;
-        Iterator<BigDecimal> ite = map.keySet().iterator();
-        while (ite.hasNext()) {
-            BigDecimal x = ite.next();
-            BigDecimal y = map.get(x);
-            int row = coordinateToScreenRow(y);
-            int col = coordinateToScreenCol(x);
-            if (first) {
+        for (int i = 0; i < s.size(); i++) {
+            int row = coordinateToScreenRow(s.getY(i));
+            int col = coordinateToScreenCol(s.getX(i));
+            if (i == 0) {
                 row0 = row;
                 col0 = col;
-                first = false;
             } else {
                 //setPaint(c);
 //                drawPlus(col0, row0, length);
@@ -167,16 +178,6 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
         draw(line);
     }
 
-    /**
-     * @param col The column.
-     * @param row The row.
-     * @param l length of each cross part
-     */
-    public void drawCross(int col, int row, int l) {
-        draw(new Line2D.Double(col - l, row - l, col + l, row + l));
-        draw(new Line2D.Double(col - l, row + l, col + l, row - l));
-    }
-
     public static void main(String[] args) {
         try {
             Generic_Environment e = new Generic_Environment(new Generic_Defaults());
@@ -228,7 +229,7 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
             chart.setData(chart.getDefaultData());
             chart.vis.getHeadlessEnvironment();
             chart.run();
-            Future future = chart.future;
+            CompletableFuture<Path> future = chart.future;
             Generic_Execution exec = new Generic_Execution(e);
             exec.shutdownExecutorService(es, future, chart);
         } catch (Exception ex) {
@@ -237,8 +238,12 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
 
     }
 
+    /**
+     * Draws the outline, title, axes and legend. The legend is below the data
+     * area so it is drawn here rather than after the data.
+     */
     @Override
-    public Dimension draw() {
+    public void drawBackground() {
         drawOutline();
         drawTitle(title);
         drawAxes();
@@ -250,13 +255,11 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
             ab = new Line2D.Double(dataStartCol, zero, dataEndCol, zero);
             draw(ab);
         }
-        drawData();
         drawLegend();
-        Dimension newDim = new Dimension(imageWidth, imageHeight);
-        return newDim;
     }
 
     public void drawAxes() {
+        long start = System.nanoTime();
         int yAxisExtraWidthLeft;
 //        int yAxisExtraHeightTop = 0;
 //        int yAxisExtraHeightBottom = 0;
@@ -312,12 +315,11 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
             imageHeight += diff;
             extraHeightBottom = xAxisExtraHeightBottom;
         }
+        endPhase(Chart_MetricsListener.Phase.DRAW_AXES, start);
     }
 
     @Override
-    public Object[] getDefaultData() {
-        Object[] result;
-        result = new Object[7];
+    public Data_Line getDefaultData() {
         TreeMap<String, TreeMap<BigDecimal, BigDecimal>> maps;
         maps = new TreeMap<>();
         TreeMap<BigDecimal, BigDecimal> map;
@@ -384,15 +386,13 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
         if (maxX.compareTo(map2.lastKey()) == -1) {
             maxX = map2.lastKey();
         }
-        result[0] = maps;
-        result[1] = minY;
-        result[2] = maxY;
-        result[3] = minX;
-        result[4] = maxX;
+        TreeMap<String, Data_PointSeries> series;
+        series = new TreeMap<>();
+        series.put("map1", Data_PointSeries.of(map));
+        series.put("map2", Data_PointSeries.of(map2));
         ArrayList<String> labels;
         labels = new ArrayList<>();
         labels.addAll(maps.keySet());
-        result[5] = labels;
 
         // Comment out the following section to have a normal axis instead of labels.
         TreeMap<BigDecimal, String> xAxisLabels;
@@ -416,8 +416,8 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
         xAxisLabels.put(new BigDecimal(52.0d), "2012 August");
         xAxisLabels.put(new BigDecimal(53.0d), "2012 September");
         xAxisLabels.put(new BigDecimal(54.0d), "2012 October");
-        result[6] = xAxisLabels;
-        return result;
+        return new Data_Line(series, labels, xAxisLabels, null, null, minX,
+                maxX, minY, maxY);
     }
 
     @Override
@@ -432,11 +432,8 @@ public class Chart_Line extends uk.ac.leeds.ccg.chart.core.Chart_Line {
     protected void drawLegend() {
 //        TreeMap<String, TreeMap<BigDecimal, BigDecimal>> maps;
 //        maps = (TreeMap<String, TreeMap<BigDecimal, BigDecimal>>) data[0];
-        TreeMap<String, Boolean> nonZero2 = null;
-        if (data.length > 8) {
-            nonZero2 = (TreeMap<String, Boolean>) data[8];
-        }
-        ArrayList<String> labels;
+        Map<String, Boolean> nonZero2 = data.getLegendNonZero();
+        List<String> labels;
         labels = getLabels();
         Color[] colours;
         colours = getColours();
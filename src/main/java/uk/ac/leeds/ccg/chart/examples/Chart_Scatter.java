@@ -17,18 +17,19 @@ package uk.ac.leeds.ccg.chart.examples;
 
 import java.awt.Color;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import uk.ac.leeds.ccg.chart.core.Chart;
-import uk.ac.leeds.ccg.chart.data.Data_BiBigDecimal;
+import uk.ac.leeds.ccg.chart.core.Chart_ColourRamp;
+import uk.ac.leeds.ccg.chart.data.Data_DensityGrid;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.data.Data_Scatter;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.math.Math_BigDecimal;
@@ -36,7 +37,25 @@ import uk.ac.leeds.ccg.math.Math_BigDecimal;
 /**
  * An example of generating a Scatter Plot visualization.
  */
-public class Chart_Scatter extends Chart {
+public class Chart_Scatter extends Chart<Data_Scatter> {
+
+    /**
+     * If {@code true} then points are counted into square bins of
+     * {@link #densityBinSize} pixels and each bin is coloured by its count
+     * using {@link #colourRamp}, rather than each point being drawn as a
+     * cross. This is for data with so many points that crosses overplot.
+     */
+    protected boolean density;
+
+    /**
+     * The width and height in pixels of the bins in density mode.
+     */
+    protected int densityBinSize = 1;
+
+    /**
+     * The colour ramp for density mode.
+     */
+    protected Chart_ColourRamp colourRamp = Chart_ColourRamp.getDefault();
 
     public Chart_Scatter(Generic_Environment e) {
         super(e);
@@ -65,6 +84,7 @@ public class Chart_Scatter extends Chart {
         super(e);
         init(es, f, format, title, dataWidth, dataHeight,
                 xAxisLabel, yAxisLabel, drawOriginLinesOnPlot, dpc, dpd, rm);
+        setStartAgeOfEndYearInterval(0); // To avoid null pointer
     }
 
     public static void main(String[] args) {
@@ -116,7 +136,6 @@ public class Chart_Scatter extends Chart {
                     aRoundingMode);
             plot.setData(plot.getDefaultData());
             plot.vis.getHeadlessEnvironment();
-            plot.setStartAgeOfEndYearInterval(0); // To avoid null pointer
             plot.run();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
@@ -125,7 +144,7 @@ public class Chart_Scatter extends Chart {
 
     @Override
     public void drawData() {
-        drawPoints(Color.DARK_GRAY, data);
+        drawPoints(Color.DARK_GRAY, data.getPoints());
     }
 
     /**
@@ -584,17 +603,97 @@ public class Chart_Scatter extends Chart {
 //        return result;
 //    
 //    }
-    protected void drawPoints(Color color, Object[] data) {
-        if (data != null) {
-            ArrayList<Data_BiBigDecimal> xyData;
-            xyData = (ArrayList<Data_BiBigDecimal>) data[0];
-            Iterator<Data_BiBigDecimal> ite = xyData.iterator();
-            setPaint(color);
-            while (ite.hasNext()) {
-                Data_BiBigDecimal xy = ite.next();
-                Point2D p = coordinateToScreen(xy.getX(), xy.getY());
-                draw(p);
-            }
+    public boolean isDensity() {
+        return density;
+    }
+
+    public void setDensity(boolean density) {
+        this.density = density;
+    }
+
+    public int getDensityBinSize() {
+        return densityBinSize;
+    }
+
+    public void setDensityBinSize(int densityBinSize) {
+        this.densityBinSize = densityBinSize;
+    }
+
+    public Chart_ColourRamp getColourRamp() {
+        return colourRamp;
+    }
+
+    public void setColourRamp(Chart_ColourRamp colourRamp) {
+        this.colourRamp = colourRamp;
+    }
+
+    /**
+     * @return In density mode 64 colours of {@link #colourRamp}, otherwise
+     * none.
+     */
+    @Override
+    protected Color[] getPaletteColours() {
+        return density ? colourRamp.getColours(64) : new Color[0];
+    }
+
+    /**
+     * Draws each point as a cross, or if {@link #density} is {@code true}
+     * draws the density of the points using
+     * {@link #drawDensity(Data_PointSeries)}.
+     *
+     * @param color The colour of the crosses.
+     * @param xyData The points.
+     */
+    protected void drawPoints(Color color, Data_PointSeries xyData) {
+        if (density) {
+            drawDensity(xyData);
+            return;
+        }
+        setPaint(color);
+        for (int i = 0; i < xyData.size(); i++) {
+            drawCross(coordinateToScreenCol(xyData.getX(i)),
+                    coordinateToScreenRow(xyData.getY(i)), 4);
+        }
+    }
+
+    /**
+     * Counts the points into bins of {@link #densityBinSize} pixels covering
+     * the data area and colours the bins. When rendering, the colours are
+     * written straight into the raster (see {@link #getRasterTarget()}),
+     * otherwise the bins are drawn as a single image. Bins with no points
+     * are left transparent. Each point is counted in the bin of the pixel its
+     * cross would be drawn at, so bins line up with the axes as crosses do.
+     *
+     * @param xyData The points.
+     */
+    protected void drawDensity(Data_PointSeries xyData) {
+        double px = getCellWidth().doubleValue();
+        double py = getCellHeight().doubleValue();
+        if (px == 0d || py == 0d) {
+            return;
+        }
+        int bin = Math.max(1, densityBinSize);
+        // Crosses are drawn at the rounded pixel positions from 0 to
+        // dataWidth and dataHeight inclusive.
+        int cols = (dataWidth + bin) / bin;
+        int rows = (dataHeight + bin) / bin;
+        // Offset the extent by half a pixel so points are binned by rounding
+        // rather than truncating their pixel positions.
+        double x0 = minX.doubleValue() - px / 2d;
+        double x1 = x0 + px * cols * bin;
+        double y1 = minY.doubleValue() + py * (dataHeight + 0.5d);
+        double y0 = y1 - py * rows * bin;
+        Data_DensityGrid g = Data_DensityGrid.of(xyData, x0, x1, y0, y1,
+                cols, rows);
+        BufferedImage dst = getRasterTarget();
+        if (dst != null) {
+            colourRamp.paint(dst, g.getCounts(), cols, rows, g.getMaxCount(),
+                    dataStartCol, dataStartRow, bin);
+        } else {
+            BufferedImage img = colourRamp.toImage(g.getCounts(), cols, rows,
+                    g.getMaxCount());
+            drawImage(img, dataStartCol, dataStartRow, cols * bin,
+                    rows * bin);
         }
     }
 
@@ -621,22 +720,13 @@ public class Chart_Scatter extends Chart {
     }
 
     @Override
-    public Object[] getDefaultData() {
+    public Data_Scatter getDefaultData() {
         return getDefaultData(true);
     }
 
-    public static Object[] getDefaultData(boolean ignore) {
+    public static Data_Scatter getDefaultData(boolean ignore) {
         Random random = new Random(0);
-        Object[] result = new Object[5];
-//        BigDecimal maxx = BigDecimal.valueOf(Double.NEGATIVE_INFINITY);
-//        BigDecimal minx = BigDecimal.valueOf(Double.POSITIVE_INFINITY);
-//        BigDecimal maxy = BigDecimal.valueOf(Double.NEGATIVE_INFINITY);
-//        BigDecimal miny = BigDecimal.valueOf(Double.POSITIVE_INFINITY);
-        BigDecimal maxx = BigDecimal.valueOf(Double.MIN_VALUE);
-        BigDecimal minx = BigDecimal.valueOf(Double.MAX_VALUE);
-        BigDecimal maxy = BigDecimal.valueOf(Double.MIN_VALUE);
-        BigDecimal miny = BigDecimal.valueOf(Double.MAX_VALUE);
-        ArrayList<Point2D> theGeneric_XYNumericalData = new ArrayList<>();
+        Data_PointSeries xyData = new Data_PointSeries(100);
 //        for (int i = -100; i < 328; i++) {         
 //            for (int j = -100; j < 0; j++) {
 //        for (int i = -100; i < 100; i++) {
@@ -646,22 +736,12 @@ public class Chart_Scatter extends Chart {
 //        for (int i = -15; i < 10; i++) {
 //            for (int j = -9; j < 12; j++) {
                 double random_0 = random.nextDouble();
-                BigDecimal x = BigDecimal.valueOf((i + random.nextDouble()) * random_0);
-                BigDecimal y = BigDecimal.valueOf(((j + i) / 2) * random_0);
-                //BigDecimal y = BigDecimal.valueOf((j + i) * random_0);
-                maxx = maxx.max(x);
-                minx = minx.min(x);
-                maxy = maxy.max(y);
-                miny = miny.min(y);
-                Point2D point = new Point2D.Double(x.doubleValue(), y.doubleValue());
-                theGeneric_XYNumericalData.add(point);
+                double x = (i + random.nextDouble()) * random_0;
+                double y = ((j + i) / 2) * random_0;
+                //double y = (j + i) * random_0;
+                xyData.add(x, y);
             }
         }
-        result[0] = theGeneric_XYNumericalData;
-        result[1] = maxx;
-        result[2] = minx;
-        result[3] = maxy;
-        result[4] = miny;
-        return result;
+        return new Data_Scatter(xyData);
     }
 }
@@ -16,19 +16,18 @@
 package uk.ac.leeds.ccg.chart.examples;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.apache.commons.math.stat.regression.SimpleRegression;
-import uk.ac.leeds.ccg.chart.data.Data_BiBigDecimal;
+import uk.ac.leeds.ccg.chart.data.Data_PointSeries;
+import uk.ac.leeds.ccg.chart.data.Data_Scatter;
+import uk.ac.leeds.ccg.chart.data.Data_SimpleRegression;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 
@@ -38,6 +37,29 @@ import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
  */
 public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
 
+    /**
+     * The regression to draw, or {@code null} (the default) to draw the
+     * regression of the points. This can be set to a regression accumulated
+     * as points were produced, e.g. when the points are streamed.
+     */
+    protected Data_SimpleRegression regression;
+
+    /**
+     * The regression of the points of {@link #regressionData}.
+     */
+    private Data_SimpleRegression dataRegression;
+
+    /**
+     * The data that {@link #dataRegression} is for.
+     */
+    private Data_Scatter regressionData;
+
+    /**
+     * The number of points of {@link #regressionData} when
+     * {@link #dataRegression} was accumulated.
+     */
+    private int regressionSize;
+
     public Chart_ScatterAndLinearRegression(Generic_Environment e) {
         super(e);
     }
@@ -111,31 +133,53 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
 
     @Override
     public void drawData() {
-        double[][] dataD;
-        dataD = getDataAsDoubleArray((ArrayList<Data_BiBigDecimal>) data[0]);
-        drawYEqualsXLineData(dataD);
+        Data_PointSeries xyData = data.getPoints();
+        drawPoints(Color.DARK_GRAY, xyData);
+        drawYEqualsXLineData(xyData);
         /*
          * rp[0] is the y axis intercept;
          * rp[1] is the change in y relative to x (gradient or slope);
          * rp[2] is the rank correlation coefficient (RSquare);
          * rp[3] is data[0].length.
          */
-        double[] rp;
-        rp = getSimpleRegressionParameters(dataD);
-        drawRegressionLine(rp, dataD);
-        drawPoints(Color.DARK_GRAY, data);
-        if (addLegend) {
-            drawLegend(rp);
-        }
+        Data_SimpleRegression r = getRegression();
+        double[] rp = r.getParameters();
+        drawRegressionLine(rp, r);
     }
 
     @Override
-    public Object[] getDefaultData() {
-        return new Chart_Scatter(env).getDefaultData();
+    public Data_Scatter getDefaultData() {
+        return Chart_Scatter.getDefaultData(true);
+    }
+
+    /**
+     * @return {@link #regression} if that is set, otherwise the regression of
+     * the points which is accumulated again only if the dataset or its number
+     * of points has changed.
+     */
+    public Data_SimpleRegression getRegression() {
+        if (regression != null) {
+            return regression;
+        }
+        Data_PointSeries points = data.getPoints();
+        if (regressionData != data || regressionSize != points.size()) {
+            dataRegression = Data_SimpleRegression.of(points);
+            regressionData = data;
+            regressionSize = points.size();
+        }
+        return dataRegression;
     }
 
+    public void setRegression(Data_SimpleRegression regression) {
+        this.regression = regression;
+    }
+
+    /**
+     * Draws the outline, title, axes and legend. The legend sets the image
+     * size so it is drawn here rather than after the data.
+     */
     @Override
-    public Dimension draw() {
+    public void drawBackground() {
         drawOutline();
         drawTitle(title);
         //System.out.println("dataStartCol " + dataStartCol);
@@ -143,23 +187,9 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
         if (data == null) {
             data = getDefaultData();
         }
-        drawPoints(Color.DARK_GRAY, data);
-        double[][] dataAsDoubleArray = getDataAsDoubleArray((ArrayList<Data_BiBigDecimal>) data[0]);
-        drawYEqualsXLineData(dataAsDoubleArray);
-        /*
-         * rp[0] is the y axis intercept;
-         * rp[1] is the change in y relative to x (gradient or
-         * slope); rp[2] is the rank correlation coefficient
-         * (RSquare); rp[3] is data[0].length.
-         */
-        double[] rp;
-        rp = getSimpleRegressionParameters(dataAsDoubleArray);
-        drawRegressionLine(rp, dataAsDoubleArray);
         if (addLegend) {
-            drawLegend(rp);
+            drawLegend(getRegression().getParameters());
         }
-        Dimension newDim = new Dimension(imageWidth, imageHeight);
-        return newDim;
     }
 
 //    /**
@@ -627,51 +657,42 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
 //        return result;
     }
 
-    protected double[][] getDataAsDoubleArray() {
-        return getDataAsDoubleArray((ArrayList<Data_BiBigDecimal>) data[0]);
+    protected void drawYEqualsXLineData(Data_PointSeries xyData) {
+        double[][] yEqualsXLineData = getYEqualsXLineData(xyData);
+        setPaint(Color.LIGHT_GRAY);
+        draw(new Line2D.Double(
+                coordinateToScreenCol(yEqualsXLineData[1][0]),
+                coordinateToScreenRow(yEqualsXLineData[0][0]),
+                coordinateToScreenCol(yEqualsXLineData[1][1]),
+                coordinateToScreenRow(yEqualsXLineData[0][1])));
     }
 
-    protected double[][] getDataAsDoubleArray(
-            ArrayList<Data_BiBigDecimal> d) {
-        double[][] r = new double[2][d.size()];
-        Iterator<Data_BiBigDecimal> ite = d.iterator();
-        Data_BiBigDecimal xyData;
-        /*
-         * data[0][] are the y values data[1][] are the x values
-         */
-        int n = 0;
-        while (ite.hasNext()) {
-            xyData = ite.next();
-            r[0][n] = xyData.getY().doubleValue();
-            r[1][n] = xyData.getX().doubleValue();
-            n++;
-        }
-        return r;
+    protected void drawRegressionLine(double[] rp, Data_PointSeries xyData) {
+        drawRegressionLine(getXYLineData(xyData, rp));
     }
 
-    protected void drawYEqualsXLineData(double[][] dataAsDoubleArray) {
-        double[][] yEqualsXLineData = getYEqualsXLineData(
-                dataAsDoubleArray);
-        setPaint(Color.LIGHT_GRAY);
-        draw(new Line2D.Double(
-                coordinateToScreenCol(BigDecimal.valueOf(yEqualsXLineData[1][0])),
-                coordinateToScreenRow(BigDecimal.valueOf(yEqualsXLineData[0][0])),
-                coordinateToScreenCol(BigDecimal.valueOf(yEqualsXLineData[1][1])),
-                coordinateToScreenRow(BigDecimal.valueOf(yEqualsXLineData[0][1]))));
+    /**
+     * Draws the regression line across the extent of the points of r.
+     *
+     * @param rp The parameters of r.
+     * @param r The regression.
+     */
+    protected void drawRegressionLine(double[] rp, Data_SimpleRegression r) {
+        drawRegressionLine(getXYLineData(r.getMinY(), r.getMaxY(),
+                r.getMinX(), r.getMaxX(), rp));
     }
 
-    protected void drawRegressionLine(
-            double[] rp,
-            double[][] dataAsDoubleArray) {
-        double[][] regressionLineXYLineData = getXYLineData(
-                dataAsDoubleArray,
-                rp);
+    /**
+     * @param regressionLineXYLineData The line as returned from
+     * {@link #getXYLineData(Data_PointSeries, double[])}.
+     */
+    protected void drawRegressionLine(double[][] regressionLineXYLineData) {
         setPaint(Color.BLACK);
         draw(new Line2D.Double(
-                coordinateToScreenCol(BigDecimal.valueOf(regressionLineXYLineData[1][0])),
-                coordinateToScreenRow(BigDecimal.valueOf(regressionLineXYLineData[0][0])),
-                coordinateToScreenCol(BigDecimal.valueOf(regressionLineXYLineData[1][1])),
-                coordinateToScreenRow(BigDecimal.valueOf(regressionLineXYLineData[0][1]))));
+                coordinateToScreenCol(regressionLineXYLineData[1][0]),
+                coordinateToScreenRow(regressionLineXYLineData[0][0]),
+                coordinateToScreenCol(regressionLineXYLineData[1][1]),
+                coordinateToScreenRow(regressionLineXYLineData[0][1])));
 //                coordinateToScreenCol(BigDecimal.valueOf(regressionLineXYLineData[0][1])),
 //                coordinateToScreenRow(BigDecimal.valueOf(regressionLineXYLineData[1][0])),
 //                coordinateToScreenCol(BigDecimal.valueOf(regressionLineXYLineData[0][0])),
@@ -702,13 +723,22 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
         return result;
     }
 
+    /**
+     * @param data The data.
+     * @return double[] result as for
+     * {@link #getSimpleRegressionParameters(double[][])}.
+     */
+    public static double[] getSimpleRegressionParameters(
+            Data_PointSeries data) {
+        return Data_SimpleRegression.of(data).getParameters();
+    }
+
     /**
      * @param data Data.
      * @param lp lineParameters
      * @return double[][] r the line
      */
     public static double[][] getXYLineData(double[][] data, double[] lp) {
-        double[][] r = new double[2][2];
         double miny = Double.MAX_VALUE;
         double maxy = Double.MIN_VALUE;
         double minx = Double.MAX_VALUE;
@@ -719,14 +749,39 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
             miny = Math.min(miny, data[1][j]);
             maxy = Math.max(maxy, data[1][j]);
         }
-        r[0][0] = minx;
-        r[0][1] = maxx;
-        r[1][0] = miny;
-        r[1][1] = maxy;
 //        System.out.println("miny " + minx);
 //        System.out.println("maxy " + maxx);
 //        System.out.println("minx " + miny);
 //        System.out.println("maxx " + maxy);
+        return getXYLineData(minx, maxx, miny, maxy, lp);
+    }
+
+    /**
+     * @param data Data.
+     * @param lp lineParameters
+     * @return double[][] r the line
+     */
+    public static double[][] getXYLineData(Data_PointSeries data,
+            double[] lp) {
+        return getXYLineData(data.getMinY(), data.getMaxY(), data.getMinX(),
+                data.getMaxX(), lp);
+    }
+
+    /**
+     * @param minx The minimum y value of the data.
+     * @param maxx The maximum y value of the data.
+     * @param miny The minimum x value of the data.
+     * @param maxy The maximum x value of the data.
+     * @param lp lineParameters
+     * @return double[][] r the line
+     */
+    private static double[][] getXYLineData(double minx, double maxx,
+            double miny, double maxy, double[] lp) {
+        double[][] r = new double[2][2];
+        r[0][0] = minx;
+        r[0][1] = maxx;
+        r[1][0] = miny;
+        r[1][1] = maxy;
         double m = lp[1];
         double c = lp[0];
         // y = (m * x) + c
@@ -799,7 +854,6 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
      * @return The y equals x line.
      */
     public static double[][] getYEqualsXLineData(double[][] data) {
-        double[][] lineChartData = new double[2][2];
         // minx is the minimum x value in data[1]
         double minx = Double.MAX_VALUE;
         // maxx is the maximum x value in data[1]
@@ -814,6 +868,21 @@ public class Chart_ScatterAndLinearRegression extends Chart_Scatter {
             minx = Math.min(minx, data[1][j]);
             maxx = Math.max(maxx, data[1][j]);
         }
+        return getYEqualsXLineData(minx, maxx, miny, maxy);
+    }
+
+    /**
+     * @param data The data
+     * @return The y equals x line.
+     */
+    public static double[][] getYEqualsXLineData(Data_PointSeries data) {
+        return getYEqualsXLineData(data.getMinX(), data.getMaxX(),
+                data.getMinY(), data.getMaxY());
+    }
+
+    private static double[][] getYEqualsXLineData(double minx, double maxx,
+            double miny, double maxy) {
+        double[][] lineChartData = new double[2][2];
         lineChartData[0][0] = miny;
         lineChartData[0][1] = maxy;
         lineChartData[1][0] = minx;
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import uk.ac.leeds.ccg.chart.core.Chart;
+
+/**
+ * Admits chart jobs only while the memory they are estimated to need fits in
+ * a budget. A job that does not fit waits until enough admitted jobs have
+ * released their memory, so producers of jobs are held back rather than the
+ * heap being exhausted. A job estimated to need more than the whole budget is
+ * admitted only when no other job is admitted. Jobs are admitted in the order
+ * they arrive: while a job waits, jobs arriving after it wait behind it even
+ * if they would fit, so a large job is not held up for ever by a stream of
+ * small ones.
+ *
+ * Jobs encoded with a {@link Chart_PngEncoder} share the blocks it holds at
+ * once (see {@link #getEncoderBytes(Chart_PngEncoder)}), so these are
+ * admitted once for each encoder in use rather than for each job.
+ */
+public class Chart_AdmissionController {
+
+    /**
+     * The bytes per pixel of the ARGB raster a chart is rendered into unless
+     * it has a palette.
+     */
+    public static final int RASTER_BYTES_PER_PIXEL = 4;
+
+    /**
+     * An allowance of bytes per pixel for the encoder and its in memory
+     * output buffer.
+     */
+    public static final int WORKING_BYTES_PER_PIXEL = 1;
+
+    /**
+     * The bytes per pixel of the ARGB tiles of a chart drawn in tiles (see
+     * {@link Chart#setTileSize(int)}), all of which may be held until they
+     * are drawn onto the raster.
+     */
+    public static final int TILE_BYTES_PER_PIXEL = 4;
+
+    /**
+     * A fixed allowance of bytes for each job, e.g. for compression buffers.
+     */
+    public static final long WORKING_BYTES = 64L * 1024L;
+
+    /**
+     * The number of bytes that may be admitted at once.
+     */
+    protected final long budget;
+
+    /**
+     * The number of bytes currently admitted.
+     */
+    private long admittedBytes;
+
+    /**
+     * The maximum of {@link #admittedBytes}.
+     */
+    private long peakAdmittedBytes;
+
+    /**
+     * The number of jobs currently admitted.
+     */
+    private int admittedJobs;
+
+    /**
+     * The number of jobs currently waiting to be admitted.
+     */
+    private int waitingJobs;
+
+    /**
+     * The total number of jobs admitted.
+     */
+    private long admissions;
+
+    /**
+     * The total number of jobs that had to wait to be admitted.
+     */
+    private long waits;
+
+    /**
+     * The total time in nanoseconds jobs have waited to be admitted.
+     */
+    private long waitNanos;
+
+    /**
+     * A ticket for each waiting job in the order they arrived. Only the job
+     * at the head is admitted.
+     */
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+    /**
+     * The number of admitted jobs using each encoder. The bytes of the blocks
+     * of each encoder here (see {@link #getEncoderBytes(Chart_PngEncoder)})
+     * are included in {@link #admittedBytes}.
+     */
+    private final Map<Chart_PngEncoder, Integer> encoderJobs
+            = new IdentityHashMap<>();
+
+    /**
+     * Creates a controller with a budget of half the maximum heap size.
+     */
+    public Chart_AdmissionController() {
+        this(Runtime.getRuntime().maxMemory() / 2L);
+    }
+
+    /**
+     * @param budget The number of bytes that may be admitted at once.
+     */
+    public Chart_AdmissionController(long budget) {
+        if (budget < 1L) {
+            throw new IllegalArgumentException("budget " + budget + " < 1");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * @return A controller with the default budget shared by all charts that
+     * are not given one.
+     */
+    public static Chart_AdmissionController getDefault() {
+        return Default.INSTANCE;
+    }
+
+    private static class Default {
+
+        static final Chart_AdmissionController INSTANCE
+                = new Chart_AdmissionController();
+    }
+
+    /**
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @return An estimate of the bytes needed to render and encode an ARGB
+     * image of the given dimensions (see
+     * {@link #estimate(int, int, int)}).
+     */
+    public long estimate(int width, int height) {
+        return estimate(width, height, RASTER_BYTES_PER_PIXEL);
+    }
+
+    /**
+     * As the chart is not known, this assumes the worst case but for tiles:
+     * that the background is cached, so is drawn into a second raster.
+     *
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @param rasterBytesPerPixel The bytes per pixel of the raster, e.g. 1
+     * for an indexed colour image.
+     * @return An estimate of the bytes needed to render and encode an image
+     * of the given dimensions.
+     */
+    public long estimate(int width, int height, int rasterBytesPerPixel) {
+        return estimate(width, height, rasterBytesPerPixel, true, false);
+    }
+
+    /**
+     * @param c The chart.
+     * @param d The dimensions of the image of c (see {@link Chart#layout()}).
+     * @return An estimate of the bytes needed to render c into an image of
+     * dimensions d and to encode it (see
+     * {@link #estimate(int, int, int, boolean, boolean)}). The background is
+     * counted if c has a layer cache and tiles if c is drawn in tiles.
+     */
+    public long estimate(Chart<?> c, Dimension d) {
+        int tile = c.getTileSize();
+        boolean tiled = tile > 0 && !c.isIndexed()
+                && (d.width > tile || d.height > tile);
+        return estimate(d.width, d.height, c.getRasterBytesPerPixel(),
+                c.getLayerCache() != null, tiled);
+    }
+
+    /**
+     * The estimate is the sum of:
+     * <ul>
+     * <li>the raster, of rasterBytesPerPixel per pixel;</li>
+     * <li>if background, a second raster of the same size into which the
+     * background is drawn the first time it is cached;</li>
+     * <li>if tiled, {@link #TILE_BYTES_PER_PIXEL} per pixel for the
+     * tiles;</li>
+     * <li>{@link #WORKING_BYTES_PER_PIXEL} per pixel for the encoded
+     * output;</li>
+     * <li>{@link #WORKING_BYTES}.</li>
+     * </ul>
+     * The blocks of a {@link Chart_PngEncoder} are not included as they are
+     * shared by the jobs using it (see
+     * {@link #acquire(long, Chart_PngEncoder)}).
+     *
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @param rasterBytesPerPixel The bytes per pixel of the raster, e.g. 1
+     * for an indexed colour image.
+     * @param background Whether the background may be drawn into a second
+     * raster to be cached.
+     * @param tiled Whether the data is drawn in tiles.
+     * @return An estimate of the bytes needed to render and encode an image
+     * of the given dimensions.
+     */
+    public long estimate(int width, int height, int rasterBytesPerPixel,
+            boolean background, boolean tiled) {
+        long pixels = (long) width * (long) height;
+        long perPixel = rasterBytesPerPixel + WORKING_BYTES_PER_PIXEL;
+        if (background) {
+            perPixel += rasterBytesPerPixel;
+        }
+        if (tiled) {
+            perPixel += TILE_BYTES_PER_PIXEL;
+        }
+        return pixels * perPixel + WORKING_BYTES;
+    }
+
+    /**
+     * @param w The writer of the image of a chart.
+     * @param format The format the image is written in.
+     * @return The encoder of w if it is a {@link Chart_PngImageWriter} and
+     * format is "PNG", otherwise {@code null}.
+     */
+    public static Chart_PngEncoder getEncoder(Chart_ImageWriter w,
+            String format) {
+        if (w instanceof Chart_PngImageWriter
+                && "PNG".equalsIgnoreCase(format)) {
+            return ((Chart_PngImageWriter) w).getEncoder();
+        }
+        return null;
+    }
+
+    /**
+     * @param e The encoder.
+     * @return An allowance of bytes for the blocks e holds at once: about
+     * three times its block size for each of up to two more blocks than the
+     * parallelism of its pool.
+     */
+    public static long getEncoderBytes(Chart_PngEncoder e) {
+        ForkJoinPool p = e.getPool();
+        int parallelism = p == null ? ForkJoinPool.getCommonPoolParallelism()
+                : p.getParallelism();
+        return 3L * e.getBlockBytes() * (parallelism + 2);
+    }
+
+    /**
+     * Waits until bytes can be admitted and then admits them. Each call that
+     * returns normally must be matched by a call to {@link #release(long)}.
+     *
+     * @param bytes The number of bytes to admit.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        acquire(bytes, null);
+    }
+
+    /**
+     * Waits until bytes, and the blocks of encoder if no admitted job is
+     * using it, can be admitted and every job that arrived earlier has been
+     * admitted, and then admits them. Each call that returns normally must be
+     * matched by a call to {@link #release(long, Chart_PngEncoder)}.
+     *
+     * @param bytes The number of bytes to admit.
+     * @param encoder The encoder the job is encoded with or {@code null}.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquire(long bytes, Chart_PngEncoder encoder)
+            throws InterruptedException {
+        if (queue.isEmpty() && fits(getCharge(bytes, encoder))) {
+            admit(bytes, encoder);
+            return;
+        }
+        Object ticket = new Object();
+        queue.add(ticket);
+        long t0 = System.nanoTime();
+        waits++;
+        waitingJobs++;
+        try {
+            while (queue.peek() != ticket
+                    || !fits(getCharge(bytes, encoder))) {
+                wait();
+            }
+        } finally {
+            queue.remove(ticket);
+            waitingJobs--;
+            waitNanos += System.nanoTime() - t0;
+            // Let the job now at the head check if it fits.
+            notifyAll();
+        }
+        admit(bytes, encoder);
+    }
+
+    /**
+     * @param bytes The number of bytes to admit.
+     * @return {@code true} if bytes were admitted without waiting, in which
+     * case there must be a matching call to {@link #release(long)}. Bytes
+     * are not admitted while any job is waiting.
+     */
+    public synchronized boolean tryAcquire(long bytes) {
+        if (queue.isEmpty() && fits(bytes)) {
+            admit(bytes, null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param bytes The number of bytes admitted that are no longer needed.
+     */
+    public void release(long bytes) {
+        release(bytes, null);
+    }
+
+    /**
+     * @param bytes The number of bytes admitted that are no longer needed.
+     * @param encoder The encoder given when the bytes were admitted.
+     */
+    public synchronized void release(long bytes, Chart_PngEncoder encoder) {
+        admittedBytes -= bytes;
+        if (encoder != null) {
+            int n = encoderJobs.get(encoder) - 1;
+            if (n == 0) {
+                encoderJobs.remove(encoder);
+                admittedBytes -= getEncoderBytes(encoder);
+            } else {
+                encoderJobs.put(encoder, n);
+            }
+        }
+        admittedJobs--;
+        notifyAll();
+    }
+
+    /**
+     * @return bytes plus the blocks of encoder if no admitted job is using
+     * it.
+     */
+    private long getCharge(long bytes, Chart_PngEncoder encoder) {
+        if (encoder == null || encoderJobs.containsKey(encoder)) {
+            return bytes;
+        }
+        return bytes + getEncoderBytes(encoder);
+    }
+
+    private boolean fits(long bytes) {
+        return admittedJobs == 0 || admittedBytes + bytes <= budget;
+    }
+
+    private void admit(long bytes, Chart_PngEncoder encoder) {
+        admittedBytes += getCharge(bytes, encoder);
+        if (encoder != null) {
+            encoderJobs.merge(encoder, 1, Integer::sum);
+        }
+        admittedJobs++;
+        admissions++;
+        peakAdmittedBytes = Math.max(peakAdmittedBytes, admittedBytes);
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getAdmittedBytes() {
+        return admittedBytes;
+    }
+
+    /**
+     * @return The number of bytes that can be admitted without waiting.
+     */
+    public synchronized long getAvailableBytes() {
+        return Math.max(0L, budget - admittedBytes);
+    }
+
+    public synchronized long getPeakAdmittedBytes() {
+        return peakAdmittedBytes;
+    }
+
+    public synchronized int getAdmittedJobs() {
+        return admittedJobs;
+    }
+
+    public synchronized int getWaitingJobs() {
+        return waitingJobs;
+    }
+
+    public synchronized long getAdmissions() {
+        return admissions;
+    }
+
+    public synchronized long getWaits() {
+        return waits;
+    }
+
+    public synchronized long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return The fraction of the budget currently admitted.
+     */
+    public synchronized double getBudgetUsage() {
+        return admittedBytes / (double) budget;
+    }
+
+    /**
+     * @return The fraction of the maximum heap size (or if that is undefined,
+     * the committed heap size) currently used.
+     */
+    public static double getHeapUsage() {
+        MemoryUsage u
+                = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = u.getMax() < 0L ? u.getCommitted() : u.getMax();
+        return u.getUsed() / (double) max;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[budget=" + budget
+                + ", admittedBytes=" + admittedBytes
+                + ", peakAdmittedBytes=" + peakAdmittedBytes
+                + ", admittedJobs=" + admittedJobs
+                + ", waitingJobs=" + waitingJobs
+                + ", admissions=" + admissions + ", waits=" + waits
+                + ", waitNanos=" + waitNanos + "]";
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Where charts are encoded and written once rendered. Rendering is CPU bound
+ * and always happens on a bounded pool of platform threads. Writing can be
+ * I/O bound, e.g. to a network filesystem, in which case it is better done
+ * on threads that are cheap to block.
+ */
+public enum Chart_ExecutionMode {
+
+    /**
+     * Encode and write on the platform threads that render.
+     */
+    PLATFORM,
+
+    /**
+     * Encode and write on virtual threads so that rendering threads are not
+     * blocked by slow output. Virtual threads require Java 21 or later; on
+     * earlier runtimes a cached pool of daemon platform threads is used
+     * instead.
+     */
+    VIRTUAL;
+
+    /**
+     * @return A new executor that starts a virtual thread for each task, or
+     * if virtual threads are not available, a new cached pool of daemon
+     * platform threads.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * @return An executor from {@link #newVirtualThreadExecutor()} that is
+     * shared and never shut down.
+     */
+    public static ExecutorService getSharedVirtualThreadExecutor() {
+        return SharedVirtualThreadExecutor.ES;
+    }
+
+    private static class SharedVirtualThreadExecutor {
+
+        static final ExecutorService ES = newVirtualThreadExecutor();
+    }
+}
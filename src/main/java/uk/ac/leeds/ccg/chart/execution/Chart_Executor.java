@@ -15,46 +15,374 @@
  */
 package uk.ac.leeds.ccg.chart.execution;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import uk.ac.leeds.ccg.chart.core.Chart;
+import uk.ac.leeds.ccg.chart.core.Chart_LayerCache;
+import uk.ac.leeds.ccg.chart.core.Chart_RasterPool;
 
 /**
+ * Renders batches of charts concurrently and writes each to its file. Each
+ * chart is a job: it is rendered with {@link Chart#render()}, written by
+ * {@link #imageWriter} to {@link Chart#getFile()} in
+ * {@link Chart#getFormat()}, and then listeners are notified with a
+ * {@link Chart_RenderingCompleteEvent} whose source is the chart. Charts are
+ * taken from the stream only as threads become free, so a batch of any size
+ * can be generated lazily without holding more than a few charts in memory.
+ * In {@link Chart_ExecutionMode#VIRTUAL} mode the encoding and writing is
+ * handed off so the rendering threads can move on to the next chart while
+ * output is blocked. Each chart is laid out before it is rendered and is not
+ * rendered until {@link #admissionController} admits the memory it is
+ * estimated to need, which is released once the chart is written. Charts
+ * without a {@link Chart_RasterPool} are given {@link #rasterPool} to borrow
+ * the image they render into, which is returned once the chart is written.
+ * Likewise charts without a {@link Chart_LayerCache} are given
+ * {@link #layerCache} so that charts with the same layout share a background,
+ * and charts without a {@link Chart_MetricsListener} are given
+ * {@link #metricsListener}. Charts in "SVG" or "PDF" format are instead
+ * streamed to their file on the rendering thread (see
+ * {@link Chart#saveSvg(Path)} and {@link Chart#savePdf(Path)}) without an
+ * image, so neither admission nor {@link #rasterPool} is involved.
+ *
  * @author Andy Turner
  */
-public class Chart_Executor implements Runnable {
+public class Chart_Executor {
+
+    /**
+     * The number of threads charts are rendered on.
+     */
+    protected final int poolSize;
+
+    /**
+     * For encoding and writing rendered charts.
+     */
+    protected final Chart_ImageWriter imageWriter;
+
+    /**
+     * Where charts are encoded and written.
+     */
+    protected final Chart_ExecutionMode mode;
+
+    /**
+     * In {@link Chart_ExecutionMode#VIRTUAL} mode, the maximum number of
+     * rendered charts waiting to be written or being written. Rendering is
+     * held up while this many are pending.
+     */
+    protected int maxPendingWrites;
+
+    /**
+     * Admits charts to be rendered once there is memory for them.
+     */
+    protected final Chart_AdmissionController admissionController;
+
+    /**
+     * The pool of images for charts without a pool of their own.
+     */
+    protected final Chart_RasterPool rasterPool;
 
-    public Chart_ImageWriter imageWriter;
+    /**
+     * The cache of background layers for charts without a cache of their own.
+     */
+    protected final Chart_LayerCache layerCache;
 
+    /**
+     * The metrics listener for charts without a listener of their own, or
+     * {@code null} (the default).
+     */
+    protected Chart_MetricsListener metricsListener;
+
+    /**
+     * For notifying of each job completing.
+     */
+    private final Set<Chart_EventListener> listeners;
+
+    /**
+     * Creates an executor with a thread for each available processor.
+     */
     public Chart_Executor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param poolSize The number of threads charts are rendered on.
+     */
+    public Chart_Executor(int poolSize) {
+        this(poolSize, new Chart_ImageWriter());
+    }
+
+    /**
+     * @param poolSize The number of threads charts are rendered on.
+     * @param imageWriter For encoding and writing rendered charts.
+     */
+    public Chart_Executor(int poolSize, Chart_ImageWriter imageWriter) {
+        this(poolSize, imageWriter, Chart_ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Charts are admitted by {@link Chart_AdmissionController#getDefault()}.
+     *
+     * @param poolSize The number of threads charts are rendered on.
+     * @param imageWriter For encoding and writing rendered charts.
+     * @param mode Where charts are encoded and written.
+     */
+    public Chart_Executor(int poolSize, Chart_ImageWriter imageWriter,
+            Chart_ExecutionMode mode) {
+        this(poolSize, imageWriter, mode,
+                Chart_AdmissionController.getDefault());
+    }
+
+    /**
+     * @param poolSize The number of threads charts are rendered on.
+     * @param imageWriter For encoding and writing rendered charts.
+     * @param mode Where charts are encoded and written.
+     * @param admissionController Admits charts to be rendered once there is
+     * memory for them.
+     */
+    public Chart_Executor(int poolSize, Chart_ImageWriter imageWriter,
+            Chart_ExecutionMode mode,
+            Chart_AdmissionController admissionController) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize " + poolSize
+                    + " < 1");
+        }
+        this.poolSize = poolSize;
+        this.imageWriter = imageWriter;
+        this.mode = mode;
+        this.admissionController = admissionController;
+        rasterPool = new Chart_RasterPool();
+        layerCache = new Chart_LayerCache();
+        maxPendingWrites = poolSize * 16;
+        listeners = new CopyOnWriteArraySet<>();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public Chart_ImageWriter getImageWriter() {
+        return imageWriter;
+    }
+
+    public Chart_ExecutionMode getMode() {
+        return mode;
+    }
+
+    public Chart_AdmissionController getAdmissionController() {
+        return admissionController;
     }
 
-    public Chart_Executor(Chart_ImageWriter i) {
+    public Chart_RasterPool getRasterPool() {
+        return rasterPool;
     }
 
-    public static void main(String[] args) {
-        new Chart_Executor().run();
+    public Chart_LayerCache getLayerCache() {
+        return layerCache;
     }
 
-    @Override
-    public void run() {
-        int runID = 0;
-        int poolSize = 5;
-        ExecutorService es;
-        es = Executors.newFixedThreadPool(poolSize);
-        for (int i = 0; i < poolSize * 2; i++) {
-            final Chart_Runnable r = new Chart_Runnable(runID);
-            es.execute(r::start);
-            runID++;
+    public int getMaxPendingWrites() {
+        return maxPendingWrites;
+    }
+
+    public void setMaxPendingWrites(int maxPendingWrites) {
+        this.maxPendingWrites = maxPendingWrites;
+    }
+
+    public Chart_MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(Chart_MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public void addGeneric_EventListener(Chart_EventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeGeneric_EventListener(Chart_EventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Renders and writes all the charts, returning once every job is
+     * complete. Failures are reported to listeners and do not stop the batch.
+     * At most twice {@link #poolSize} charts (plus {@link #maxPendingWrites}
+     * in {@link Chart_ExecutionMode#VIRTUAL} mode) are taken from the stream
+     * and not yet complete at any time.
+     *
+     * @param charts The charts, each with its data, file and format set.
+     * @return The number of charts successfully written.
+     * @throws InterruptedException If interrupted while waiting for jobs. Jobs
+     * already submitted are cancelled.
+     */
+    public int execute(Stream<? extends Chart<?>> charts)
+            throws InterruptedException {
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService io = null;
+        int permits = poolSize * 2;
+        if (mode == Chart_ExecutionMode.VIRTUAL) {
+            io = Chart_ExecutionMode.newVirtualThreadExecutor();
+            permits += maxPendingWrites;
+        }
+        Semaphore inFlight = new Semaphore(permits);
+        ExecutorService es = Executors.newFixedThreadPool(poolSize);
+        try {
+            Iterator<? extends Chart<?>> ite = charts.iterator();
+            while (ite.hasNext()) {
+                inFlight.acquire();
+                Chart<?> c = ite.next();
+                ExecutorService writeES = io;
+                es.execute(() -> {
+                    if (isVector(c.getFormat())) {
+                        writeVector(c, written, inFlight);
+                        return;
+                    }
+                    BufferedImage bi = null;
+                    long bytes = 0L;
+                    Throwable failure = null;
+                    try {
+                        if (c.getRasterPool() == null) {
+                            c.setRasterPool(rasterPool);
+                        }
+                        if (c.getLayerCache() == null) {
+                            c.setLayerCache(layerCache);
+                        }
+                        if (c.getMetricsListener() == null) {
+                            c.setMetricsListener(metricsListener);
+                        }
+                        Dimension d = c.layout();
+                        long estimate = admissionController.estimate(c, d);
+                        admissionController.acquire(estimate,
+                                getEncoder(c));
+                        bytes = estimate;
+                        bi = c.render(d);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failure = e;
+                    } catch (Exception | OutOfMemoryError e) {
+                        failure = e;
+                    } finally {
+                        // Return the image of a failed render to the pool.
+                        if (bi == null && c.getBi() != null
+                                && c.getRasterPool() != null) {
+                            c.getRasterPool().release(c.getBi());
+                        }
+                        // Release the image as the chart may be referenced.
+                        c.setBi(null);
+                    }
+                    if (writeES == null || failure != null) {
+                        complete(c, bi, bytes, failure, written, inFlight);
+                    } else {
+                        BufferedImage rendered = bi;
+                        long admitted = bytes;
+                        writeES.execute(() -> complete(c, rendered, admitted,
+                                null, written, inFlight));
+                    }
+                });
+            }
+            es.shutdown();
+            es.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (io != null) {
+                io.shutdown();
+                io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            es.shutdownNow();
+            if (io != null) {
+                io.shutdownNow();
+            }
         }
-        es.shutdown();
+        return written.get();
+    }
+
+    /**
+     * @return The encoder {@link #imageWriter} writes c with, if it is a
+     * {@link Chart_PngEncoder} (see
+     * {@link Chart_AdmissionController#getEncoder(Chart_ImageWriter, String)}).
+     */
+    private Chart_PngEncoder getEncoder(Chart<?> c) {
+        return Chart_AdmissionController.getEncoder(imageWriter,
+                c.getFormat());
+    }
+
+    /**
+     * @param format The format.
+     * @return {@code true} if format is "SVG" or "PDF" ignoring case.
+     */
+    private static boolean isVector(String format) {
+        return "SVG".equalsIgnoreCase(format) || "PDF".equalsIgnoreCase(format);
+    }
+
+    /**
+     * Streams c to its file as SVG or PDF, notifies listeners and releases
+     * the permit for c.
+     */
+    private void writeVector(Chart<?> c, AtomicInteger written,
+            Semaphore inFlight) {
         try {
-            // wait for them to finish for up to one minute.
-            es.awaitTermination(1, TimeUnit.MINUTES);
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Chart_Executor.class.getName()).log(Level.SEVERE, null, ex);
+            Path f = null;
+            Throwable failure = null;
+            if (c.getMetricsListener() == null) {
+                c.setMetricsListener(metricsListener);
+            }
+            try {
+                f = "SVG".equalsIgnoreCase(c.getFormat())
+                        ? c.saveSvg(c.getFile()) : c.savePdf(c.getFile());
+                written.incrementAndGet();
+            } catch (Exception | OutOfMemoryError e) {
+                failure = e;
+            }
+            notifyListenersOfRenderingComplete(
+                    new Chart_RenderingCompleteEvent(c, f, failure));
+        } finally {
+            inFlight.release();
         }
     }
+
+    /**
+     * Writes bi unless rendering failed, notifies listeners and releases bi,
+     * the memory admitted and the permit for c.
+     */
+    private void complete(Chart<?> c, BufferedImage bi, long bytes,
+            Throwable failure, AtomicInteger written, Semaphore inFlight) {
+        try {
+            Path f = null;
+            if (failure == null) {
+                try {
+                    f = imageWriter.write(bi, c.getFormat(), c.getFile(), c,
+                            c.getMetricsListener());
+                    written.incrementAndGet();
+                } catch (Exception | OutOfMemoryError e) {
+                    failure = e;
+                }
+            }
+            notifyListenersOfRenderingComplete(
+                    new Chart_RenderingCompleteEvent(c, f, failure));
+        } finally {
+            if (bi != null) {
+                c.getRasterPool().release(bi);
+            }
+            if (bytes > 0L) {
+                admissionController.release(bytes, getEncoder(c));
+            }
+            inFlight.release();
+        }
+    }
+
+    private void notifyListenersOfRenderingComplete(
+            Chart_RenderingCompleteEvent e) {
+        listeners.forEach((l) -> {
+            l.renderingComplete(e);
+        });
+    }
 }
@@ -15,53 +15,89 @@
  */
 package uk.ac.leeds.ccg.chart.execution;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 /**
+ * Encodes rendered charts and writes them to file. This is the output stage of
+ * {@link Chart_Executor}. It holds no state so one instance can be shared by
+ * all the threads of an executor.
  *
  * @author Andy Turner
  */
-public class Chart_ImageWriter extends Chart_Executor {
-
-    private final Set<Chart_EventListener> listeners;
+public class Chart_ImageWriter {
 
     public Chart_ImageWriter() {
-        listeners = new HashSet<>();
-    }
-    
-    public static void main(String[] args) {
-//                Chart_ImageWriter i = new Chart_ImageWriter();
-//                Chart_EventListenerImpl listener = new Chart_EventListenerImpl();
-//                i.addGeneric_EventListener(listener);
-//                i.start();
-        Chart_ImageWriter i = new Chart_ImageWriter();
-        Chart_EventListenerImpl listener = new Chart_EventListenerImpl();
-        i.addGeneric_EventListener(listener);
-        i.start();
-        }
-
-    public void addGeneric_EventListener(Chart_EventListener listener) {
-        this.listeners.add(listener);
     }
 
-    public void removeGeneric_EventListener(Chart_EventListener listener) {
-        this.listeners.remove(listener);
+    /**
+     * Encodes image and writes it to file. Any missing parent directories are
+     * created. The encoder is given an in memory cached stream so no
+     * temporary cache file is written alongside file.
+     *
+     * @param image The image to write.
+     * @param format The informal name of the format, e.g. "PNG".
+     * @param file The file to write to.
+     * @return file
+     * @throws IOException If there is no writer for format or if encountered.
+     */
+    public Path write(RenderedImage image, String format, Path file)
+            throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (OutputStream os = newOutputStream(file);
+                ImageOutputStream ios = new MemoryCacheImageOutputStream(os)) {
+            if (!ImageIO.write(image, format, ios)) {
+                throw new IOException("No writer for format " + format);
+            }
+        }
+        return file;
     }
 
-    public void start() {
-        run();
-        notifyListenersOfRenderingComplete();
-        run();
-        notifyListenersOfRenderingComplete();
+    /**
+     * Encodes image and writes it to file as {@link #write(RenderedImage,
+     * String, Path)} does, reporting the time taken as
+     * {@link Chart_MetricsListener.Phase#ENCODE} and the size of file as
+     * {@link Chart_MetricsListener.Counter#BYTES_WRITTEN} to m if m is not
+     * {@code null}.
+     *
+     * @param image The image to write.
+     * @param format The informal name of the format, e.g. "PNG".
+     * @param file The file to write to.
+     * @param source The chart image was rendered from.
+     * @param m The listener to report to or {@code null}.
+     * @return file
+     * @throws IOException If there is no writer for format or if encountered.
+     */
+    public Path write(RenderedImage image, String format, Path file,
+            Object source, Chart_MetricsListener m) throws IOException {
+        if (m == null) {
+            return write(image, format, file);
+        }
+        long start = System.nanoTime();
+        Path r = write(image, format, file);
+        m.phaseComplete(source, Chart_MetricsListener.Phase.ENCODE,
+                System.nanoTime() - start);
+        m.count(source, Chart_MetricsListener.Counter.BYTES_WRITTEN,
+                Files.size(r));
+        return r;
     }
 
-    private void notifyListenersOfRenderingComplete() {
-//        for (Chart_EventListener e : listeners) {
-//            e.renderingComplete(new Chart_RenderingCompleteEvent(this));
-//        }
-        listeners.forEach((e) -> {
-            e.renderingComplete(new Chart_RenderingCompleteEvent(this));
-        });
+    /**
+     * @param file The file to write to.
+     * @return A new buffered stream to file.
+     * @throws IOException If encountered.
+     */
+    protected OutputStream newOutputStream(Path file) throws IOException {
+        return new BufferedOutputStream(Files.newOutputStream(file));
     }
 }
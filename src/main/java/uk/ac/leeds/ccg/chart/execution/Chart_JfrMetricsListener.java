@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Records chart metrics as Java Flight Recorder events, so a recording of a
+ * production process can attribute time to chart types and phases alongside
+ * GC, allocation and I/O events. The events are named
+ * {@code uk.ac.leeds.ccg.chart.Phase} and {@code uk.ac.leeds.ccg.chart.Count}
+ * and cost next to nothing unless enabled in a recording, e.g. with:
+ * <pre>
+ * -XX:StartFlightRecording:filename=charts.jfr,settings=profile
+ * </pre>
+ */
+public class Chart_JfrMetricsListener implements Chart_MetricsListener {
+
+    public Chart_JfrMetricsListener() {
+    }
+
+    @Override
+    public void phaseComplete(Object source, Phase phase, long nanos) {
+        PhaseEvent e = new PhaseEvent();
+        if (e.isEnabled()) {
+            e.chartType = source.getClass().getName();
+            e.phase = phase.name();
+            e.time = nanos;
+            e.commit();
+        }
+    }
+
+    @Override
+    public void count(Object source, Counter counter, long n) {
+        CountEvent e = new CountEvent();
+        if (e.isEnabled()) {
+            e.chartType = source.getClass().getName();
+            e.counter = counter.name();
+            if (counter == Counter.PRIMITIVES) {
+                e.count = n;
+            } else {
+                e.bytes = n;
+            }
+            e.commit();
+        }
+    }
+
+    /**
+     * The time taken in a phase. The event itself is instantaneous as it is
+     * committed once the phase is complete.
+     */
+    @Name("uk.ac.leeds.ccg.chart.Phase")
+    @Label("Chart Phase")
+    @Category("Chart")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+
+        @Label("Chart Type")
+        String chartType;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    /**
+     * A count of primitives drawn or bytes allocated or written.
+     */
+    @Name("uk.ac.leeds.ccg.chart.Count")
+    @Label("Chart Count")
+    @Category("Chart")
+    @StackTrace(false)
+    static class CountEvent extends Event {
+
+        @Label("Chart Type")
+        String chartType;
+
+        @Label("Counter")
+        String counter;
+
+        @Label("Count")
+        @Description("The number of primitives drawn.")
+        long count;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+}
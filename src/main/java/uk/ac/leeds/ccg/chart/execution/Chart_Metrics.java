@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the metrics of charts by chart type (the class of the source)
+ * with {@link LongAdder} counters, so that many threads can record at once
+ * without contention. Totals can be read at any time, e.g. to publish to a
+ * dashboard, and are consistent only once recording stops.
+ */
+public class Chart_Metrics implements Chart_MetricsListener {
+
+    /**
+     * The metrics keyed by chart type.
+     */
+    private final ConcurrentHashMap<Class<?>, Stats> stats
+            = new ConcurrentHashMap<>();
+
+    public Chart_Metrics() {
+    }
+
+    private Stats getStats(Object source) {
+        return stats.computeIfAbsent(source.getClass(), k -> new Stats());
+    }
+
+    @Override
+    public void phaseComplete(Object source, Phase phase, long nanos) {
+        Stats s = getStats(source);
+        s.phaseCounts[phase.ordinal()].increment();
+        s.phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void count(Object source, Counter counter, long n) {
+        getStats(source).counters[counter.ordinal()].add(n);
+    }
+
+    /**
+     * @return The chart types for which anything has been recorded.
+     */
+    public Iterable<Class<?>> getChartTypes() {
+        return stats.keySet();
+    }
+
+    /**
+     * @param type The chart type.
+     * @param phase The phase.
+     * @return The number of times phase completed for charts of type.
+     */
+    public long getCount(Class<?> type, Phase phase) {
+        Stats s = stats.get(type);
+        return s == null ? 0L : s.phaseCounts[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param type The chart type.
+     * @param phase The phase.
+     * @return The total nanoseconds taken in phase for charts of type.
+     */
+    public long getNanos(Class<?> type, Phase phase) {
+        Stats s = stats.get(type);
+        return s == null ? 0L : s.phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param type The chart type.
+     * @param counter What was counted.
+     * @return The total count for charts of type.
+     */
+    public long getTotal(Class<?> type, Counter counter) {
+        Stats s = stats.get(type);
+        return s == null ? 0L : s.counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Clears everything recorded.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * @return For each chart type, the count and total milliseconds of each
+     * phase that has completed and each non-zero counter.
+     */
+    @Override
+    public String toString() {
+        Map<String, Stats> sorted = new TreeMap<>();
+        stats.forEach((k, v) -> sorted.put(k.getName(), v));
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        sb.append("[");
+        sorted.forEach((type, s) -> {
+            sb.append(System.lineSeparator()).append(type).append(":");
+            for (Phase p : Phase.values()) {
+                long n = s.phaseCounts[p.ordinal()].sum();
+                if (n > 0L) {
+                    sb.append(" ").append(p).append("=").append(n)
+                            .append("/").append(String.format("%.3f",
+                            s.phaseNanos[p.ordinal()].sum() / 1e6d))
+                            .append("ms");
+                }
+            }
+            for (Counter c : Counter.values()) {
+                long n = s.counters[c.ordinal()].sum();
+                if (n > 0L) {
+                    sb.append(" ").append(c).append("=").append(n);
+                }
+            }
+        });
+        return sb.append("]").toString();
+    }
+
+    /**
+     * The metrics of a chart type.
+     */
+    private static class Stats {
+
+        final LongAdder[] phaseCounts = newAdders(Phase.values().length);
+
+        final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+
+        final LongAdder[] counters = newAdders(Counter.values().length);
+
+        private static LongAdder[] newAdders(int n) {
+            LongAdder[] r = new LongAdder[n];
+            for (int i = 0; i < n; i++) {
+                r[i] = new LongAdder();
+            }
+            return r;
+        }
+    }
+}
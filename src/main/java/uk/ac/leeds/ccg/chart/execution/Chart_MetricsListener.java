@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.EventListener;
+
+/**
+ * Notified of the time taken in each phase of drawing, rendering and writing
+ * a chart, and of counts of what was drawn and written. Methods are called on
+ * the thread doing the work, which may be any thread, so implementations must
+ * be thread safe and should return quickly. {@link Chart_Metrics} accumulates
+ * these by chart type and {@link Chart_JfrMetricsListener} records them as
+ * Java Flight Recorder events.
+ */
+public interface Chart_MetricsListener extends EventListener {
+
+    /**
+     * A phase of drawing, rendering or writing a chart. Phases nest, e.g.
+     * {@link #DRAW_AXES} is timed within both {@link #LAYOUT} and
+     * {@link #RASTERIZE}.
+     */
+    public enum Phase {
+
+        /**
+         * Initialising the parameters of a chart from its data.
+         */
+        INITIALISE_PARAMETERS,
+
+        /**
+         * Calculating the width of a cell from the x extent.
+         */
+        SET_CELL_WIDTH,
+
+        /**
+         * Calculating the height of a cell from the y extent.
+         */
+        SET_CELL_HEIGHT,
+
+        /**
+         * Drawing the outline.
+         */
+        DRAW_OUTLINE,
+
+        /**
+         * Drawing the title.
+         */
+        DRAW_TITLE,
+
+        /**
+         * Drawing the axes.
+         */
+        DRAW_AXES,
+
+        /**
+         * Drawing the data, including compositing any tiles.
+         */
+        DRAW_DATA,
+
+        /**
+         * Laying out a chart without graphics.
+         */
+        LAYOUT,
+
+        /**
+         * Drawing a chart into an image.
+         */
+        RASTERIZE,
+
+        /**
+         * Encoding an image and writing it to a file.
+         */
+        ENCODE
+    }
+
+    /**
+     * Something counted while rendering or writing a chart.
+     */
+    public enum Counter {
+
+        /**
+         * The number of lines, shapes, strings and images drawn into an image.
+         */
+        PRIMITIVES,
+
+        /**
+         * The number of bytes of image rasters requested, whether newly
+         * allocated or borrowed from a pool.
+         */
+        RASTER_BYTES,
+
+        /**
+         * The number of bytes written to a file.
+         */
+        BYTES_WRITTEN
+    }
+
+    /**
+     * @param source The chart.
+     * @param phase The phase completed.
+     * @param nanos The time taken in nanoseconds.
+     */
+    public void phaseComplete(Object source, Phase phase, long nanos);
+
+    /**
+     * @param source The chart.
+     * @param counter What was counted.
+     * @param n The count.
+     */
+    public void count(Object source, Counter counter, long n);
+}
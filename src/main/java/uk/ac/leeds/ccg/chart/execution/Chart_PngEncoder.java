@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import uk.ac.leeds.ccg.chart.core.Chart;
+
+/**
+ * Encodes images as PNG using many threads. The image is split into blocks of
+ * rows which are filtered and deflated concurrently on a {@link ForkJoinPool},
+ * each as an independent raw deflate stream primed with the last 32KB of the
+ * filtered block before it. The blocks are then written in order as IDAT
+ * chunks which together form a single zlib stream, as pigz does for gzip, so
+ * any PNG decoder can read the result. At most a few blocks more than the
+ * parallelism of the pool are held at once, so memory does not grow with the
+ * size of the image.
+ *
+ * Each row is filtered with whichever of the five PNG filters gives the
+ * smallest sum of absolute differences, as ImageIO does. Images are written
+ * as 8 bit RGB, or RGBA if any pixel is not opaque. Images of
+ * {@link BufferedImage#TYPE_BYTE_INDEXED} (see {@link Chart#getPalette()})
+ * are instead written with their palette as 8 bit indexed colour with the
+ * rows unfiltered, which is smaller still and much faster to encode. The
+ * compression level is the trade off between speed and size: 1 is fastest, 9
+ * is smallest and 0 stores rows unfiltered and uncompressed.
+ */
+public class Chart_PngEncoder {
+
+    /**
+     * The default number of bytes of filtered rows in each block.
+     */
+    public static final int DEFAULT_BLOCK_BYTES = 1 << 18;
+
+    /**
+     * The size of the window of a deflate stream and so of the dictionary
+     * each block is primed with.
+     */
+    private static final int DICTIONARY_BYTES = 1 << 15;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G',
+        '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The deflate compression level from 0 to 9.
+     */
+    protected final int level;
+
+    /**
+     * The approximate number of bytes of filtered rows in each block.
+     */
+    protected final int blockBytes;
+
+    /**
+     * The pool to encode on, or {@code null} for the common pool.
+     */
+    protected final ForkJoinPool pool;
+
+    /**
+     * Creates an encoder with compression level 4 (the level ImageIO uses by
+     * default) that encodes on the common pool.
+     */
+    public Chart_PngEncoder() {
+        this(4);
+    }
+
+    /**
+     * @param level The compression level from 0 to 9.
+     */
+    public Chart_PngEncoder(int level) {
+        this(level, DEFAULT_BLOCK_BYTES, null);
+    }
+
+    /**
+     * @param level The compression level from 0 to 9.
+     * @param blockBytes The approximate number of bytes of filtered rows in
+     * each block. Smaller blocks spread the work over more threads, larger
+     * blocks compress slightly better.
+     * @param pool The pool to encode on, or {@code null} for the common pool.
+     */
+    public Chart_PngEncoder(int level, int blockBytes, ForkJoinPool pool) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("level " + level
+                    + " not in [0, 9]");
+        }
+        if (blockBytes < 1) {
+            throw new IllegalArgumentException("blockBytes " + blockBytes
+                    + " < 1");
+        }
+        this.level = level;
+        this.blockBytes = blockBytes;
+        this.pool = pool;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Encodes image as a PNG to os. The stream is not closed.
+     *
+     * @param image The image to encode.
+     * @param os The stream to write to.
+     * @throws IOException If encountered.
+     */
+    public void encode(BufferedImage image, OutputStream os)
+            throws IOException {
+        ForkJoinPool p = pool == null ? ForkJoinPool.commonPool() : pool;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean indexed = image.getType() == BufferedImage.TYPE_BYTE_INDEXED;
+        int bpp;
+        int colourType;
+        if (indexed) {
+            bpp = 1;
+            colourType = 3;
+        } else {
+            boolean alpha = p.invoke(ForkJoinTask.adapt(
+                    () -> hasAlpha(image)));
+            bpp = alpha ? 4 : 3;
+            colourType = alpha ? 6 : 2;
+        }
+        int rowBytes = width * bpp + 1;
+        int rows = Math.max(1, blockBytes / rowBytes);
+        os.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = 8;
+        ihdr[9] = (byte) colourType;
+        writeChunk(os, "IHDR", ihdr, 0, ihdr.length);
+        if (indexed) {
+            writePalette(os, (IndexColorModel) image.getColorModel());
+        }
+        // The zlib header: a 32KB window and the level, with a check sum.
+        int cmf = 0x78;
+        int flg = (level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3) << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        byte[] header = {(byte) cmf, (byte) flg};
+        long adler = 1L;
+        int blocks = (height + rows - 1) / rows;
+        int window = p.getParallelism() + 2;
+        ArrayDeque<ForkJoinTask<Block>> tasks = new ArrayDeque<>();
+        try {
+            int next = 0;
+            for (int b = 0; b < blocks; b++) {
+                while (next < blocks && next < b + window) {
+                    int r0 = next * rows;
+                    int r1 = Math.min(height, r0 + rows);
+                    boolean last = r1 == height;
+                    tasks.add(p.submit(() -> encodeBlock(image, bpp, r0, r1,
+                            last)));
+                    next++;
+                }
+                Block block = tasks.remove().join();
+                if (b == 0) {
+                    byte[] d = new byte[block.length + 2];
+                    d[0] = header[0];
+                    d[1] = header[1];
+                    System.arraycopy(block.data, 0, d, 2, block.length);
+                    writeChunk(os, "IDAT", d, 0, d.length);
+                    adler = block.adler;
+                } else {
+                    writeChunk(os, "IDAT", block.data, 0, block.length);
+                    adler = combine(adler, block.adler, block.filtered);
+                }
+            }
+        } finally {
+            for (ForkJoinTask<Block> t : tasks) {
+                t.cancel(false);
+            }
+        }
+        byte[] check = new byte[4];
+        putInt(check, 0, (int) adler);
+        writeChunk(os, "IDAT", check, 0, 4);
+        writeChunk(os, "IEND", check, 0, 0);
+    }
+
+    /**
+     * Writes the PLTE chunk of cm and, if any entry of cm is not opaque, a
+     * tRNS chunk of the alphas up to the last entry that is not opaque.
+     *
+     * @param os The stream to write to.
+     * @param cm The palette.
+     * @throws IOException If encountered.
+     */
+    private static void writePalette(OutputStream os, IndexColorModel cm)
+            throws IOException {
+        int n = cm.getMapSize();
+        byte[] plte = new byte[n * 3];
+        byte[] trns = new byte[n];
+        int trnsLength = 0;
+        for (int i = 0; i < n; i++) {
+            int v = cm.getRGB(i);
+            plte[i * 3] = (byte) (v >>> 16);
+            plte[i * 3 + 1] = (byte) (v >>> 8);
+            plte[i * 3 + 2] = (byte) v;
+            trns[i] = (byte) (v >>> 24);
+            if ((v >>> 24) != 255) {
+                trnsLength = i + 1;
+            }
+        }
+        writeChunk(os, "PLTE", plte, 0, plte.length);
+        if (trnsLength > 0) {
+            writeChunk(os, "tRNS", trns, 0, trnsLength);
+        }
+    }
+
+    /**
+     * @param image The image.
+     * @return {@code true} if any pixel of image is not opaque.
+     */
+    private static boolean hasAlpha(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return false;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return IntStream.range(0, height).parallel()
+                .anyMatch(y -> {
+                    int[] row = getRow(image, y, new int[width]);
+                    for (int v : row) {
+                        if ((v >>> 24) != 255) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+    }
+
+    /**
+     * @param image The image.
+     * @param y The row.
+     * @param buf A buffer of the width of image.
+     * @return The ARGB pixels of row y of image in buf.
+     */
+    private static int[] getRow(BufferedImage image, int y, int[] buf) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB) {
+            // This copies from the raster without making it unmanaged.
+            Raster r = image.getRaster();
+            return (int[]) r.getDataElements(0, y, buf.length, 1, buf);
+        }
+        if (type == BufferedImage.TYPE_INT_RGB) {
+            Raster r = image.getRaster();
+            r.getDataElements(0, y, buf.length, 1, buf);
+            for (int i = 0; i < buf.length; i++) {
+                buf[i] |= 0xFF000000;
+            }
+            return buf;
+        }
+        return image.getRGB(0, y, buf.length, 1, buf, 0, buf.length);
+    }
+
+    /**
+     * Filters and deflates rows r0 to r1 - 1 of image.
+     *
+     * @param image The image.
+     * @param bpp The bytes per pixel.
+     * @param r0 The first row.
+     * @param r1 The row after the last row.
+     * @param last Whether these are the last rows.
+     * @return The block.
+     */
+    private Block encodeBlock(BufferedImage image, int bpp, int r0, int r1,
+            boolean last) {
+        int width = image.getWidth();
+        int rowBytes = width * bpp + 1;
+        Filter f = new Filter(image, bpp);
+        // Filter the rows before r0 within a window to prime the deflater.
+        int d0 = level == 0 ? r0 : Math.max(0,
+                r0 - (DICTIONARY_BYTES + rowBytes - 1) / rowBytes);
+        byte[] filtered = new byte[(r1 - d0) * rowBytes];
+        f.prime(d0);
+        for (int y = d0; y < r1; y++) {
+            f.filter(y, filtered, (y - d0) * rowBytes);
+        }
+        int off = (r0 - d0) * rowBytes;
+        int len = filtered.length - off;
+        Adler32 a = new Adler32();
+        a.update(filtered, off, len);
+        Deflater d = new Deflater(level, true);
+        try {
+            if (off > 0) {
+                int dl = Math.min(off, DICTIONARY_BYTES);
+                d.setDictionary(filtered, off - dl, dl);
+            }
+            d.setInput(filtered, off, len);
+            if (last) {
+                d.finish();
+            }
+            byte[] out = new byte[len / 4 + 64];
+            int n = 0;
+            while (true) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int c = last ? d.deflate(out, n, out.length - n)
+                        : d.deflate(out, n, out.length - n,
+                                Deflater.SYNC_FLUSH);
+                n += c;
+                if (last ? d.finished() : n < out.length && d.needsInput()) {
+                    break;
+                }
+            }
+            return new Block(out, n, a.getValue(), len);
+        } finally {
+            d.end();
+        }
+    }
+
+    /**
+     * Combines the Adler-32 check sums of two consecutive sequences of bytes
+     * as zlib does.
+     *
+     * @param a1 The check sum of the first sequence.
+     * @param a2 The check sum of the second sequence.
+     * @param len2 The length of the second sequence.
+     * @return The check sum of the two sequences.
+     */
+    static long combine(long a1, long a2, long len2) {
+        final long base = 65521L;
+        long rem = len2 % base;
+        long sum1 = a1 & 0xFFFFL;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (a2 & 0xFFFFL) + base - 1L;
+        sum2 += ((a1 >> 16) & 0xFFFFL) + ((a2 >> 16) & 0xFFFFL) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= base << 1;
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void writeChunk(OutputStream os, String type, byte[] data,
+            int off, int len) throws IOException {
+        byte[] b = new byte[8];
+        putInt(b, 0, len);
+        for (int i = 0; i < 4; i++) {
+            b[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b, 4, 4);
+        crc.update(data, off, len);
+        os.write(b);
+        os.write(data, off, len);
+        putInt(b, 0, (int) crc.getValue());
+        os.write(b, 0, 4);
+    }
+
+    /**
+     * A deflated block of rows.
+     */
+    private static class Block {
+
+        final byte[] data;
+        final int length;
+        final long adler;
+        final int filtered;
+
+        Block(byte[] data, int length, long adler, int filtered) {
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.filtered = filtered;
+        }
+    }
+
+    /**
+     * Filters consecutive rows of an image.
+     */
+    private class Filter {
+
+        final BufferedImage image;
+        final int bpp;
+        final int[] argb;
+        byte[] prev;
+        byte[] cur;
+
+        /**
+         * The candidate filtered rows for each filter type.
+         */
+        final byte[][] candidates = new byte[5][];
+
+        Filter(BufferedImage image, int bpp) {
+            this.image = image;
+            this.bpp = bpp;
+            int width = image.getWidth();
+            argb = new int[width];
+            prev = new byte[width * bpp];
+            cur = new byte[width * bpp];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = new byte[width * bpp];
+            }
+        }
+
+        /**
+         * Reads the row before y so that row y can be filtered.
+         *
+         * @param y The row to filter next.
+         */
+        void prime(int y) {
+            if (y > 0) {
+                read(y - 1, prev);
+            }
+        }
+
+        private void read(int y, byte[] dst) {
+            if (bpp == 1) {
+                // The palette indexes of a TYPE_BYTE_INDEXED image.
+                image.getRaster().getDataElements(0, y, dst.length, 1, dst);
+                return;
+            }
+            getRow(image, y, argb);
+            int j = 0;
+            if (bpp == 4) {
+                for (int v : argb) {
+                    dst[j++] = (byte) (v >>> 16);
+                    dst[j++] = (byte) (v >>> 8);
+                    dst[j++] = (byte) v;
+                    dst[j++] = (byte) (v >>> 24);
+                }
+            } else {
+                for (int v : argb) {
+                    dst[j++] = (byte) (v >>> 16);
+                    dst[j++] = (byte) (v >>> 8);
+                    dst[j++] = (byte) v;
+                }
+            }
+        }
+
+        /**
+         * Filters row y, which must follow the row last filtered or primed,
+         * into dst at off as a filter type byte and the filtered row.
+         */
+        void filter(int y, byte[] dst, int off) {
+            read(y, cur);
+            int n = cur.length;
+            // Palette indexes are not filtered as differences between them
+            // are meaningless.
+            if (level == 0 || bpp == 1) {
+                dst[off] = 0;
+                System.arraycopy(cur, 0, dst, off + 1, n);
+            } else {
+                byte[] none = cur;
+                byte[] sub = candidates[1];
+                byte[] up = candidates[2];
+                byte[] avg = candidates[3];
+                byte[] paeth = candidates[4];
+                long sNone = 0;
+                long sSub = 0;
+                long sUp = 0;
+                long sAvg = 0;
+                long sPaeth = 0;
+                for (int i = 0; i < n; i++) {
+                    int x = cur[i] & 0xFF;
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    int pr = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    byte vs = (byte) (x - a);
+                    byte vu = (byte) (x - b);
+                    byte va = (byte) (x - ((a + b) >> 1));
+                    byte vp = (byte) (x - pr);
+                    sub[i] = vs;
+                    up[i] = vu;
+                    avg[i] = va;
+                    paeth[i] = vp;
+                    sNone += Math.abs((int) cur[i]);
+                    sSub += Math.abs((int) vs);
+                    sUp += Math.abs((int) vu);
+                    sAvg += Math.abs((int) va);
+                    sPaeth += Math.abs((int) vp);
+                }
+                int type = 0;
+                long min = sNone;
+                byte[] best = none;
+                if (sSub < min) {
+                    type = 1;
+                    min = sSub;
+                    best = sub;
+                }
+                if (sUp < min) {
+                    type = 2;
+                    min = sUp;
+                    best = up;
+                }
+                if (sAvg < min) {
+                    type = 3;
+                    min = sAvg;
+                    best = avg;
+                }
+                if (sPaeth < min) {
+                    type = 4;
+                    best = paeth;
+                }
+                dst[off] = (byte) type;
+                System.arraycopy(best, 0, dst, off + 1, n);
+            }
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+    }
+}
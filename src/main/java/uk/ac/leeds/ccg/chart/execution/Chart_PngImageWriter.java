@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes images in the PNG format with a {@link Chart_PngEncoder}, which
+ * encodes large images on many threads, and other formats with ImageIO as
+ * {@link Chart_ImageWriter} does.
+ */
+public class Chart_PngImageWriter extends Chart_ImageWriter {
+
+    /**
+     * The encoder of PNG images.
+     */
+    protected final Chart_PngEncoder encoder;
+
+    /**
+     * Creates a writer with a default {@link Chart_PngEncoder}.
+     */
+    public Chart_PngImageWriter() {
+        this(new Chart_PngEncoder());
+    }
+
+    /**
+     * @param encoder The encoder of PNG images.
+     */
+    public Chart_PngImageWriter(Chart_PngEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    public Chart_PngEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public Path write(RenderedImage image, String format, Path file)
+            throws IOException {
+        if (!"PNG".equalsIgnoreCase(format)
+                || !(image instanceof BufferedImage)) {
+            return super.write(image, format, file);
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (OutputStream os = newOutputStream(file)) {
+            encoder.encode((BufferedImage) image, os);
+        }
+        return file;
+    }
+}
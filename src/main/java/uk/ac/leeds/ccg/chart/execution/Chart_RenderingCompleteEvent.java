@@ -15,16 +15,54 @@
  */
 package uk.ac.leeds.ccg.chart.execution;
 
+import java.nio.file.Path;
 import java.util.EventObject;
 
 /**
+ * Notifies that a chart has been rendered and written, or has failed to be.
  *
  * @author Andy Turner
  */
 public class Chart_RenderingCompleteEvent extends EventObject {
-    
-        public Chart_RenderingCompleteEvent(Object source) {
-                super(source);
-        }
-    
+
+    /**
+     * The file written to, or {@code null} if nothing was written.
+     */
+    private final transient Path file;
+
+    /**
+     * What went wrong, or {@code null} if rendering and writing succeeded.
+     */
+    private final Throwable failure;
+
+    public Chart_RenderingCompleteEvent(Object source) {
+        this(source, null, null);
+    }
+
+    /**
+     * @param source The chart (or other object) that was rendered.
+     * @param file The file written to, or {@code null} if nothing was written.
+     * @param failure What went wrong, or {@code null} for success.
+     */
+    public Chart_RenderingCompleteEvent(Object source, Path file,
+            Throwable failure) {
+        super(source);
+        this.file = file;
+        this.failure = failure;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return {@code true} if rendering and writing succeeded.
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
 }
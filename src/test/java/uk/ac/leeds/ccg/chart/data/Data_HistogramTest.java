@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link Data_Histogram}.
+ */
+public class Data_HistogramTest {
+
+    /**
+     * Test that in exact mode 0.3 is counted in interval 3 of intervals of
+     * width 0.1 starting at 0, whereas (0.3 - 0) / 0.1 is 2.9999999999999996
+     * in double arithmetic.
+     */
+    @Test
+    public void testExactEdge() {
+        double[] values = {0d, 0.1d, 0.2d, 0.3d};
+        BigDecimal w = new BigDecimal("0.1");
+        Data_Histogram h = Data_Histogram.of(values, w, true);
+        assertEquals(4, h.getIntervals());
+        assertEquals(3L, h.getIndex(0.3d));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1L, h.getCount(i));
+        }
+        assertExact(values, w);
+    }
+
+    /**
+     * Test exact placement of integer values on the edges of integer
+     * intervals starting at a negative origin.
+     */
+    @Test
+    public void testIntegerEdges() {
+        double[] values = new double[21];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i - 10;
+        }
+        for (String w : new String[]{"1", "2", "3", "5"}) {
+            assertExact(values, new BigDecimal(w));
+        }
+    }
+
+    /**
+     * Test exact placement of decimal values on the edges of intervals
+     * starting at a negative origin.
+     */
+    @Test
+    public void testNegativeOrigin() {
+        double[] values = {-0.3d, -0.2d, -0.1d, 0d, 0.1d, 0.2d, 0.3d, 0.7d};
+        for (String w : new String[]{"0.1", "0.2", "0.3"}) {
+            assertExact(values, new BigDecimal(w));
+        }
+    }
+
+    /**
+     * Test exact mode against
+     * {@link Data_Bar#of(java.util.Map, BigDecimal, MathContext)} for
+     * normally distributed values rounded to 2 decimal places, many of which
+     * are on an interval edge.
+     */
+    @Test
+    public void testExactMatchesMap() {
+        Random r = new Random(0L);
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.rint(r.nextGaussian() * 1000d) / 100d;
+        }
+        for (String w : new String[]{"0.05", "0.1", "0.25", "1"}) {
+            assertExact(values, new BigDecimal(w));
+        }
+    }
+
+    /**
+     * Test that a maximum value too far from the minimum for the interval
+     * width to be indexed is rejected rather than giving a negative number of
+     * intervals.
+     */
+    @Test
+    public void testTooManyIntervals() {
+        BigDecimal w = BigDecimal.ONE;
+        assertThrows(IllegalArgumentException.class,
+                () -> Data_Histogram.of(new double[]{0d, 3.0e9d}, w, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> Data_Histogram.of(new double[]{0d, 1.0e16d}, w, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> Data_Histogram.of(new double[]{0d, 1.0e16d}, w, true));
+    }
+
+    /**
+     * Asserts that each value is counted in the interval given by BigDecimal
+     * arithmetic on its shortest decimal representation, and that the counts
+     * are those of {@link Data_Bar#of(java.util.Map, BigDecimal, MathContext)}
+     * apart from the empty intervals that {@link Data_Histogram#toDataBar()}
+     * includes.
+     *
+     * @param values The values.
+     * @param w The interval width.
+     */
+    private static void assertExact(double[] values, BigDecimal w) {
+        Data_Histogram h = Data_Histogram.of(values, w, true);
+        HashMap<Integer, BigDecimal> m = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            BigDecimal v = BigDecimal.valueOf(values[i]);
+            long expected = v.subtract(h.getOrigin()).divide(w, 0,
+                    RoundingMode.FLOOR).longValueExact();
+            assertEquals(expected, h.getIndex(values[i]), values[i] + " " + w);
+            m.put(i, v);
+        }
+        assertEquals(getNonZero(Data_Bar.of(m, w, MathContext.DECIMAL64)),
+                getNonZero(h.toDataBar()), w.toString());
+    }
+
+    private static TreeMap<Integer, Integer> getNonZero(Data_Bar d) {
+        TreeMap<Integer, Integer> r = new TreeMap<>(d.getCounts());
+        r.values().removeIf(c -> c == 0);
+        return r;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.data;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link Data_KLLSketch}.
+ */
+public class Data_KLLSketchTest {
+
+    /**
+     * The quartiles tested.
+     */
+    private static final double[] QUARTILES = {0.25d, 0.5d, 0.75d};
+
+    /**
+     * Test that NaN values are not added, as they are not counted by
+     * {@link Data_Histogram}.
+     */
+    @Test
+    public void testAddNaN() {
+        Data_KLLSketch s = new Data_KLLSketch();
+        s.add(1d);
+        s.add(Double.NaN);
+        s.add(2d);
+        s.add(3d);
+        assertEquals(3L, s.getN());
+        assertEquals(6d, s.getSum());
+        assertEquals(1d, s.getMin());
+        assertEquals(3d, s.getMax());
+        assertEquals(2d, s.getQuantile(0.5d));
+    }
+
+    /**
+     * Test that the quartiles of a sketch are within the documented rank
+     * error of those of {@link Data_ExactQuantiles}, and that the count, sum,
+     * minimum and maximum are exact.
+     */
+    @Test
+    public void testQuartiles() {
+        double[] values = getValues(100000);
+        for (int k : new int[]{50, Data_KLLSketch.DEFAULT_K}) {
+            Data_KLLSketch s = new Data_KLLSketch(k);
+            Data_ExactQuantiles e = new Data_ExactQuantiles();
+            for (double v : values) {
+                s.add(v);
+                e.add(v);
+            }
+            assertSummary(values, e, s, k);
+        }
+    }
+
+    /**
+     * Test that the quartiles of a sketch merged from sketches of partitions
+     * of the values are within the documented rank error of those of
+     * {@link Data_ExactQuantiles} merged in the same way.
+     */
+    @Test
+    public void testMergedQuartiles() {
+        double[] values = getValues(100000);
+        int parts = 8;
+        int k = Data_KLLSketch.DEFAULT_K;
+        Data_KLLSketch s = new Data_KLLSketch(k);
+        Data_ExactQuantiles e = new Data_ExactQuantiles();
+        for (int p = 0; p < parts; p++) {
+            Data_KLLSketch ps = new Data_KLLSketch(k);
+            Data_ExactQuantiles pe = new Data_ExactQuantiles();
+            int from = values.length * p / parts;
+            int to = values.length * (p + 1) / parts;
+            for (int i = from; i < to; i++) {
+                ps.add(values[i]);
+                pe.add(values[i]);
+            }
+            s.merge(ps);
+            e.merge(pe);
+        }
+        assertSummary(values, e, s, k);
+    }
+
+    /**
+     * @param n The number of values.
+     * @return n skewed values such as incomes.
+     */
+    private static double[] getValues(int n) {
+        Random r = new Random(0L);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.exp(r.nextGaussian()) * 10000d;
+        }
+        return values;
+    }
+
+    /**
+     * Asserts that the count, sum, minimum and maximum of s are those of e,
+     * and that for each quartile the value of s has a rank in values within
+     * 1.7 / k of n of that of e.
+     *
+     * @param values The values added.
+     * @param e The exact summary of the values.
+     * @param s The sketch of the values.
+     * @param k The accuracy parameter of s.
+     */
+    private static void assertSummary(double[] values, Data_ExactQuantiles e,
+            Data_KLLSketch s, int k) {
+        int n = values.length;
+        assertEquals(e.getN(), s.getN());
+        assertEquals(e.getSum(), s.getSum(), Math.abs(e.getSum()) * 1.0e-12d);
+        assertEquals(e.getMin(), s.getMin());
+        assertEquals(e.getMax(), s.getMax());
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double error = 1.7d / k * n;
+        for (double q : QUARTILES) {
+            double v = s.getQuantile(q);
+            long rank = (long) Math.ceil(q * n);
+            assertEquals(sorted[(int) rank - 1], e.getQuantile(q));
+            // The ranks of v are from the number of values less than it plus
+            // one to the number of values not greater than it.
+            int lo = 0;
+            while (lo < n && sorted[lo] < v) {
+                lo++;
+            }
+            int hi = lo;
+            while (hi < n && sorted[hi] == v) {
+                hi++;
+            }
+            assertTrue(rank >= lo + 1 - error && rank <= hi + error,
+                    "k " + k + " q " + q + " rank " + rank + " of " + v
+                    + " from " + (lo + 1) + " to " + hi);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link Chart_AdmissionController}.
+ */
+public class Chart_AdmissionControllerTest {
+
+    /**
+     * Test that a job waiting to be admitted is not overtaken by a job that
+     * arrives after it, even one that would fit.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testAcquireInOrder() throws Exception {
+        Chart_AdmissionController ac = new Chart_AdmissionController(100L);
+        ac.acquire(10L);
+        AtomicLong order = new AtomicLong();
+        AtomicLong largeOrder = new AtomicLong();
+        AtomicLong smallOrder = new AtomicLong();
+        Thread large = new Thread(() -> {
+            try {
+                ac.acquire(100L);
+                largeOrder.set(order.incrementAndGet());
+                ac.release(100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        large.start();
+        awaitWaiting(ac, 1);
+        // The small job would fit but the large one is waiting.
+        assertFalse(ac.tryAcquire(10L));
+        Thread small = new Thread(() -> {
+            try {
+                ac.acquire(10L);
+                smallOrder.set(order.incrementAndGet());
+                ac.release(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        small.start();
+        awaitWaiting(ac, 2);
+        ac.release(10L);
+        large.join(10000L);
+        small.join(10000L);
+        assertEquals(1L, largeOrder.get());
+        assertEquals(2L, smallOrder.get());
+        assertEquals(0L, ac.getAdmittedBytes());
+        assertEquals(0, ac.getAdmittedJobs());
+    }
+
+    /**
+     * Test that a job needing the whole budget is admitted while small jobs
+     * keep arriving.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testLargeJobNotStarved() throws Exception {
+        Chart_AdmissionController ac = new Chart_AdmissionController(100L);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] smalls = new Thread[4];
+        for (int i = 0; i < smalls.length; i++) {
+            smalls[i] = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        ac.acquire(30L);
+                        Thread.sleep(1L);
+                        ac.release(30L);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            smalls[i].start();
+        }
+        try {
+            Thread.sleep(50L);
+            AtomicBoolean admitted = new AtomicBoolean();
+            Thread large = new Thread(() -> {
+                try {
+                    ac.acquire(200L);
+                    admitted.set(true);
+                    ac.release(200L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            large.start();
+            large.join(10000L);
+            assertTrue(admitted.get());
+        } finally {
+            stop.set(true);
+            for (Thread t : smalls) {
+                t.join(10000L);
+            }
+        }
+        assertEquals(0L, ac.getAdmittedBytes());
+    }
+
+    /**
+     * Test that the blocks of an encoder are admitted once however many jobs
+     * using it are admitted, and that no blocks are admitted for other
+     * writers.
+     *
+     * @throws Exception If encountered.
+     */
+    @Test
+    public void testEncoderBytes() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Chart_PngEncoder e = new Chart_PngEncoder(4, 1000, pool);
+            assertEquals(3L * 1000L * 4L,
+                    Chart_AdmissionController.getEncoderBytes(e));
+            assertSame(e, Chart_AdmissionController.getEncoder(
+                    new Chart_PngImageWriter(e), "png"));
+            assertNull(Chart_AdmissionController.getEncoder(
+                    new Chart_PngImageWriter(e), "jpg"));
+            assertNull(Chart_AdmissionController.getEncoder(
+                    new Chart_ImageWriter(), "png"));
+            Chart_AdmissionController ac
+                    = new Chart_AdmissionController(1000000L);
+            ac.acquire(100L, e);
+            assertEquals(100L + 12000L, ac.getAdmittedBytes());
+            ac.acquire(100L, e);
+            assertEquals(200L + 12000L, ac.getAdmittedBytes());
+            ac.release(100L, e);
+            assertEquals(100L + 12000L, ac.getAdmittedBytes());
+            ac.release(100L, e);
+            assertEquals(0L, ac.getAdmittedBytes());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Waits for n jobs to be waiting to be admitted to ac.
+     */
+    private static void awaitWaiting(Chart_AdmissionController ac, int n)
+            throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (ac.getWaitingJobs() < n && System.nanoTime() < end) {
+            Thread.sleep(1L);
+        }
+        assertEquals(n, ac.getWaitingJobs());
+    }
+}
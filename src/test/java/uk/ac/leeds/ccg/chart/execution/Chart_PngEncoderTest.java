@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) Centre for Computational Geography, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.chart.execution;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.Test;
+import uk.ac.leeds.ccg.chart.core.Chart_Palette;
+
+/**
+ * Tests of {@link Chart_PngEncoder} that decode what it writes with ImageIO
+ * and compare the pixels with those encoded.
+ */
+public class Chart_PngEncoderTest {
+
+    /**
+     * Small enough for images here to be split into many blocks, so that the
+     * dictionary each block is primed with is exercised.
+     */
+    private static final int SMALL_BLOCK_BYTES = 5000;
+
+    /**
+     * Test of encode method for an opaque ARGB image, which is written as RGB.
+     *
+     * @throws IOException If encountered.
+     */
+    @Test
+    public void testEncodeOpaque() throws IOException {
+        BufferedImage image = newImage(300, 200, false);
+        for (int level : new int[]{0, 1, 9}) {
+            assertRoundTrip(image, new Chart_PngEncoder(level));
+            assertRoundTrip(image, new Chart_PngEncoder(level,
+                    SMALL_BLOCK_BYTES, null));
+        }
+    }
+
+    /**
+     * Test of encode method for an ARGB image with pixels that are not
+     * opaque, which is written as RGBA.
+     *
+     * @throws IOException If encountered.
+     */
+    @Test
+    public void testEncodeTranslucent() throws IOException {
+        BufferedImage image = newImage(300, 200, true);
+        for (int level : new int[]{0, 1, 9}) {
+            assertRoundTrip(image, new Chart_PngEncoder(level));
+            assertRoundTrip(image, new Chart_PngEncoder(level,
+                    SMALL_BLOCK_BYTES, null));
+        }
+    }
+
+    /**
+     * Test of encode method for an indexed image whose palette has a
+     * transparent entry, which is written with its palette.
+     *
+     * @throws IOException If encountered.
+     */
+    @Test
+    public void testEncodeIndexed() throws IOException {
+        IndexColorModel palette = Chart_Palette.of(Color.RED, Color.GREEN,
+                Color.BLUE, Color.ORANGE);
+        BufferedImage image = new BufferedImage(300, 200,
+                BufferedImage.TYPE_BYTE_INDEXED, palette);
+        Random r = new Random(0);
+        int n = palette.getMapSize();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                // Mostly runs of one index with some noise, including the
+                // transparent index 0.
+                int i = y < 20 ? 0 : (x / 30 + y / 40) % n;
+                if (r.nextInt(10) == 0) {
+                    i = r.nextInt(n);
+                }
+                image.getRaster().setSample(x, y, 0, i);
+            }
+        }
+        for (int level : new int[]{0, 1, 9}) {
+            assertRoundTrip(image, new Chart_PngEncoder(level));
+            assertRoundTrip(image, new Chart_PngEncoder(level,
+                    SMALL_BLOCK_BYTES, null));
+        }
+    }
+
+    /**
+     * Test of encode method with a block per row on a pool of its own.
+     *
+     * @throws IOException If encountered.
+     */
+    @Test
+    public void testEncodeRowBlocks() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertRoundTrip(newImage(97, 61, false),
+                    new Chart_PngEncoder(4, 1, pool));
+            assertRoundTrip(newImage(97, 61, true),
+                    new Chart_PngEncoder(4, 1, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param width The width.
+     * @param height The height.
+     * @param translucent If {@code true} some pixels are not opaque.
+     * @return An ARGB image of gradients and noise so that different rows
+     * suit different filters.
+     */
+    private static BufferedImage newImage(int width, int height,
+            boolean translucent) {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        Random r = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int a = translucent && y % 7 == 0 ? (x * 5) & 0xFF : 0xFF;
+                int red = (x * 255) / width;
+                int green = (y * 255) / height;
+                int blue = y % 3 == 0 ? r.nextInt(256) : (x + y) & 0xFF;
+                image.setRGB(x, y, (a << 24) | (red << 16) | (green << 8)
+                        | blue);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Encodes image with encoder, decodes the result with ImageIO and checks
+     * every pixel is the same.
+     */
+    private static void assertRoundTrip(BufferedImage image,
+            Chart_PngEncoder encoder) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        encoder.encode(image, os);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(
+                os.toByteArray()));
+        String m = "level " + encoder.getLevel() + " blockBytes "
+                + encoder.getBlockBytes();
+        assertNotNull(decoded, m);
+        assertEquals(image.getWidth(), decoded.getWidth(), m);
+        assertEquals(image.getHeight(), decoded.getHeight(), m);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(image.getRGB(x, y), decoded.getRGB(x, y),
+                        m + " pixel " + x + ", " + y);
+            }
+        }
+    }
+}